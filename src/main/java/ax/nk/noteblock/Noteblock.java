@@ -2,11 +2,20 @@ package ax.nk.noteblock;
 
 import ax.nk.noteblock.game.GameControllerFactory;
 import ax.nk.noteblock.game.timeline.TimelineControllerFactory;
+import ax.nk.noteblock.game.timeline.input.TimelineInputRouter;
+import ax.nk.noteblock.game.timeline.render.NoteMarkerMode;
+import ax.nk.noteblock.game.timeline.render.RenderQueue;
 import ax.nk.noteblock.game.timeline.ui.ChatPrompt;
 import ax.nk.noteblock.game.timeline.ui.TextPrompt;
 import ax.nk.noteblock.persistence.SongRepository;
 import ax.nk.noteblock.persistence.SqliteDatabase;
+import ax.nk.noteblock.session.IdleMonitor;
+import ax.nk.noteblock.session.PlotAllocator;
+import ax.nk.noteblock.session.PlotProvider;
 import ax.nk.noteblock.session.SessionManager;
+import ax.nk.noteblock.session.TickDriver;
+import ax.nk.noteblock.session.WorldPool;
+import ax.nk.noteblock.world.WorldDeletion;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
@@ -19,18 +28,25 @@ import java.io.File;
 public final class Noteblock extends JavaPlugin implements Listener {
 
     private SessionManager sessionManager;
+    private TickDriver tickDriver;
+    private PlotProvider plots;
+    private WorldDeletion worldDeletion;
+    private IdleMonitor idleMonitor;
 
     private SqliteDatabase sqlite;
     private SongRepository songRepository;
     private ChatPrompt chatPrompt;
     private TextPrompt textPrompt;
+    private TimelineInputRouter inputRouter;
 
     @Override
     public void onEnable() {
+        saveDefaultConfig();
+
         // SQLite init
         try {
             final File dbFile = new File(getDataFolder(), "noteblock.db");
-            sqlite = new SqliteDatabase(this, dbFile);
+            sqlite = new SqliteDatabase(this, dbFile, getConfig().getInt("persistence.read-connections", 2));
             sqlite.open();
             songRepository = new SongRepository(sqlite);
         } catch (Exception e) {
@@ -44,20 +60,72 @@ public final class Noteblock extends JavaPlugin implements Listener {
         chatPrompt = new ChatPrompt(this);
         textPrompt = new TextPrompt(chatPrompt);
 
-        final GameControllerFactory controllerFactory = new TimelineControllerFactory(this, songRepository, chatPrompt, textPrompt);
-        this.sessionManager = new SessionManager(this, controllerFactory);
+        // One listener routes timeline input to the session of the player who caused it.
+        inputRouter = new TimelineInputRouter(this);
+
+        // One scheduler task drives every session's periodic work.
+        tickDriver = new TickDriver(this);
+        tickDriver.start();
+
+        // Track rendering is spread across ticks under a shared block budget.
+        final RenderQueue renderQueue = new RenderQueue(tickDriver, getConfig().getInt("render.blocks-per-tick", 4096));
+        final NoteMarkerMode noteMarkers = NoteMarkerMode.fromConfig(getConfig().getString("render.note-markers", "blocks"));
+
+        // World folders are deleted on background I/O threads.
+        worldDeletion = new WorldDeletion(this,
+                getConfig().getInt("world-deletion.threads", 2),
+                getConfig().getInt("world-deletion.retries", 10));
+
+        final GameControllerFactory controllerFactory = new TimelineControllerFactory(this, tickDriver, renderQueue, noteMarkers, inputRouter, songRepository, chatPrompt, textPrompt);
+        if (getConfig().getBoolean("plots.enabled", false)) {
+            // Sessions share a few worlds, one plot each.
+            plots = new PlotAllocator(this, controllerFactory,
+                    getConfig().getInt("plots.per-world", 64),
+                    getConfig().getInt("plots.spacing", 256),
+                    getConfig().getBoolean("plots.hide-other-players", true));
+        } else {
+            plots = new WorldPool(this, tickDriver, controllerFactory, worldDeletion,
+                    getConfig().getInt("world-pool.size", 2),
+                    getConfig().getInt("world-pool.refill-interval-ticks", 100));
+        }
+        this.sessionManager = new SessionManager(this, controllerFactory, plots, worldDeletion);
 
         // Cleanup leftover session worlds from a previous server run/crash.
         sessionManager.cleanupLeftoverWorldsOnBoot();
 
+        // Create worlds only once the cleanup above is done.
+        plots.start();
+
+        final int idleSeconds = getConfig().getInt("hibernation.idle-seconds", 300);
+        if (idleSeconds > 0) {
+            idleMonitor = new IdleMonitor(this, tickDriver, sessionManager, idleSeconds);
+            idleMonitor.start();
+        }
+
         getServer().getPluginManager().registerEvents(this, this);
     }
 
     @Override
     public void onDisable() {
+        if (idleMonitor != null) {
+            idleMonitor.shutdown();
+            idleMonitor = null;
+        }
         if (sessionManager != null) {
             sessionManager.shutdown();
         }
+        if (plots != null) {
+            plots.shutdown();
+            plots = null;
+        }
+        if (worldDeletion != null) {
+            worldDeletion.shutdown();
+            worldDeletion = null;
+        }
+        if (tickDriver != null) {
+            tickDriver.shutdown();
+            tickDriver = null;
+        }
         if (chatPrompt != null) {
             chatPrompt.shutdown();
             chatPrompt = null;
@@ -66,6 +134,10 @@ public final class Noteblock extends JavaPlugin implements Listener {
             textPrompt.shutdown();
             textPrompt = null;
         }
+        if (inputRouter != null) {
+            inputRouter.shutdown();
+            inputRouter = null;
+        }
         if (sqlite != null) {
             sqlite.close();
             sqlite = null;
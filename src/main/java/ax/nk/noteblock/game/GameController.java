@@ -4,15 +4,34 @@ import ax.nk.noteblock.session.GameSession;
 import org.bukkit.entity.Player;
 
 /**
- * Owns minigame logic for a single player + their isolated world.
+ * Owns minigame logic for a single player + their plot (an isolated world, or part of a shared one).
  * Implementations should avoid referencing global server state where possible.
  */
 public interface GameController {
 
-    /** Called after the world is created and the player was teleported into it. */
+    /** Called after the plot is ready and the player was teleported into it. */
     void onStart(GameSession session, Player player);
 
     /** Called when the session is ending (quit/kick/shutdown). */
     void onStop(GameSession session);
+
+    /**
+     * Called when the player has been idle for a while. To hibernate, pack whatever {@link #onResume} needs
+     * into a compact buffer and stop everything, as {@link #onStop} does; the controller and the plot are
+     * dropped afterwards.
+     *
+     * @return the packed state, or null to keep the session running (the default)
+     */
+    default byte[] onHibernate(GameSession session) {
+        return null;
+    }
+
+    /**
+     * Called instead of {@link #onStart} on a fresh controller when a hibernated player comes back.
+     * The player has already been teleported to where they were in the (possibly different) plot.
+     */
+    default void onResume(GameSession session, Player player, byte[] state) {
+        onStart(session, player);
+    }
 }
 
@@ -1,10 +1,27 @@
 package ax.nk.noteblock.game;
 
 import ax.nk.noteblock.session.GameSession;
+import ax.nk.noteblock.session.Plot;
 
 /** Creates a new controller instance for each session. */
 @FunctionalInterface
 public interface GameControllerFactory {
     GameController create(GameSession session);
-}
 
+    /**
+     * Gets a plot ready before a session uses it (world rules, static scenery). Called for fresh pool worlds and
+     * for plots returned by ended sessions, which may still contain that session's leftovers.
+     * Call {@code whenReady} once done; it may be called later, from the main thread.
+     */
+    default void preparePlot(Plot plot, Runnable whenReady) {
+        whenReady.run();
+    }
+
+    /**
+     * How far (in blocks) a session builds out from its plot origin. Plots in shared worlds are spaced so that
+     * footprints of this size don't overlap.
+     */
+    default int plotWidth() {
+        return 0;
+    }
+}
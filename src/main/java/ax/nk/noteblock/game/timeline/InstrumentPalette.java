@@ -4,8 +4,6 @@ import org.bukkit.ChatColor;
 import org.bukkit.Material;
 import org.bukkit.Sound;
 
-import java.util.Arrays;
-
 /**
  * 16 instruments. We represent each as:
  * - an inventory "token" (what the player holds to place that instrument)
@@ -30,6 +28,12 @@ public enum InstrumentPalette {
     BANJO(14, ChatColor.GOLD + "Banjo", Material.PINK_WOOL, Material.PINK_WOOL, Sound.BLOCK_NOTE_BLOCK_BANJO),
     PLING(15, ChatColor.LIGHT_PURPLE + "Pling", Material.BLACK_WOOL, Material.BLACK_WOOL, Sound.BLOCK_NOTE_BLOCK_PLING);
 
+    private static final InstrumentPalette[] BY_ID = new InstrumentPalette[values().length];
+
+    static {
+        for (InstrumentPalette p : values()) BY_ID[p.id] = p;
+    }
+
     public final int id;
     public final String displayName;
     public final Material token;
@@ -45,6 +49,7 @@ public enum InstrumentPalette {
     }
 
     public static InstrumentPalette byId(int id) {
-        return Arrays.stream(values()).filter(v -> v.id == id).findFirst().orElse(PIANO);
+        if (id < 0 || id >= BY_ID.length || BY_ID[id] == null) return PIANO;
+        return BY_ID[id];
     }
 }
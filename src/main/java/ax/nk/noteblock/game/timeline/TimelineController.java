@@ -2,8 +2,14 @@ package ax.nk.noteblock.game.timeline;
 
 import ax.nk.noteblock.game.GameController;
 import ax.nk.noteblock.session.GameSession;
+import ax.nk.noteblock.session.Plot;
+import ax.nk.noteblock.session.TickDriver;
+import ax.nk.noteblock.game.timeline.playback.LagPolicy;
 import ax.nk.noteblock.game.timeline.playback.PlaybackEngine;
+import ax.nk.noteblock.game.timeline.playback.TempoMap;
+import ax.nk.noteblock.game.timeline.render.NoteMarkerMode;
 import ax.nk.noteblock.game.timeline.render.OverlayRenderer;
+import ax.nk.noteblock.game.timeline.render.RenderQueue;
 import ax.nk.noteblock.game.timeline.render.TrackRenderer;
 import ax.nk.noteblock.game.timeline.ui.ControlItems;
 import ax.nk.noteblock.game.timeline.ui.LibraryMenus;
@@ -14,24 +20,23 @@ import ax.nk.noteblock.game.timeline.ui.PitchName;
 import ax.nk.noteblock.game.timeline.util.TimelineMath;
 import ax.nk.noteblock.game.timeline.world.FreezeTimeService;
 import ax.nk.noteblock.game.timeline.world.WorldRules;
+import ax.nk.noteblock.game.timeline.score.ScoreSnapshot;
 import ax.nk.noteblock.game.timeline.score.TimelineScore;
 import ax.nk.noteblock.game.timeline.edit.TimelineEditor;
 import ax.nk.noteblock.game.timeline.input.TrackTargeting;
 import ax.nk.noteblock.game.timeline.input.TimelineInputHandler;
+import ax.nk.noteblock.game.timeline.input.TimelineInputRouter;
+import ax.nk.noteblock.persistence.SongBinaryCodec;
+import ax.nk.noteblock.persistence.SongDataRow;
 import ax.nk.noteblock.persistence.SongRepository;
-import ax.nk.noteblock.persistence.TimelineScoreJson;
 import ax.nk.noteblock.game.timeline.ui.SongBrowserMenus;
 import ax.nk.noteblock.game.timeline.ui.DeleteConfirmMenu;
-import ax.nk.noteblock.persistence.SongDataRow;
 import ax.nk.noteblock.persistence.SongRow;
-import com.google.gson.Gson;
 import org.bukkit.*;
-import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.bukkit.plugin.Plugin;
-import org.bukkit.util.Vector;
 
 import java.util.*;
 
@@ -50,29 +55,31 @@ public final class TimelineController implements GameController, Listener {
     private final SongBrowserMenus songBrowserMenus;
     private final DeleteConfirmMenu deleteConfirmMenu = new DeleteConfirmMenu();
 
-    private int loadPageIndex = 0;
     private SongBrowserMenus.Mode loadMode = SongBrowserMenus.Mode.LOAD;
 
-    private static final Gson GSON = new Gson();
-    private static final int MAX_TRACK_TIME_LENGTH = 1000;
+    private static final int MAX_TRACK_TIME_LENGTH = 50_000;
     private static final int MIN_TRACK_TIME_LENGTH = 1;
     private static final int TRACK_PITCH_WIDTH = 25;
+    // Columns actually drawn in the world; longer tracks scroll through this window.
+    static final int VIEWPORT_WIDTH = 128;
 
-    // World coords (relative to world spawn); keep it simple and consistent
+    // World coords (x/z relative to the session's plot origin); keep it simple and consistent
     private static final int BASE_Y = 64;
     private static final int TRACK_Y = BASE_Y + 1;
-    private static final Vector ORIGIN = new Vector(0, TRACK_Y, 0);
 
     // Playback
-    private static final long TICKS_PER_STEP = 2L; // 10 steps/sec at 20tps
+    private static final double DEFAULT_BPM = 150.0; // 10 steps/sec, same as the old 2 ticks/step
 
-    private static final int MIN_TICKS_PER_STEP = 1;
-    private static final int MAX_TICKS_PER_STEP = 20;
+    private static final double MIN_BPM = 15.0; // 1 step/sec
+    private static final double MAX_BPM = 600.0; // 40 steps/sec, two steps per server tick
 
     private static final double EDIT_RAY_DISTANCE = 30.0;
 
-    // tempo is in server ticks per step
-    private int ticksPerStep = (int) TICKS_PER_STEP;
+    // tempo in beats per minute (see Tempo for the step/beat relation), with optional change markers
+    private TempoMap tempo = TempoMap.constant(DEFAULT_BPM);
+
+    // What playback does when the server lags behind the song
+    private LagPolicy lagPolicy = LagPolicy.CATCH_UP;
 
     // Track length (X axis)
     private int trackLength = DEFAULT_TRACK_TIME_LENGTH;
@@ -100,23 +107,30 @@ public final class TimelineController implements GameController, Listener {
     }
 
     private final Plugin plugin;
+    private final TickDriver tickDriver;
 
     private GameSession session;
     private Player player;
 
     private boolean loopEnabled = false;
+    private boolean playbackWaitingForTrack = false;
 
     private final ControlItems controlItems;
     private final SettingsMenus settingsMenus = new SettingsMenus();
     private final FreezeTimeService freezeTimeService;
+    private World frozenWorld;
 
-    private final TrackRenderer trackRenderer = new TrackRenderer(BASE_Y, TRACK_Y, LAYER_COUNT, TRACK_PITCH_WIDTH, ORIGIN.getBlockX(), ORIGIN.getBlockZ());
-    private final OverlayRenderer overlayRenderer = new OverlayRenderer(ORIGIN.getBlockX(), ORIGIN.getBlockZ(), TRACK_PITCH_WIDTH);
+    private final int originX;
+    private final int originZ;
+    private final TrackViewport viewport;
+    private final TrackRenderer trackRenderer;
+    private final OverlayRenderer overlayRenderer;
     private final PlaybackEngine playback;
 
-    private final TimelineEditor editor = new TimelineEditor(TRACK_Y, LAYER_COUNT, ORIGIN.getBlockX(), ORIGIN.getBlockZ(), TRACK_PITCH_WIDTH);
-    private final TrackTargeting targeting = new TrackTargeting(ORIGIN.getBlockX(), ORIGIN.getBlockZ(), TRACK_PITCH_WIDTH, EDIT_RAY_DISTANCE);
+    private final TimelineEditor editor;
+    private final TrackTargeting targeting;
 
+    private final TimelineInputRouter inputRouter;
     private TimelineInputHandler inputHandler;
 
     private final LibraryMenus libraryMenus = new LibraryMenus();
@@ -132,21 +146,98 @@ public final class TimelineController implements GameController, Listener {
     private Integer lastHoverTime;
     private Integer lastHoverInstrument;
 
-    private int hoverTaskId = -1;
+    private int hoverHandle = -1;
+    private int viewportHandle = -1;
 
-    public TimelineController(Plugin plugin, SongRepository songRepository, ChatPrompt chatPrompt, TextPrompt textPrompt) {
+    public TimelineController(Plugin plugin, TickDriver tickDriver, RenderQueue renderQueue, NoteMarkerMode noteMarkers, FreezeTimeService freezeTimeService,
+                              TimelineInputRouter inputRouter, SongRepository songRepository, ChatPrompt chatPrompt, TextPrompt textPrompt, Plot plot) {
         this.plugin = plugin;
+        this.tickDriver = Objects.requireNonNull(tickDriver);
+        this.originX = plot.originX();
+        this.originZ = plot.originZ();
+        this.viewport = new TrackViewport(originX, VIEWPORT_WIDTH);
+        this.targeting = new TrackTargeting(viewport, TRACK_Y, originZ, TRACK_PITCH_WIDTH, EDIT_RAY_DISTANCE);
+        this.trackRenderer = new TrackRenderer(Objects.requireNonNull(renderQueue), viewport, noteMarkers, BASE_Y, TRACK_Y, LAYER_COUNT, TRACK_PITCH_WIDTH, originZ);
+        this.overlayRenderer = new OverlayRenderer(viewport, noteMarkers, trackRenderer::showsNoteAt, originZ, TRACK_PITCH_WIDTH);
+        this.editor = new TimelineEditor(trackRenderer, viewport, TRACK_Y, LAYER_COUNT, originZ, TRACK_PITCH_WIDTH);
         this.controlItems = new ControlItems(plugin);
-        this.freezeTimeService = new FreezeTimeService(plugin, () -> this.session == null ? null : this.session.world());
-        this.playback = new PlaybackEngine(plugin, (int) TICKS_PER_STEP, false);
+        this.freezeTimeService = Objects.requireNonNull(freezeTimeService);
+        this.inputRouter = Objects.requireNonNull(inputRouter);
+        this.playback = new PlaybackEngine(tickDriver, playbackSettings(), TRACK_Y, viewport, originZ, editor.pitchTable());
         this.songRepository = Objects.requireNonNull(songRepository);
         this.chatPrompt = Objects.requireNonNull(chatPrompt);
         this.textPrompt = Objects.requireNonNull(textPrompt);
         this.songBrowserMenus = new SongBrowserMenus(plugin);
     }
 
+    /**
+     * Gets a plot ready ahead of any session: world rules plus an empty default-length track,
+     * drawn through the render queue. Plots returned by ended sessions are redrawn the same way.
+     */
+    static void preparePlot(RenderQueue renderQueue, NoteMarkerMode noteMarkers, Plot plot, Runnable whenReady) {
+        final World world = plot.world();
+        WorldRules.applyWorldRules(world);
+
+        final TrackRenderer renderer = new TrackRenderer(renderQueue, new TrackViewport(plot.originX(), VIEWPORT_WIDTH),
+                noteMarkers, BASE_Y, TRACK_Y, LAYER_COUNT, TRACK_PITCH_WIDTH, plot.originZ());
+        renderer.rebuild(world, null, DEFAULT_TRACK_TIME_LENGTH, new TimelineScore(LAYER_COUNT));
+        renderer.whenDrawn(whenReady);
+    }
+
     @Override
     public void onStart(GameSession session, Player player) {
+        begin(session, player);
+        buildTrack(session.world());
+
+        // Put the player into a sensible viewing position once (track rebuilds won't move them).
+        final Location view = new Location(session.world(),
+                originX + 1.5,
+                TRACK_Y + 1.0,
+                originZ + (TRACK_PITCH_WIDTH / 2.0) + 0.5,
+                -90f,
+                20f);
+        player.teleportAsync(view);
+
+        player.sendMessage(ChatColor.GREEN + "Timeline ready. Place instrument blocks on the track, then right-click the Start item.");
+    }
+
+    @Override
+    public void onResume(GameSession session, Player player, byte[] state) {
+        begin(session, player);
+
+        final TimelineSnapshot.State s = TimelineSnapshot.unpack(state, score);
+        tempo = s.tempo();
+        lagPolicy = s.lagPolicy();
+        trackLength = s.trackLength();
+        layerCount = s.layerCount();
+        activeLayerIndex = s.activeLayerIndex();
+        rangeBeginIndex = s.rangeBegin();
+        rangeEndIndex = s.rangeEnd();
+        loopEnabled = s.loop();
+        viewport.scrollTo(s.viewportStart(), trackLength);
+        publishPlaybackSettings();
+
+        buildTrack(session.world());
+
+        player.sendActionBar(ChatColor.GREEN + "Welcome back.");
+    }
+
+    /** Keeps sessions that are playing awake; otherwise packs the editing state and stops like {@link #onStop}. */
+    @Override
+    public byte[] onHibernate(GameSession session) {
+        if (playback.isPlaying() || playbackWaitingForTrack) return null;
+
+        final byte[] state = TimelineSnapshot.pack(new TimelineSnapshot.State(trackLength, layerCount, activeLayerIndex,
+                rangeBeginIndex, rangeEndIndex, loopEnabled, lagPolicy, tempo, viewport.start()), score);
+        onStop(session);
+        return state;
+    }
+
+    /**
+     * Registers listeners and periodic work and resets to an empty default song; shared by start and resume.
+     * Doesn't draw: the caller builds the track once its state is final.
+     */
+    private void begin(GameSession session, Player player) {
         this.session = session;
         this.player = player;
 
@@ -159,7 +250,7 @@ public final class TimelineController implements GameController, Listener {
         lastHoverTime = null;
         lastHoverInstrument = null;
 
-        // Register input handler (all listeners live there now)
+        // Register input handler (events are routed to it by player)
         inputHandler = new TimelineInputHandler(
                 controlItems,
                 settingsMenus,
@@ -202,21 +293,12 @@ public final class TimelineController implements GameController, Listener {
                 deleteConfirmMenu,
                 () -> DEBUG_INPUT
         );
-        Bukkit.getPluginManager().registerEvents(inputHandler, plugin);
+        inputRouter.register(session.playerId(), inputHandler);
 
         WorldRules.applyWorldRules(session.world());
         applySafeFlight(player);
-        freezeTimeService.start(session.world());
-        buildTrack(session.world());
-
-        // Put the player into a sensible viewing position once (track rebuilds won't move them).
-        final Location view = new Location(session.world(),
-                ORIGIN.getBlockX() + 1.5,
-                TRACK_Y + 1.0,
-                ORIGIN.getBlockZ() + (TRACK_PITCH_WIDTH / 2.0) + 0.5,
-                -90f,
-                20f);
-        player.teleportAsync(view);
+        frozenWorld = session.world();
+        freezeTimeService.hold(frozenWorld);
 
         controlItems.giveItems(player);
 
@@ -225,51 +307,60 @@ public final class TimelineController implements GameController, Listener {
         player.setSaturation(20f);
         player.setHealth(player.getMaxHealth());
 
-        player.sendMessage(ChatColor.GREEN + "Timeline ready. Place instrument blocks on the track, then right-click the Start item.");
-
         // Reset controller state for a clean session.
-        ticksPerStep = (int) TICKS_PER_STEP;
-        playback.setTicksPerStep(ticksPerStep);
+        tempo = TempoMap.constant(DEFAULT_BPM);
+        lagPolicy = LagPolicy.CATCH_UP;
         trackLength = DEFAULT_TRACK_TIME_LENGTH;
         rangeBeginIndex = null;
         rangeEndIndex = null;
         settingsMenus.invalidate();
         libraryMenus.invalidate();
         songBrowserMenus.invalidate();
-        overlayRenderer.clearPlayhead(session.world());
-        overlayRenderer.clearRange(session.world());
+        overlayRenderer.clearPlayhead(player, session.world());
+        overlayRenderer.clearRange(player, session.world());
         layerCount = 1;
         activeLayerIndex = 0;
         loopEnabled = false;
-        playback.setLoopEnabled(false);
+        publishPlaybackSettings();
         playback.setPlayhead(0);
 
         deleteConfirmMenu.invalidate();
-        loadPageIndex = 0;
+        songBrowserMenus.resetPages();
         loadMode = SongBrowserMenus.Mode.LOAD;
 
         score.clear();
 
         startHoverHud();
+        viewportHandle = tickDriver.register(this::followViewer, 5L, 5L);
     }
 
     @Override
     public void onStop(GameSession session) {
-        playback.stop(() -> overlayRenderer.clearPlayhead(this.session == null ? null : this.session.world()));
-        overlayRenderer.clearPlayhead(this.session == null ? null : this.session.world());
-        overlayRenderer.clearRange(this.session == null ? null : this.session.world());
+        // stop() runs the callback whether or not playback was running, so this is the only clear.
+        playback.stop(() -> overlayRenderer.clearPlayhead(player, this.session == null ? null : this.session.world()));
+        overlayRenderer.clearRange(player, this.session == null ? null : this.session.world());
+        overlayRenderer.removeDisplays();
         if (player != null) {
             restoreFlight(player);
         }
         if (inputHandler != null) {
-            HandlerList.unregisterAll(inputHandler);
+            inputRouter.unregister(session.playerId(), inputHandler);
             inputHandler = null;
         }
         // And unregister controller listener, since we no longer handle events here.
         HandlerList.unregisterAll(this);
+        playbackWaitingForTrack = false;
+        trackRenderer.cancel();
         score.clear();
-        freezeTimeService.stop();
+        if (frozenWorld != null) {
+            freezeTimeService.release(frozenWorld);
+            frozenWorld = null;
+        }
         stopHoverHud();
+        if (viewportHandle != -1) {
+            tickDriver.cancel(viewportHandle);
+            viewportHandle = -1;
+        }
     }
 
     // --- Playback
@@ -281,90 +372,112 @@ public final class TimelineController implements GameController, Listener {
         }
 
         if (playback.isPlaying()) {
-            playback.stop(() -> overlayRenderer.clearPlayhead(session.world()));
+            playback.stop(() -> overlayRenderer.clearPlayhead(player, session.world()));
             player.sendMessage(ChatColor.YELLOW + "Playback stopped.");
             playback.setPlayhead(playback.playbackStartIndex(trackLength, rangeBeginIndex, rangeEndIndex));
             return;
         }
 
-        playback.setTicksPerStep(ticksPerStep);
-        playback.setLoopEnabled(loopEnabled);
+        if (playbackWaitingForTrack) {
+            playbackWaitingForTrack = false;
+            player.sendMessage(ChatColor.YELLOW + "Playback cancelled.");
+            return;
+        }
+
+        // Don't play over a half-drawn track; start once the render queue has caught up.
+        if (trackRenderer.isDrawing()) {
+            playbackWaitingForTrack = true;
+            player.sendMessage(ChatColor.GRAY + "Track is still being drawn; playback will start when it's done.");
+            trackRenderer.whenDrawn(() -> {
+                if (!playbackWaitingForTrack) return;
+                playbackWaitingForTrack = false;
+                startPlayback();
+            });
+            return;
+        }
+
+        startPlayback();
+    }
+
+    private void startPlayback() {
+        if (session == null || !isInSessionWorld(player.getWorld())) return;
+
+        publishPlaybackSettings();
         playback.start(
                 player,
                 session.world(),
-                trackLength,
-                rangeBeginIndex,
-                rangeEndIndex,
-                layerCount,
-                score.scoreByLayerMutable(),
-                (idx) -> overlayRenderer.drawPlayhead(session.world(), idx, layerY(activeLayerIndex)),
-                () -> overlayRenderer.clearPlayhead(session.world()),
-                TRACK_PITCH_WIDTH,
-                editor::pitchFromRow,
+                score,
+                this::drawPlayhead,
+                () -> overlayRenderer.clearPlayhead(player, session.world()),
                 null
         );
         player.sendMessage(ChatColor.AQUA + "Playback started.");
     }
 
+    private void drawPlayhead(int idx) {
+        // During playback the window follows the playhead.
+        if (viewport.follow(idx, trackLength) != 0) onViewportScrolled();
+        overlayRenderer.drawPlayhead(player, session.world(), idx, layerY(activeLayerIndex));
+    }
+
+    // --- Viewport
+
+    /** While not playing, scrolls the window when the player flies near its edge and moves them along with it. */
+    private void followViewer() {
+        if (player == null || session == null || playback.isPlaying()) return;
+        if (!isInSessionWorld(player.getWorld())) return;
+
+        final Location at = player.getLocation();
+        final int tick = viewport.start() + at.getBlockX() - viewport.originX();
+        final int shift = viewport.follow(tick, trackLength);
+        if (shift == 0) return;
+
+        // Keep the player over the same time index while the content shifts under them.
+        player.teleport(at.subtract(shift, 0, 0));
+        onViewportScrolled();
+    }
+
+    private void onViewportScrolled() {
+        trackRenderer.render(session.world(), player, trackLength, score);
+        redrawRangeOverlay();
+        // Re-send once the columns are redrawn, the block updates may have covered the markers.
+        trackRenderer.whenDrawn(() -> {
+            if (session != null) redrawRangeOverlay();
+        });
+    }
+
     private void setRangeBegin(int idx) {
         rangeBeginIndex = idx;
-        overlayRenderer.redrawRange(session.world(), rangeBeginIndex, rangeEndIndex, trackLength, layerY(activeLayerIndex));
-
-        if (playback.isPlaying()) {
-            if (loopEnabled) {
-                // Restart playback so the scheduler captures the updated range values.
-                playback.setPlayhead(playback.playbackStartIndex(trackLength, rangeBeginIndex, rangeEndIndex));
-                restartPlayback();
-            }
-        }
+        overlayRenderer.redrawRange(player, session.world(), rangeBeginIndex, rangeEndIndex, trackLength, layerY(activeLayerIndex));
+        publishPlaybackSettings();
     }
 
     private void setRangeEnd(int idx) {
         rangeEndIndex = idx;
-        overlayRenderer.redrawRange(session.world(), rangeBeginIndex, rangeEndIndex, trackLength, layerY(activeLayerIndex));
-
-        if (playback.isPlaying()) {
-            if (loopEnabled) {
-                playback.setPlayhead(playback.playbackStartIndex(trackLength, rangeBeginIndex, rangeEndIndex));
-                restartPlayback();
-            }
-        }
+        overlayRenderer.redrawRange(player, session.world(), rangeBeginIndex, rangeEndIndex, trackLength, layerY(activeLayerIndex));
+        publishPlaybackSettings();
     }
 
     private void resetRange() {
         rangeBeginIndex = null;
         rangeEndIndex = null;
-        overlayRenderer.redrawRange(session.world(), rangeBeginIndex, rangeEndIndex, trackLength, layerY(activeLayerIndex));
+        overlayRenderer.redrawRange(player, session.world(), rangeBeginIndex, rangeEndIndex, trackLength, layerY(activeLayerIndex));
+        publishPlaybackSettings();
 
-        if (playback.isPlaying()) {
-            if (loopEnabled) {
-                playback.setPlayhead(playback.playbackStartIndex(trackLength, rangeBeginIndex, rangeEndIndex));
-                restartPlayback();
-            }
-        } else {
+        if (!playback.isPlaying()) {
             // Next play should start from the beginning of the full timeline.
             playback.setPlayhead(playback.playbackStartIndex(trackLength, rangeBeginIndex, rangeEndIndex));
         }
     }
 
-    private void restartPlayback() {
-        if (!playback.isPlaying()) return;
-        playback.setTicksPerStep(ticksPerStep);
-        playback.setLoopEnabled(loopEnabled);
-        playback.start(
-                player,
-                session.world(),
-                trackLength,
-                rangeBeginIndex,
-                rangeEndIndex,
-                layerCount,
-                score.scoreByLayerMutable(),
-                (idx) -> overlayRenderer.drawPlayhead(session.world(), idx, layerY(activeLayerIndex)),
-                () -> overlayRenderer.clearPlayhead(session.world()),
-                TRACK_PITCH_WIDTH,
-                editor::pitchFromRow,
-                null
-        );
+    /** Current tempo/length/range/loop/layer state as seen by playback. */
+    private PlaybackEngine.Settings playbackSettings() {
+        return new PlaybackEngine.Settings(tempo, loopEnabled, trackLength, rangeBeginIndex, rangeEndIndex, layerCount, lagPolicy);
+    }
+
+    /** Hands the current settings to playback; a running playback applies them at its next step. */
+    private void publishPlaybackSettings() {
+        playback.publish(playbackSettings());
     }
 
     private SettingsMenus.Callbacks settingsCallbacks() {
@@ -387,17 +500,12 @@ public final class TimelineController implements GameController, Listener {
             @Override
             public void setLoopEnabled(boolean enabled) {
                 loopEnabled = enabled;
-                playback.setLoopEnabled(enabled);
-
-                if (!enabled && playback.isPlaying()) {
-                    // Ensures that disabling loop during playback takes effect immediately.
-                    restartPlayback();
-                }
+                publishPlaybackSettings();
             }
 
             @Override
-            public void setTicksPerStep(int newValue) {
-                TimelineController.this.setTicksPerStep(TimelineMath.clamp(newValue, MIN_TICKS_PER_STEP, MAX_TICKS_PER_STEP));
+            public void setBpm(double newValue) {
+                TimelineController.this.setBpm(TimelineMath.clamp(newValue, MIN_BPM, MAX_BPM));
             }
 
             @Override
@@ -406,8 +514,59 @@ public final class TimelineController implements GameController, Listener {
             }
 
             @Override
-            public int ticksPerStep() {
-                return TimelineController.this.ticksPerStep;
+            public void cycleLagPolicy() {
+                lagPolicy = lagPolicy.next();
+                publishPlaybackSettings();
+                TimelineController.this.player.sendMessage(ChatColor.GRAY + "Lag handling: " + lagPolicy.label);
+            }
+
+            @Override
+            public String lagPolicyLabel() {
+                return lagPolicy.label;
+            }
+
+            @Override
+            public List<String> playbackTimingLines() {
+                final PlaybackEngine.TimingStats stats = playback.timingStats();
+                return List.of(
+                        "Steps played: " + stats.stepsPlayed(),
+                        "Missed steps: " + stats.missedSteps(),
+                        String.format(Locale.ROOT, "Jitter: %.1f ms avg, %.1f ms max", stats.meanJitterMillis(), stats.maxJitterMillis())
+                );
+            }
+
+            @Override
+            public double bpm() {
+                return tempo.bpmAt(tempoEditStep());
+            }
+
+            @Override
+            public String tempoEditTarget() {
+                final int step = tempoEditStep();
+                return step == 0 ? "base tempo" : "marker at step " + step;
+            }
+
+            @Override
+            public int tempoMarkerCount() {
+                return tempo.markerCount();
+            }
+
+            @Override
+            public void addTempoMarker() {
+                TimelineController.this.addTempoMarker();
+            }
+
+            @Override
+            public void removeTempoMarker() {
+                TimelineController.this.removeTempoMarker();
+            }
+
+            @Override
+            public void clearTempoMarkers() {
+                if (tempo.markerCount() == 0) return;
+                tempo = tempo.withoutMarkers();
+                publishPlaybackSettings();
+                TimelineController.this.player.sendMessage(ChatColor.GRAY + "Tempo markers cleared.");
             }
 
             @Override
@@ -444,29 +603,43 @@ public final class TimelineController implements GameController, Listener {
         };
     }
 
-    private void setTicksPerStep(int newValue) {
-        if (newValue == ticksPerStep) return;
-        ticksPerStep = newValue;
-        playback.setTicksPerStep(newValue);
-        player.sendMessage(ChatColor.GRAY + "Tempo set to " + ticksPerStep + " ticks/step");
+    /** The tempo menu edits the marker at the range begin if there is one, otherwise the base tempo. */
+    private int tempoEditStep() {
+        return rangeBeginIndex != null && tempo.hasMarkerAt(rangeBeginIndex) ? rangeBeginIndex : 0;
+    }
+
+    private void setBpm(double newValue) {
+        final int step = tempoEditStep();
+        if (newValue == tempo.bpmAt(step)) return;
+        tempo = tempo.withMarker(step, newValue);
+        publishPlaybackSettings();
+        player.sendMessage(ChatColor.GRAY + "Tempo " + (step == 0 ? "" : "at step " + step + " ") + "set to " + SettingsMenus.formatBpm(newValue) + " BPM");
+    }
 
-        // Restart playback with new tempo.
-        if (playback.isPlaying()) {
-            playback.start(
-                    player,
-                    session.world(),
-                    trackLength,
-                    rangeBeginIndex,
-                    rangeEndIndex,
-                    layerCount,
-                    score.scoreByLayerMutable(),
-                    (idx) -> overlayRenderer.drawPlayhead(session.world(), idx, layerY(activeLayerIndex)),
-                    () -> overlayRenderer.clearPlayhead(session.world()),
-                    TRACK_PITCH_WIDTH,
-                    editor::pitchFromRow,
-                    null
-            );
+    private void addTempoMarker() {
+        if (rangeBeginIndex == null || rangeBeginIndex <= 0) {
+            player.sendActionBar(ChatColor.RED + "Set a range begin after step 0 to place a tempo marker there.");
+            return;
+        }
+        if (tempo.hasMarkerAt(rangeBeginIndex)) {
+            player.sendActionBar(ChatColor.YELLOW + "There already is a tempo marker at step " + rangeBeginIndex + ".");
+            return;
         }
+
+        // Starts at the tempo already in effect there; the tempo buttons then edit it.
+        tempo = tempo.withMarker(rangeBeginIndex, tempo.bpmAt(rangeBeginIndex));
+        publishPlaybackSettings();
+        player.sendMessage(ChatColor.GRAY + "Tempo marker placed at step " + rangeBeginIndex + ".");
+    }
+
+    private void removeTempoMarker() {
+        if (rangeBeginIndex == null || !tempo.hasMarkerAt(rangeBeginIndex)) {
+            player.sendActionBar(ChatColor.RED + "No tempo marker at the range begin.");
+            return;
+        }
+        tempo = tempo.withoutMarker(rangeBeginIndex);
+        publishPlaybackSettings();
+        player.sendMessage(ChatColor.GRAY + "Tempo marker at step " + rangeBeginIndex + " removed.");
     }
 
     private void adjustTrackLength(int delta) {
@@ -484,12 +657,13 @@ public final class TimelineController implements GameController, Listener {
         // If shrinking, drop out-of-bounds notes so they can't keep playing.
         if (newLength < oldLength) {
             pruneNotesOutsideLength(newLength);
-            trackRenderer.clearWorldColumnsOutsideLength(session.world(), newLength, oldLength);
-            overlayRenderer.clearPlayhead(session.world());
-            overlayRenderer.clearRange(session.world());
+            overlayRenderer.clearPlayhead(player, session.world());
+            overlayRenderer.clearRange(player, session.world());
         }
 
         trackLength = newLength;
+        tempo = tempo.truncatedTo(trackLength);
+        viewport.clampTo(trackLength);
 
         // Keep range markers inside the track.
         if (rangeBeginIndex != null && rangeBeginIndex >= trackLength) rangeBeginIndex = trackLength - 1;
@@ -501,38 +675,21 @@ public final class TimelineController implements GameController, Listener {
 
         player.sendMessage(ChatColor.GRAY + "Track length set to " + trackLength);
 
-        trackRenderer.buildTrack(session.world(), player, trackLength);
-        overlayRenderer.redrawRange(session.world(), rangeBeginIndex, rangeEndIndex, trackLength, layerY(activeLayerIndex));
-        trackRenderer.redrawNotes(session.world(), trackLength, score.scoreByLayerMutable());
+        trackRenderer.render(session.world(), player, trackLength, score);
+        overlayRenderer.redrawRange(player, session.world(), rangeBeginIndex, rangeEndIndex, trackLength, layerY(activeLayerIndex));
 
-        if (playback.isPlaying()) {
-            playback.start(
-                    player,
-                    session.world(),
-                    trackLength,
-                    rangeBeginIndex,
-                    rangeEndIndex,
-                    layerCount,
-                    score.scoreByLayerMutable(),
-                    (idx) -> overlayRenderer.drawPlayhead(session.world(), idx, layerY(activeLayerIndex)),
-                    () -> overlayRenderer.clearPlayhead(session.world()),
-                    TRACK_PITCH_WIDTH,
-                    editor::pitchFromRow,
-                    null
-            );
-        }
+        publishPlaybackSettings();
     }
 
     private void buildTrack(World world) {
-        trackRenderer.buildTrack(world, player, trackLength);
-        overlayRenderer.redrawRange(world, rangeBeginIndex, rangeEndIndex, trackLength, layerY(activeLayerIndex));
-        trackRenderer.redrawNotes(world, trackLength, score.scoreByLayerMutable());
+        trackRenderer.rebuild(world, player, trackLength, score);
+        overlayRenderer.redrawRange(player, world, rangeBeginIndex, rangeEndIndex, trackLength, layerY(activeLayerIndex));
     }
 
     // --- Records
 
     private void pruneNotesOutsideLength(int newLength) {
-        score.pruneNotesOutsideLength(newLength, ORIGIN.getBlockX());
+        score.pruneNotesOutsideLength(newLength);
     }
 
     private void applySafeFlight(Player player) {
@@ -568,13 +725,7 @@ public final class TimelineController implements GameController, Listener {
         }
 
         // Clear any blocks on that plane just in case (should be empty).
-        final World w = session.world();
-        final int y = layerY(layerIndex);
-        for (int dx = 0; dx < trackLength; dx++) {
-            for (int dz = 0; dz < TRACK_PITCH_WIDTH; dz++) {
-                w.getBlockAt(ORIGIN.getBlockX() + dx, y, ORIGIN.getBlockZ() + dz).setType(Material.AIR, false);
-            }
-        }
+        trackRenderer.render(session.world(), player, trackLength, score);
 
         // We don’t shift layers in the data model; just reduce the active layer count.
         if (layerIndex == layerCount - 1) {
@@ -589,11 +740,8 @@ public final class TimelineController implements GameController, Listener {
     }
 
     private void redrawRangeOverlay() {
-        overlayRenderer.redrawRange(session.world(), rangeBeginIndex, rangeEndIndex, trackLength, layerY(activeLayerIndex));
-        if (playback.isPlaying() && loopEnabled) {
-            playback.setPlayhead(playback.playbackStartIndex(trackLength, rangeBeginIndex, rangeEndIndex));
-            restartPlayback();
-        }
+        overlayRenderer.redrawRange(player, session.world(), rangeBeginIndex, rangeEndIndex, trackLength, layerY(activeLayerIndex));
+        publishPlaybackSettings();
     }
 
     private LibraryMenus.Callbacks libraryCallbacks() {
@@ -629,19 +777,23 @@ public final class TimelineController implements GameController, Listener {
                 return;
             }
 
-            final String json = TimelineScoreJson.toJson(score, trackLength, ticksPerStep, layerCount);
+            // Only the snapshot is taken here; encoding and the insert happen on the database writer thread,
+            // and edits made in the meantime don't touch the snapshot.
+            final ScoreSnapshot notes = score.snapshot();
+            final int savedTrackLength = trackLength;
+            final TempoMap savedTempo = tempo;
+            final int savedLayerCount = layerCount;
 
-            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-                try {
-                    songRepository.insertSong(player.getUniqueId(), name, json);
+            songRepository.insertSong(player.getUniqueId(), name, notes, savedTrackLength, savedTempo, savedLayerCount).whenComplete((ignored, error) -> {
+                if (error == null) {
                     Bukkit.getScheduler().runTask(plugin, () -> {
                         player.sendMessage(ChatColor.GREEN + "Saved song as '" + name + "'.");
                         player.playSound(player.getLocation(), Sound.BLOCK_NOTE_BLOCK_PLING, SoundCategory.MASTER, 0.5f, 1.5f);
                     });
-                } catch (Exception e) {
-                    plugin.getLogger().warning("Failed to save song: " + e.getMessage());
+                } else {
+                    plugin.getLogger().warning("Failed to save song: " + error.getMessage());
                     Bukkit.getScheduler().runTask(plugin, () -> {
-                        player.sendMessage(ChatColor.RED + "Failed to save song: " + e.getMessage());
+                        player.sendMessage(ChatColor.RED + "Failed to save song: " + error.getMessage());
                         player.playSound(player.getLocation(), Sound.ENTITY_VILLAGER_NO, SoundCategory.MASTER, 0.6f, 1.0f);
                     });
                 }
@@ -675,21 +827,19 @@ public final class TimelineController implements GameController, Listener {
             }
 
             @Override
-            public void prevPage(int newPage) {
-                loadPageIndex = Math.max(0, newPage);
-                openLoadSongBrowser(loadPageIndex, loadMode);
+            public void prevPage() {
+                openLoadSongBrowser(loadMode);
             }
 
             @Override
-            public void nextPage(int newPage) {
-                loadPageIndex = Math.max(0, newPage);
-                openLoadSongBrowser(loadPageIndex, loadMode);
+            public void nextPage() {
+                openLoadSongBrowser(loadMode);
             }
 
             @Override
             public void toggleDeleteMode(boolean enabled) {
                 loadMode = enabled ? SongBrowserMenus.Mode.DELETE : SongBrowserMenus.Mode.LOAD;
-                openLoadSongBrowser(loadPageIndex, loadMode);
+                openLoadSongBrowser(loadMode);
             }
 
             @Override
@@ -707,41 +857,45 @@ public final class TimelineController implements GameController, Listener {
     }
 
     private void openLoadSongBrowser() {
-        openLoadSongBrowser(0, SongBrowserMenus.Mode.LOAD);
+        songBrowserMenus.resetPages();
+        openLoadSongBrowser(SongBrowserMenus.Mode.LOAD);
     }
 
-    private void openLoadSongBrowser(int pageIndex, SongBrowserMenus.Mode mode) {
+    /** (Re)loads the browser's current page. */
+    private void openLoadSongBrowser(SongBrowserMenus.Mode mode) {
         if (player == null) return;
-        loadPageIndex = Math.max(0, pageIndex);
         loadMode = mode == null ? SongBrowserMenus.Mode.LOAD : mode;
 
         songBrowserMenus.open(player);
         player.sendActionBar(ChatColor.GRAY + "Loading songs...");
 
         final int pageSize = 45;
-        final int offset = loadPageIndex * pageSize;
 
         // Fetch one extra to know if there's next page.
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            try {
-                final List<SongRow> songsPlus = songRepository.listSongs(player.getUniqueId(), pageSize + 1, offset);
-                final boolean hasNext = songsPlus.size() > pageSize;
-                final List<SongRow> songs = hasNext ? songsPlus.subList(0, pageSize) : songsPlus;
-                final boolean hasPrev = loadPageIndex > 0;
-
+        songRepository.listSongs(player.getUniqueId(), songBrowserMenus.pageStart(), pageSize + 1).whenComplete((songsPlus, error) -> {
+            if (error != null) {
                 Bukkit.getScheduler().runTask(plugin, () -> {
                     if (player == null) return;
-                    songBrowserMenus.render(songs, loadPageIndex, hasPrev, hasNext, loadMode);
-                    player.playSound(player.getLocation(), Sound.BLOCK_NOTE_BLOCK_PLING, SoundCategory.MASTER, 0.25f, 1.4f);
-                });
-            } catch (Exception e) {
-                Bukkit.getScheduler().runTask(plugin, () -> {
-                    if (player == null) return;
-                    player.sendMessage(ChatColor.RED + "Failed to load song list: " + e.getMessage());
+                    player.sendMessage(ChatColor.RED + "Failed to load song list: " + error.getMessage());
                     player.playSound(player.getLocation(), Sound.ENTITY_VILLAGER_NO, SoundCategory.MASTER, 0.6f, 1.0f);
                     libraryMenus.openMain(player, libraryCallbacks());
                 });
+                return;
             }
+
+            final boolean hasNext = songsPlus.size() > pageSize;
+            final List<SongRow> songs = hasNext ? songsPlus.subList(0, pageSize) : songsPlus;
+
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (player == null) return;
+                // The last songs of this page were deleted: show the one before instead.
+                if (songs.isEmpty() && songBrowserMenus.backToPreviousPage()) {
+                    openLoadSongBrowser(loadMode);
+                    return;
+                }
+                songBrowserMenus.render(songs, hasNext, loadMode);
+                player.playSound(player.getLocation(), Sound.BLOCK_NOTE_BLOCK_PLING, SoundCategory.MASTER, 0.25f, 1.4f);
+            });
         });
     }
 
@@ -750,89 +904,93 @@ public final class TimelineController implements GameController, Listener {
 
         player.sendActionBar(ChatColor.GRAY + "Loading song...");
 
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            try {
-                final SongDataRow row = songRepository.getSongById(player.getUniqueId(), songId);
-                if (row == null) {
-                    Bukkit.getScheduler().runTask(plugin, () -> {
-                        if (player == null) return;
-                        player.sendMessage(ChatColor.RED + "Song not found.");
-                        player.playSound(player.getLocation(), Sound.ENTITY_VILLAGER_NO, SoundCategory.MASTER, 0.6f, 1.0f);
-                    });
-                    return;
-                }
-
-                final TimelineScoreJson.SongPayload payload = GSON.fromJson(row.dataJson(), TimelineScoreJson.SongPayload.class);
+        // The song is decoded and validated into a fresh score on the reader thread; the main thread only swaps it in.
+        songRepository.getSongById(player.getUniqueId(), songId, TimelineController::decodeSong).whenComplete((song, error) -> {
+            if (error != null) {
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    if (player == null) return;
+                    player.sendMessage(ChatColor.RED + "Failed to load song: " + error.getMessage());
+                    player.playSound(player.getLocation(), Sound.ENTITY_VILLAGER_NO, SoundCategory.MASTER, 0.6f, 1.0f);
+                });
+                return;
+            }
 
-                Bukkit.getScheduler().runTask(plugin, () -> applyLoadedSong(row.name(), payload));
-            } catch (Exception e) {
+            if (song == null) {
                 Bukkit.getScheduler().runTask(plugin, () -> {
                     if (player == null) return;
-                    player.sendMessage(ChatColor.RED + "Failed to load song: " + e.getMessage());
+                    player.sendMessage(ChatColor.RED + "Song not found.");
                     player.playSound(player.getLocation(), Sound.ENTITY_VILLAGER_NO, SoundCategory.MASTER, 0.6f, 1.0f);
                 });
+                return;
             }
+
+            Bukkit.getScheduler().runTask(plugin, () -> applyLoadedSong(song));
         });
     }
 
-    private void applyLoadedSong(String name, TimelineScoreJson.SongPayload payload) {
+    /** A stored song, clamped to this controller's limits and ready to swap in. */
+    private record LoadedSong(String name, int trackLength, TempoMap tempo, int layerCount, TimelineScore score) {
+    }
+
+    /** Runs off the main thread: touches nothing but its arguments. */
+    private static LoadedSong decodeSong(SongDataRow row) {
+        final TimelineScore loaded = new TimelineScore(LAYER_COUNT);
+        final int[] header = new int[2]; // track length, layer count
+        final TempoMap[] tempo = {null};
+
+        SongBinaryCodec.read(row.data(), new SongBinaryCodec.Visitor() {
+            @Override
+            public void header(int trackLength, int layerCount, double bpm) {
+                header[0] = TimelineMath.clamp(trackLength, MIN_TRACK_TIME_LENGTH, MAX_TRACK_TIME_LENGTH);
+                header[1] = Math.max(1, Math.min(LAYER_COUNT, layerCount));
+                tempo[0] = TempoMap.constant(TimelineMath.clamp(bpm, MIN_BPM, MAX_BPM));
+            }
+
+            @Override
+            public void tempoMarker(int step, double bpm) {
+                if (step <= 0 || step >= header[0]) return;
+                tempo[0] = tempo[0].withMarker(step, TimelineMath.clamp(bpm, MIN_BPM, MAX_BPM));
+            }
+
+            @Override
+            public void note(int layer, int tickIndex, int pitch, int instrumentId) {
+                if (layer >= header[1]) return;
+                if (tickIndex < 0 || tickIndex >= header[0]) return;
+                if (pitch >= TRACK_PITCH_WIDTH) return;
+                loaded.upsertNote(layer, tickIndex, pitch, instrumentId);
+            }
+        });
+
+        return new LoadedSong(row.name(), header[0], tempo[0], header[1], loaded);
+    }
+
+    private void applyLoadedSong(LoadedSong song) {
         if (player == null || session == null || session.world() == null) return;
 
         // Stop playback
-        if (playback.isPlaying()) {
-            playback.stop(() -> overlayRenderer.clearPlayhead(session.world()));
-        }
-        overlayRenderer.clearPlayhead(session.world());
-        overlayRenderer.clearRange(session.world());
+        playback.stop(() -> overlayRenderer.clearPlayhead(player, session.world()));
+        playbackWaitingForTrack = false;
+        overlayRenderer.clearRange(player, session.world());
         rangeBeginIndex = null;
         rangeEndIndex = null;
 
-        // Reset and rebuild track if length differs
-        final int newTrackLength = payload == null ? DEFAULT_TRACK_TIME_LENGTH : payload.trackLength();
-        final int newTicks = payload == null ? (int) TICKS_PER_STEP : payload.ticksPerStep();
-        final int newLayerCount = payload == null ? 1 : Math.max(1, Math.min(LAYER_COUNT, payload.layerCount()));
+        tempo = song.tempo();
+        trackLength = song.trackLength();
+        viewport.clampTo(trackLength);
 
-        ticksPerStep = TimelineMath.clamp(newTicks, MIN_TICKS_PER_STEP, MAX_TICKS_PER_STEP);
-        playback.setTicksPerStep(ticksPerStep);
-
-        trackLength = TimelineMath.clamp(newTrackLength, MIN_TRACK_TIME_LENGTH, MAX_TRACK_TIME_LENGTH);
-
-        layerCount = newLayerCount;
+        layerCount = song.layerCount();
         activeLayerIndex = Math.min(activeLayerIndex, layerCount - 1);
+        publishPlaybackSettings();
 
-        // Wipe note blocks by rebuilding the track
-        trackRenderer.buildTrack(session.world(), player, trackLength);
-
-        // Clear and apply notes to score
-        score.clear();
-        if (payload != null && payload.layers() != null) {
-            final int maxLayerToRead = Math.min(layerCount, payload.layers().size());
-            for (int layer = 0; layer < maxLayerToRead; layer++) {
-                final List<TimelineScoreJson.NoteDto> notes = payload.layers().get(layer);
-                if (notes == null) continue;
-                for (TimelineScoreJson.NoteDto n : notes) {
-                    if (n == null) continue;
-                    final int t = n.t();
-                    if (t < 0 || t >= trackLength) continue;
-                    final int pitch = n.p();
-                    if (pitch < 0 || pitch >= TRACK_PITCH_WIDTH) continue;
-
-                    final int x = ORIGIN.getBlockX() + t;
-                    final int y = layerY(layer);
-                    final int z = ORIGIN.getBlockZ() + pitch;
-
-                    final BlockPos pos = new BlockPos(x, y, z);
-                    score.upsertNote(new ax.nk.noteblock.game.timeline.score.TimelineCell(t, pitch), pos, n.i(), pitch, layer);
-                }
-            }
-        }
+        // O(1): the decoded score takes the place of the current one (whose notes go with the decoded object).
+        score.swapContents(song.score());
 
-        // Finally, redraw note blocks in the world
-        trackRenderer.redrawNotes(session.world(), trackLength, score.scoreByLayerMutable());
+        // Finally, bring the world in line with the new score; the render is spread over ticks and only changed blocks are written.
+        trackRenderer.render(session.world(), player, trackLength, score);
 
         // UI feedback
         player.closeInventory();
-        player.sendMessage(ChatColor.GREEN + "Loaded song '" + name + "'.");
+        player.sendMessage(ChatColor.GREEN + "Loaded song '" + song.name() + "'.");
         player.playSound(player.getLocation(), Sound.BLOCK_NOTE_BLOCK_CHIME, SoundCategory.MASTER, 0.6f, 1.2f);
     }
 
@@ -841,9 +999,8 @@ public final class TimelineController implements GameController, Listener {
             @Override
             public void confirmDelete(long songId) {
                 TimelineController.this.player.sendActionBar(ChatColor.RED + "Deleting...");
-                Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-                    try {
-                        final boolean ok = songRepository.deleteSong(player.getUniqueId(), songId);
+                songRepository.deleteSong(player.getUniqueId(), songId).whenComplete((ok, error) -> {
+                    if (error == null) {
                         Bukkit.getScheduler().runTask(plugin, () -> {
                             if (ok) {
                                 player.sendMessage(ChatColor.GREEN + "Deleted.");
@@ -852,13 +1009,13 @@ public final class TimelineController implements GameController, Listener {
                                 player.sendMessage(ChatColor.RED + "Couldn't delete (not found).");
                                 player.playSound(player.getLocation(), Sound.ENTITY_VILLAGER_NO, SoundCategory.MASTER, 0.6f, 1.0f);
                             }
-                            openLoadSongBrowser(loadPageIndex, loadMode);
+                            openLoadSongBrowser(loadMode);
                         });
-                    } catch (Exception e) {
+                    } else {
                         Bukkit.getScheduler().runTask(plugin, () -> {
-                            player.sendMessage(ChatColor.RED + "Failed to delete: " + e.getMessage());
+                            player.sendMessage(ChatColor.RED + "Failed to delete: " + error.getMessage());
                             player.playSound(player.getLocation(), Sound.ENTITY_VILLAGER_NO, SoundCategory.MASTER, 0.6f, 1.0f);
-                            openLoadSongBrowser(loadPageIndex, loadMode);
+                            openLoadSongBrowser(loadMode);
                         });
                     }
                 });
@@ -866,20 +1023,20 @@ public final class TimelineController implements GameController, Listener {
 
             @Override
             public void cancel() {
-                openLoadSongBrowser(loadPageIndex, loadMode);
+                openLoadSongBrowser(loadMode);
             }
         };
     }
 
     private void startHoverHud() {
         stopHoverHud();
-        hoverTaskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, this::tickHoverHud, 1L, 2L);
+        hoverHandle = tickDriver.register(this::tickHoverHud, 1L, 2L);
     }
 
     private void stopHoverHud() {
-        if (hoverTaskId != -1) {
-            Bukkit.getScheduler().cancelTask(hoverTaskId);
-            hoverTaskId = -1;
+        if (hoverHandle != -1) {
+            tickDriver.cancel(hoverHandle);
+            hoverHandle = -1;
         }
         restoreXpHud();
     }
@@ -892,6 +1049,12 @@ public final class TimelineController implements GameController, Listener {
         player.setExp(previousXpProgress);
     }
 
+    /** m:ss.t for a position on the timeline (tempo map aware). */
+    private static String formatSongTime(long nanos) {
+        final long tenths = nanos / 100_000_000L;
+        return String.format(Locale.ROOT, "%d:%02d.%d", tenths / 600, (tenths / 10) % 60, tenths % 10);
+    }
+
     private void tickHoverHud() {
         if (player == null || session == null) return;
         final World w = session.world();
@@ -900,8 +1063,8 @@ public final class TimelineController implements GameController, Listener {
             return;
         }
 
-        final Block b = targeting.raycastTrackCellBlock(player, w, trackLength, layerY(activeLayerIndex));
-        if (b == null) {
+        final int y = layerY(activeLayerIndex);
+        if (!targeting.pick(player, w, trackLength, y)) {
             if (lastHoverPitch != null) {
                 lastHoverPitch = null;
                 lastHoverTime = null;
@@ -912,29 +1075,11 @@ public final class TimelineController implements GameController, Listener {
             return;
         }
 
-        final ax.nk.noteblock.game.timeline.score.TimelineCell cell = editor.toCell(b.getLocation(), trackLength);
-        if (cell == null) {
-            return;
-        }
+        final int pitchRow = targeting.pickedPitch();
+        final int timeIndex = targeting.pickedTick();
 
-        final int pitchRow = cell.pitch();
-        final int timeIndex = cell.timeIndex();
-
-        Integer instrumentId = null;
-        final BlockPos pos = new BlockPos(b.getX(), b.getY(), b.getZ());
-        final TimelineScore.NoteRef ref = score.refByPosView().get(pos);
-        if (ref != null) {
-            final int layer = TimelineScore.clampLayerIndex(ref.layerIndex(), LAYER_COUNT);
-            final List<NoteEvent> list = score.scoreByLayerView().get(layer).get(ref.tickIndex());
-            if (list != null) {
-                for (NoteEvent n : list) {
-                    if (n != null && n.pos().equals(pos)) {
-                        instrumentId = n.instrumentId();
-                        break;
-                    }
-                }
-            }
-        }
+        final int placed = editor.instrumentAt(score, targeting.pickedX(), y, targeting.pickedZ(), trackLength);
+        final Integer instrumentId = placed < 0 ? null : placed;
 
         if (Objects.equals(lastHoverPitch, pitchRow)
                 && Objects.equals(lastHoverTime, timeIndex)
@@ -951,7 +1096,8 @@ public final class TimelineController implements GameController, Listener {
                 ? (ChatColor.DARK_GRAY + "(empty)")
                 : (ChatColor.GRAY + "• " + ChatColor.WHITE + ChatColor.stripColor(InstrumentPalette.byId(instrumentId).displayName));
 
-        player.sendActionBar(ChatColor.AQUA + pitchName + ChatColor.DARK_GRAY + "  @" + ChatColor.GRAY + timeIndex + " " + instrumentName);
+        player.sendActionBar(ChatColor.AQUA + pitchName + ChatColor.DARK_GRAY + "  @" + ChatColor.GRAY + timeIndex
+                + ChatColor.DARK_GRAY + " (" + formatSongTime(tempo.nanosAt(timeIndex)) + ") " + instrumentName);
 
         // XP overlay: show pitch row as level (0..24). Keep progress stable.
         if (!xpOverlaid) xpOverlaid = true;
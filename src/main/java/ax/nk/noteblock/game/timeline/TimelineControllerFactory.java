@@ -2,28 +2,56 @@ package ax.nk.noteblock.game.timeline;
 
 import ax.nk.noteblock.game.GameController;
 import ax.nk.noteblock.game.GameControllerFactory;
+import ax.nk.noteblock.game.timeline.input.TimelineInputRouter;
+import ax.nk.noteblock.game.timeline.render.NoteMarkerMode;
+import ax.nk.noteblock.game.timeline.render.RenderQueue;
 import ax.nk.noteblock.game.timeline.ui.ChatPrompt;
 import ax.nk.noteblock.game.timeline.ui.TextPrompt;
+import ax.nk.noteblock.game.timeline.world.FreezeTimeService;
 import ax.nk.noteblock.persistence.SongRepository;
 import ax.nk.noteblock.session.GameSession;
+import ax.nk.noteblock.session.Plot;
+import ax.nk.noteblock.session.TickDriver;
 import org.bukkit.plugin.Plugin;
 
 public final class TimelineControllerFactory implements GameControllerFactory {
 
     private final Plugin plugin;
+    private final TickDriver tickDriver;
+    private final RenderQueue renderQueue;
+    private final NoteMarkerMode noteMarkers;
+    private final TimelineInputRouter inputRouter;
     private final SongRepository songRepository;
     private final ChatPrompt chatPrompt;
     private final TextPrompt textPrompt;
+    private final FreezeTimeService freezeTimeService;
 
-    public TimelineControllerFactory(Plugin plugin, SongRepository songRepository, ChatPrompt chatPrompt, TextPrompt textPrompt) {
+    public TimelineControllerFactory(Plugin plugin, TickDriver tickDriver, RenderQueue renderQueue, NoteMarkerMode noteMarkers, TimelineInputRouter inputRouter,
+                                     SongRepository songRepository, ChatPrompt chatPrompt, TextPrompt textPrompt) {
         this.plugin = plugin;
+        this.tickDriver = tickDriver;
+        this.renderQueue = renderQueue;
+        this.noteMarkers = noteMarkers;
+        this.inputRouter = inputRouter;
         this.songRepository = songRepository;
         this.chatPrompt = chatPrompt;
         this.textPrompt = textPrompt;
+        this.freezeTimeService = new FreezeTimeService(tickDriver);
     }
 
     @Override
     public GameController create(GameSession session) {
-        return new TimelineController(plugin, songRepository, chatPrompt, textPrompt);
+        return new TimelineController(plugin, tickDriver, renderQueue, noteMarkers, freezeTimeService, inputRouter, songRepository, chatPrompt, textPrompt, session.plot());
+    }
+
+    @Override
+    public void preparePlot(Plot plot, Runnable whenReady) {
+        TimelineController.preparePlot(renderQueue, noteMarkers, plot, whenReady);
+    }
+
+    /** The drawn track window; the track is narrower than that along z. */
+    @Override
+    public int plotWidth() {
+        return TimelineController.VIEWPORT_WIDTH;
     }
 }
@@ -0,0 +1,111 @@
+package ax.nk.noteblock.game.timeline;
+
+import ax.nk.noteblock.game.timeline.playback.LagPolicy;
+import ax.nk.noteblock.game.timeline.playback.TempoMap;
+import ax.nk.noteblock.game.timeline.score.TimelineScore;
+import ax.nk.noteblock.persistence.SongBinaryCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Compact binary copy of a session's editing state, kept while the session hibernates.
+ *
+ * A few bytes of session state (active layer, range, loop, lag policy, scroll position) followed by the song
+ * itself in {@link SongBinaryCodec} format, so a note costs about 2 bytes instead of its in-memory score
+ * structures. Only meant to live in memory for the current server run; not a storage format.
+ */
+final class TimelineSnapshot {
+
+    private static final int VERSION = 2;
+
+    /** Everything besides the notes. Range ends are null when unset. */
+    record State(int trackLength,
+                 int layerCount,
+                 int activeLayerIndex,
+                 Integer rangeBegin,
+                 Integer rangeEnd,
+                 boolean loop,
+                 LagPolicy lagPolicy,
+                 TempoMap tempo,
+                 int viewportStart) {
+    }
+
+    private TimelineSnapshot() {
+    }
+
+    static byte[] pack(State state, TimelineScore score) {
+        final byte[] song = SongBinaryCodec.encode(score.snapshot(), state.trackLength(), state.tempo(), state.layerCount());
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + song.length);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeByte(state.activeLayerIndex());
+            out.writeInt(state.rangeBegin() == null ? -1 : state.rangeBegin());
+            out.writeInt(state.rangeEnd() == null ? -1 : state.rangeEnd());
+            out.writeBoolean(state.loop());
+            out.writeByte(state.lagPolicy().ordinal());
+            out.writeInt(state.viewportStart());
+            out.write(song);
+        } catch (IOException e) {
+            // In-memory stream; can't happen.
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Restores the notes into {@code score} (which should be empty) and returns the rest. */
+    static State unpack(byte[] data, TimelineScore score) {
+        final int activeLayerIndex;
+        final int rangeBegin;
+        final int rangeEnd;
+        final boolean loop;
+        final LagPolicy lagPolicy;
+        final int viewportStart;
+        final int songOffset;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            final int version = in.readUnsignedByte();
+            if (version != VERSION) throw new IllegalArgumentException("Unknown snapshot version " + version);
+
+            activeLayerIndex = in.readUnsignedByte();
+            rangeBegin = in.readInt();
+            rangeEnd = in.readInt();
+            loop = in.readBoolean();
+            lagPolicy = LagPolicy.values()[in.readUnsignedByte()];
+            viewportStart = in.readInt();
+            songOffset = data.length - in.available();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Corrupt snapshot", e);
+        }
+
+        final int[] header = new int[2]; // track length, layer count
+        final TempoMap[] tempo = {null};
+        SongBinaryCodec.read(Arrays.copyOfRange(data, songOffset, data.length), new SongBinaryCodec.Visitor() {
+            @Override
+            public void header(int trackLength, int layerCount, double bpm) {
+                header[0] = trackLength;
+                header[1] = layerCount;
+                tempo[0] = TempoMap.constant(bpm);
+            }
+
+            @Override
+            public void tempoMarker(int step, double bpm) {
+                tempo[0] = tempo[0].withMarker(step, bpm);
+            }
+
+            @Override
+            public void note(int layer, int tickIndex, int pitch, int instrumentId) {
+                score.upsertNote(layer, tickIndex, pitch, instrumentId);
+            }
+        });
+
+        return new State(header[0], header[1], activeLayerIndex,
+                rangeBegin < 0 ? null : rangeBegin,
+                rangeEnd < 0 ? null : rangeEnd,
+                loop, lagPolicy, tempo[0], viewportStart);
+    }
+}
@@ -0,0 +1,87 @@
+package ax.nk.noteblock.game.timeline;
+
+/**
+ * The window of time indices that is actually drawn in the world.
+ *
+ * The world only holds {@link #width()} track columns, starting at {@code originX}; world column {@code c}
+ * shows time index {@code start() + c}. Long scores scroll through this window instead of being laid out
+ * block by block, so everything mapping between world X and time goes through here.
+ *
+ * Main thread only.
+ */
+public final class TrackViewport {
+
+    private final int originX;
+    private final int width;
+    // How close the focus may get to an edge before the window scrolls.
+    private final int margin;
+
+    private int start;
+
+    public TrackViewport(int originX, int width) {
+        this.originX = originX;
+        this.width = Math.max(1, width);
+        this.margin = this.width / 5;
+    }
+
+    public int originX() {
+        return originX;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    /** First time index shown. */
+    public int start() {
+        return start;
+    }
+
+    /** World X of {@code tickIndex}'s column; only meaningful when {@link #isVisible}. */
+    public int worldX(int tickIndex) {
+        return originX + tickIndex - start;
+    }
+
+    /** @return time index shown at world X, or -1 when outside the window */
+    public int tickAt(int worldX) {
+        final int column = worldX - originX;
+        return column < 0 || column >= width ? -1 : start + column;
+    }
+
+    public boolean isVisible(int tickIndex) {
+        return tickIndex >= start && tickIndex < start + width;
+    }
+
+    /**
+     * Scrolls so {@code tickIndex} is comfortably inside the window. Moves by large steps (the focus lands
+     * one margin from the edge it was heading to), so a steadily moving focus scrolls rarely.
+     *
+     * @return how far the window moved, in columns (0 when it didn't)
+     */
+    public int follow(int tickIndex, int trackLength) {
+        int target = start;
+        if (tickIndex >= start + width - margin) {
+            target = tickIndex - margin;
+        } else if (tickIndex < start + margin) {
+            target = tickIndex - (width - margin) + 1;
+        }
+        return scrollTo(target, trackLength);
+    }
+
+    /** Keeps the window inside a track of {@code trackLength}; call after the length changes. */
+    public int clampTo(int trackLength) {
+        return scrollTo(start, trackLength);
+    }
+
+    /**
+     * Moves the window to start at {@code target}, kept inside a track of {@code trackLength}.
+     *
+     * @return how far the window moved, in columns
+     */
+    public int scrollTo(int target, int trackLength) {
+        final int clamped = Math.max(0, Math.min(target, trackLength - width));
+        final int shift = clamped - start;
+        start = clamped;
+        return shift;
+    }
+}
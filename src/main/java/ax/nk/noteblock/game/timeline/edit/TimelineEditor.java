@@ -1,63 +1,99 @@
 package ax.nk.noteblock.game.timeline.edit;
 
 import ax.nk.noteblock.game.timeline.*;
+import ax.nk.noteblock.game.timeline.render.TrackRenderer;
 import ax.nk.noteblock.game.timeline.score.TimelineCell;
 import ax.nk.noteblock.game.timeline.score.TimelineScore;
 import org.bukkit.*;
-import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 
 /** World-editing operations for placing/removing/previewing notes on the timeline. */
 public final class TimelineEditor {
 
+    private final TrackRenderer renderer;
     private final int trackY;
     private final int layerCount;
-    private final int originX;
+    private final TrackViewport viewport;
     private final int originZ;
     private final int trackPitchWidth;
 
-    public TimelineEditor(int trackY, int layerCount, int originX, int originZ, int trackPitchWidth) {
+    public TimelineEditor(TrackRenderer renderer, TrackViewport viewport, int trackY, int layerCount, int originZ, int trackPitchWidth) {
+        this.renderer = renderer;
         this.trackY = trackY;
         this.layerCount = layerCount;
-        this.originX = originX;
+        this.viewport = viewport;
         this.originZ = originZ;
         this.trackPitchWidth = trackPitchWidth;
     }
 
     public TimelineCell toCell(Location loc, int trackLength) {
-        final int y = loc.getBlockY();
-        if (y < trackY || y >= trackY + layerCount) return null;
+        return toCell(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(), trackLength);
+    }
 
-        final int dx = loc.getBlockX() - originX;
-        final int dz = loc.getBlockZ() - originZ;
+    public TimelineCell toCell(int x, int y, int z, int trackLength) {
+        if (layerAt(y) < 0) return null;
 
-        if (dx < 0 || dx >= trackLength) return null;
-        if (dz < 0 || dz >= trackPitchWidth) return null;
+        final int dx = tickAt(x, trackLength);
+        final int dz = pitchAt(z);
+        if (dx < 0 || dz < 0) return null;
 
         return new TimelineCell(dx, dz);
     }
 
-    public void upsertNote(TimelineScore score, Location loc, int instrumentId, int layerIndex, int trackLength) {
-        final TimelineCell cell = toCell(loc, trackLength);
-        if (cell == null) return;
+    /** @return layer index for a world Y, or -1 when off the layer planes. */
+    public int layerAt(int y) {
+        if (y < trackY || y >= trackY + layerCount) return -1;
+        return y - trackY;
+    }
+
+    /** @return time index for a world X, or -1 when outside the track or the viewport. */
+    public int tickAt(int x, int trackLength) {
+        final int tick = viewport.tickAt(x);
+        return tick >= trackLength ? -1 : tick;
+    }
+
+    /** @return pitch row for a world Z, or -1 when outside the track. */
+    public int pitchAt(int z) {
+        final int dz = z - originZ;
+        return dz < 0 || dz >= trackPitchWidth ? -1 : dz;
+    }
+
+    public void upsertNote(TimelineScore score, World w, int x, int y, int z, int instrumentId, int layerIndex, int trackLength) {
+        if (layerAt(y) < 0) return;
+        final int tick = tickAt(x, trackLength);
+        final int pitch = pitchAt(z);
+        if (tick < 0 || pitch < 0) return;
+
+        score.upsertNote(layerIndex, tick, pitch, instrumentId);
+        renderer.setCell(w, layerIndex, tick, pitch, instrumentId);
+    }
 
-        final BlockPos pos = BlockPos.from(loc);
-        score.upsertNote(cell, pos, instrumentId, cell.pitch(), layerIndex);
+    /** @return instrument id of the note drawn at this world position, or -1 if there is none. */
+    public int instrumentAt(TimelineScore score, int x, int y, int z, int trackLength) {
+        final int layer = layerAt(y);
+        final int tick = tickAt(x, trackLength);
+        final int pitch = pitchAt(z);
+        if (layer < 0 || tick < 0 || pitch < 0) return -1;
+        return score.instrumentAt(layer, tick, pitch);
     }
 
-    public NoteEvent removeNoteAt(TimelineScore score, Block block) {
-        final BlockPos pos = BlockPos.from(block.getLocation());
-        final NoteEvent removed = score.removeNoteAt(pos);
-        if (removed == null) return null;
+    public NoteEvent removeNoteAt(TimelineScore score, World w, int x, int y, int z, int trackLength) {
+        final int layer = layerAt(y);
+        final int tick = tickAt(x, trackLength);
+        final int pitch = pitchAt(z);
+        if (layer < 0 || tick < 0 || pitch < 0) return null;
 
-        final World w = block.getWorld();
-        final Material old = block.getType();
-        block.setType(Material.AIR, false);
+        final int instrumentId = score.removeNote(layer, tick, pitch);
+        if (instrumentId < 0) return null;
 
-        w.spawnParticle(Particle.BLOCK, block.getLocation().add(0.5, 0.5, 0.5), 12, 0.2, 0.2, 0.2, old.createBlockData());
-        w.playSound(block.getLocation().add(0.5, 0.5, 0.5), Sound.BLOCK_WOOL_BREAK, SoundCategory.BLOCKS, 0.8f, 1.0f);
+        final Material old = InstrumentPalette.byId(instrumentId).marker;
+        renderer.setCell(w, layer, tick, pitch, -1);
 
-        return removed;
+        final Location center = new Location(w, x + 0.5, y + 0.5, z + 0.5);
+        w.spawnParticle(Particle.BLOCK, center, 12, 0.2, 0.2, 0.2, old.createBlockData());
+        w.playSound(center, Sound.BLOCK_WOOL_BREAK, SoundCategory.BLOCKS, 0.8f, 1.0f);
+
+        return new NoteEvent(new BlockPos(x, y, z), instrumentId, pitch);
     }
 
     public void previewNote(Player player, int instrumentId, int pitchRow) {
@@ -70,4 +106,11 @@ public final class TimelineEditor {
     public float pitchFromRow(int row) {
         return 0.5f + (row / (float) (trackPitchWidth - 1)) * 1.5f;
     }
+
+    /** @return {@link #pitchFromRow} for every row of the track, indexed by row. */
+    public float[] pitchTable() {
+        final float[] table = new float[trackPitchWidth];
+        for (int row = 0; row < trackPitchWidth; row++) table[row] = pitchFromRow(row);
+        return table;
+    }
 }
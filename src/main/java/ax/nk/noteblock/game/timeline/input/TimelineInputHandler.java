@@ -12,9 +12,6 @@ import ax.nk.noteblock.game.timeline.ui.DeleteConfirmMenu;
 import org.bukkit.*;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
-import org.bukkit.event.EventHandler;
-import org.bukkit.event.EventPriority;
-import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
@@ -31,10 +28,11 @@ import java.util.function.IntSupplier;
 import java.util.function.Supplier;
 
 /**
- * All Bukkit input handlers for timeline editing/playback.
+ * All Bukkit input handlers for timeline editing/playback, for one session.
+ * Events arrive through the shared {@link TimelineInputRouter}, already matched to this session's player.
  * Keeps TimelineController small.
  */
-public final class TimelineInputHandler implements Listener {
+public final class TimelineInputHandler {
 
     private final ControlItems controlItems;
     private final SettingsMenus settingsMenus;
@@ -132,7 +130,6 @@ public final class TimelineInputHandler implements Listener {
         return sw != null && w != null && sw.equals(w);
     }
 
-    @EventHandler(priority = EventPriority.HIGHEST)
     public void onPlace(BlockPlaceEvent event) {
         if (!isSessionPlayer(event.getPlayer())) return;
         if (!isInSessionWorld(event.getBlock().getWorld())) return;
@@ -146,7 +143,7 @@ public final class TimelineInputHandler implements Listener {
         if (w == null) return;
 
         final Block target = w.getBlockAt(loc.getBlockX(), activeLayerY.getAsInt(), loc.getBlockZ());
-        final TimelineCell cell = editor.toCell(target.getLocation(), trackLength.getAsInt());
+        final TimelineCell cell = editor.toCell(target.getX(), target.getY(), target.getZ(), trackLength.getAsInt());
         if (cell == null) {
             event.setCancelled(true);
             final Player p = player.get();
@@ -154,41 +151,25 @@ public final class TimelineInputHandler implements Listener {
             return;
         }
 
-        final Material marker = InstrumentPalette.byId(instrumentId).marker;
-        target.setType(marker, false);
-
         event.setCancelled(true);
         event.getPlayer().getInventory().setItem(event.getHand(), controlItems.normalizeTokenStack(inHand));
 
-        editor.upsertNote(score, target.getLocation(), instrumentId, activeLayerIndex.getAsInt(), trackLength.getAsInt());
+        editor.upsertNote(score, w, target.getX(), target.getY(), target.getZ(), instrumentId, activeLayerIndex.getAsInt(), trackLength.getAsInt());
         editor.previewNote(player.get(), instrumentId, cell.pitch());
-
-        // If currently playing, restart so new notes are picked up immediately.
-        final SettingsMenus.Callbacks cb = settingsCallbacks.get();
-        if (cb != null && cb.isPlaying()) {
-            cb.setTicksPerStep(cb.ticksPerStep());
-        }
     }
 
-    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onBreak(BlockBreakEvent event) {
         if (!isSessionPlayer(event.getPlayer())) return;
         if (!isInSessionWorld(event.getBlock().getWorld())) return;
 
         final Block block = event.getBlock();
-        final NoteEvent removed = editor.removeNoteAt(score, block);
+        final NoteEvent removed = editor.removeNoteAt(score, block.getWorld(), block.getX(), block.getY(), block.getZ(), trackLength.getAsInt());
         if (removed != null) {
             event.setCancelled(true);
             editor.previewNote(player.get(), removed.instrumentId(), removed.pitch());
-
-            final SettingsMenus.Callbacks cb = settingsCallbacks.get();
-            if (cb != null && cb.isPlaying()) {
-                cb.setTicksPerStep(cb.ticksPerStep());
-            }
         }
     }
 
-    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onInventoryClick(InventoryClickEvent event) {
         if (!(event.getWhoClicked() instanceof Player p)) return;
         if (!isSessionPlayer(p)) return;
@@ -234,7 +215,6 @@ public final class TimelineInputHandler implements Listener {
         }
     }
 
-    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = false)
     public void onInteract(PlayerInteractEvent event) {
         final Player sp = player.get();
         final World sw = world.get();
@@ -263,8 +243,8 @@ public final class TimelineInputHandler implements Listener {
                 return;
             }
 
-            final Integer idx = targeting.raycastTimeIndex(sp, sw, trackLength.getAsInt(), activeLayerY.getAsInt());
-            if (idx == null) {
+            final int idx = targeting.pickTimeIndex(sp, sw, trackLength.getAsInt(), activeLayerY.getAsInt());
+            if (idx < 0) {
                 sp.sendActionBar(ChatColor.RED + "Look at the track to set a range.");
                 return;
             }
@@ -281,9 +261,9 @@ public final class TimelineInputHandler implements Listener {
         }
 
         if (action == Action.LEFT_CLICK_AIR || action == Action.LEFT_CLICK_BLOCK) {
-            final Block target = targeting.raycastTrackCellBlock(sp, sw, trackLength.getAsInt(), activeLayerY.getAsInt());
-            if (target != null) {
-                final NoteEvent removed = editor.removeNoteAt(score, target);
+            final int y = activeLayerY.getAsInt();
+            if (targeting.pick(sp, sw, trackLength.getAsInt(), y)) {
+                final NoteEvent removed = editor.removeNoteAt(score, sw, targeting.pickedX(), y, targeting.pickedZ(), trackLength.getAsInt());
                 if (removed != null) {
                     editor.previewNote(sp, removed.instrumentId(), removed.pitch());
                     event.setCancelled(true);
@@ -332,22 +312,16 @@ public final class TimelineInputHandler implements Listener {
 
         final Integer instrumentId = controlItems.getInstrumentId(item);
         if (instrumentId != null) {
-            final Block target = targeting.raycastTrackCellBlock(sp, sw, trackLength.getAsInt(), activeLayerY.getAsInt());
-            if (target != null) {
-                final TimelineCell cell = editor.toCell(target.getLocation(), trackLength.getAsInt());
-                if (cell != null) {
-                    event.setCancelled(true);
-                    final Material marker = InstrumentPalette.byId(instrumentId).marker;
-                    target.setType(marker, false);
-                    editor.upsertNote(score, target.getLocation(), instrumentId, activeLayerIndex.getAsInt(), trackLength.getAsInt());
-                    editor.previewNote(sp, instrumentId, cell.pitch());
-                    sp.getInventory().setItemInMainHand(controlItems.normalizeTokenStack(item));
-                }
+            final int y = activeLayerY.getAsInt();
+            if (targeting.pick(sp, sw, trackLength.getAsInt(), y)) {
+                event.setCancelled(true);
+                editor.upsertNote(score, sw, targeting.pickedX(), y, targeting.pickedZ(), instrumentId, activeLayerIndex.getAsInt(), trackLength.getAsInt());
+                editor.previewNote(sp, instrumentId, targeting.pickedPitch());
+                sp.getInventory().setItemInMainHand(controlItems.normalizeTokenStack(item));
             }
         }
     }
 
-    @EventHandler(priority = EventPriority.HIGHEST)
     public void onSwap(PlayerSwapHandItemsEvent event) {
         if (!isSessionPlayer(event.getPlayer())) return;
         if (!isInSessionWorld(event.getPlayer().getWorld())) return;
@@ -0,0 +1,85 @@
+package ax.nk.noteblock.game.timeline.input;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerSwapHandItemsEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The one Bukkit listener for timeline input, shared by all sessions.
+ *
+ * Each session registers its {@link TimelineInputHandler} under its player's id, and every event goes straight to
+ * the handler of the player who caused it: one map lookup, however many sessions are open. (Registering a
+ * listener per session would have Bukkit call every session for every event, each one filtering out other players.)
+ *
+ * Main thread only.
+ */
+public final class TimelineInputRouter implements Listener {
+
+    private final Map<UUID, TimelineInputHandler> handlers = new HashMap<>();
+
+    public TimelineInputRouter(Plugin plugin) {
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+    }
+
+    public void shutdown() {
+        HandlerList.unregisterAll(this);
+        handlers.clear();
+    }
+
+    public void register(UUID playerId, TimelineInputHandler handler) {
+        handlers.put(playerId, handler);
+    }
+
+    /** Removes the player's handler, unless it has been replaced by another one meanwhile. */
+    public void unregister(UUID playerId, TimelineInputHandler handler) {
+        handlers.remove(playerId, handler);
+    }
+
+    public int handlerCount() {
+        return handlers.size();
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onPlace(BlockPlaceEvent event) {
+        final TimelineInputHandler handler = handlers.get(event.getPlayer().getUniqueId());
+        if (handler != null) handler.onPlace(event);
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onBreak(BlockBreakEvent event) {
+        final TimelineInputHandler handler = handlers.get(event.getPlayer().getUniqueId());
+        if (handler != null) handler.onBreak(event);
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onInventoryClick(InventoryClickEvent event) {
+        if (!(event.getWhoClicked() instanceof Player p)) return;
+        final TimelineInputHandler handler = handlers.get(p.getUniqueId());
+        if (handler != null) handler.onInventoryClick(event);
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = false)
+    public void onInteract(PlayerInteractEvent event) {
+        final TimelineInputHandler handler = handlers.get(event.getPlayer().getUniqueId());
+        if (handler != null) handler.onInteract(event);
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onSwap(PlayerSwapHandItemsEvent event) {
+        final TimelineInputHandler handler = handlers.get(event.getPlayer().getUniqueId());
+        if (handler != null) handler.onSwap(event);
+    }
+}
@@ -1,55 +1,150 @@
 package ax.nk.noteblock.game.timeline.input;
 
-import org.bukkit.FluidCollisionMode;
+import ax.nk.noteblock.game.timeline.TrackViewport;
+import org.bukkit.Location;
 import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Player;
-import org.bukkit.util.RayTraceResult;
 
-/** Raycast helpers for selecting a track cell/time index. */
+/**
+ * Picks the track cell under a player's crosshair.
+ *
+ * The track is an axis-aligned grid, so instead of tracing through the world the eye ray is intersected with the
+ * horizontal plane at the bottom of the active layer's cells (or with the floor's surface when the eye is below
+ * that plane): the x/z of the hit point is the cell. A pick allocates nothing, and the last result is reused while
+ * the eye and view direction stay within a small threshold and the layer, track length and viewport are unchanged.
+ *
+ * One instance per session; main thread only.
+ */
 public final class TrackTargeting {
 
-    private final int originX;
+    // Below these the hit point moves by well under a cell, even at the full ray distance.
+    private static final double MOVE_EPSILON = 0.01;
+    private static final float ANGLE_EPSILON = 0.05f;
+
+    private final TrackViewport viewport;
+    private final int floorY;
     private final int originZ;
     private final int trackPitchWidth;
     private final double rayDistance;
 
-    public TrackTargeting(int originX, int originZ, int trackPitchWidth, double rayDistance) {
-        this.originX = originX;
+    private final Location scratch = new Location(null, 0, 0, 0);
+
+    // Inputs of the last pick.
+    private boolean cached;
+    private double eyeX;
+    private double eyeY;
+    private double eyeZ;
+    private float yaw;
+    private float pitch;
+    private int cachedLayerY;
+    private int cachedTrackLength;
+    private int cachedViewportStart;
+
+    // Result of the last pick.
+    private boolean hit;
+    private int hitX;
+    private int hitZ;
+    private int hitTick;
+
+    /** @param floorY y of the floor's top surface, i.e. the bottom of the first layer */
+    public TrackTargeting(TrackViewport viewport, int floorY, int originZ, int trackPitchWidth, double rayDistance) {
+        this.viewport = viewport;
+        this.floorY = floorY;
         this.originZ = originZ;
         this.trackPitchWidth = trackPitchWidth;
         this.rayDistance = rayDistance;
     }
 
-    public Block raycastTrackCellBlock(Player player, World sessionWorld, int trackLength, int activeLayerY) {
-        if (player == null || sessionWorld == null) return null;
-        if (!sessionWorld.equals(player.getWorld())) return null;
+    /**
+     * Picks the cell the player looks at on the layer at {@code layerY}; read it with {@link #pickedX()} and friends.
+     *
+     * @return false when the player doesn't look at the track (within the ray distance)
+     */
+    public boolean pick(Player player, World sessionWorld, int trackLength, int layerY) {
+        if (player == null || sessionWorld == null) return false;
+        if (!sessionWorld.equals(player.getWorld())) return false;
 
-        final RayTraceResult rr = player.rayTraceBlocks(rayDistance, FluidCollisionMode.NEVER);
-        if (rr == null) return null;
+        player.getLocation(scratch);
+        final double x = scratch.getX();
+        final double y = scratch.getY() + player.getEyeHeight();
+        final double z = scratch.getZ();
+        final float yawNow = scratch.getYaw();
+        final float pitchNow = scratch.getPitch();
 
-        Block hit = rr.getHitBlock();
-        if (hit == null) return null;
+        if (cached
+                && layerY == cachedLayerY
+                && trackLength == cachedTrackLength
+                && viewport.start() == cachedViewportStart
+                && Math.abs(x - eyeX) < MOVE_EPSILON
+                && Math.abs(y - eyeY) < MOVE_EPSILON
+                && Math.abs(z - eyeZ) < MOVE_EPSILON
+                && Math.abs(yawNow - yaw) < ANGLE_EPSILON
+                && Math.abs(pitchNow - pitch) < ANGLE_EPSILON) {
+            return hit;
+        }
 
-        // When you target the side of a block, pick the adjacent block.
-        final BlockFace face = rr.getHitBlockFace();
-        if (face != null) hit = hit.getRelative(face);
+        cached = true;
+        eyeX = x;
+        eyeY = y;
+        eyeZ = z;
+        yaw = yawNow;
+        pitch = pitchNow;
+        cachedLayerY = layerY;
+        cachedTrackLength = trackLength;
+        cachedViewportStart = viewport.start();
 
-        final int dx = hit.getX() - originX;
-        final int dz = hit.getZ() - originZ;
-        if (dx < 0 || dx >= trackLength) return null;
-        if (dz < 0 || dz >= trackPitchWidth) return null;
+        hit = intersect(x, y, z, yawNow, pitchNow, trackLength, layerY);
+        return hit;
+    }
 
-        return sessionWorld.getBlockAt(hit.getX(), activeLayerY, hit.getZ());
+    /** @return time index under the crosshair, or -1 */
+    public int pickTimeIndex(Player player, World sessionWorld, int trackLength, int layerY) {
+        return pick(player, sessionWorld, trackLength, layerY) ? hitTick : -1;
     }
 
-    public Integer raycastTimeIndex(Player player, World sessionWorld, int trackLength, int activeLayerY) {
-        final Block b = raycastTrackCellBlock(player, sessionWorld, trackLength, activeLayerY);
-        if (b == null) return null;
-        final int dx = b.getX() - originX;
-        if (dx < 0 || dx >= trackLength) return null;
-        return dx;
+    /** World x of the last successful pick. */
+    public int pickedX() {
+        return hitX;
+    }
+
+    /** World z of the last successful pick. */
+    public int pickedZ() {
+        return hitZ;
     }
-}
 
+    public int pickedTick() {
+        return hitTick;
+    }
+
+    public int pickedPitch() {
+        return hitZ - originZ;
+    }
+
+    private boolean intersect(double x, double y, double z, float yawDegrees, float pitchDegrees, int trackLength, int layerY) {
+        // Minecraft view direction: yaw 0 looks towards +z, pitch 90 looks straight down.
+        final double yawRad = Math.toRadians(yawDegrees);
+        final double pitchRad = Math.toRadians(pitchDegrees);
+        final double cosPitch = Math.cos(pitchRad);
+        final double dx = -Math.sin(yawRad) * cosPitch;
+        final double dy = -Math.sin(pitchRad);
+        final double dz = Math.cos(yawRad) * cosPitch;
+        if (Math.abs(dy) < 1e-9) return false;
+
+        // Looking down from below the active layer: aim at the floor and take that column.
+        final double planeY = (y < layerY && dy < 0) ? floorY : layerY;
+        final double t = (planeY - y) / dy;
+        if (t < 0 || t > rayDistance) return false;
+
+        final int cellX = (int) Math.floor(x + dx * t);
+        final int cellZ = (int) Math.floor(z + dz * t);
+        final int tick = viewport.tickAt(cellX);
+        final int row = cellZ - originZ;
+        if (tick < 0 || tick >= trackLength) return false;
+        if (row < 0 || row >= trackPitchWidth) return false;
+
+        hitX = cellX;
+        hitZ = cellZ;
+        hitTick = tick;
+        return true;
+    }
+}
@@ -0,0 +1,22 @@
+package ax.nk.noteblock.game.timeline.playback;
+
+/** What playback does when the server falls behind and more than one step is due at once. */
+public enum LagPolicy {
+    /** Play every missed step (bounded per tick) so the song stays on time. */
+    CATCH_UP("Catch up"),
+    /** Jump the playhead to where it should be and only play the steps of the current tick. */
+    SKIP("Skip"),
+    /** Play no more steps per tick than the tempo normally needs and let the song slow down with the server. */
+    STRETCH("Stretch");
+
+    public final String label;
+
+    LagPolicy(String label) {
+        this.label = label;
+    }
+
+    public LagPolicy next() {
+        final LagPolicy[] all = values();
+        return all[(ordinal() + 1) % all.length];
+    }
+}
@@ -0,0 +1,132 @@
+package ax.nk.noteblock.game.timeline.playback;
+
+/**
+ * Wall-clock step timing for playback.
+ *
+ * Steps are scheduled on {@link System#nanoTime()} instead of by counting server ticks, so a slow server
+ * does not slow the song down and tempos are not limited to whole ticks per step; above 20 steps/sec
+ * several steps fall into one tick. Each tick {@link #poll} reports how many steps are due and, depending on
+ * the {@link LagPolicy}, how many of them should actually be heard.
+ *
+ * Also keeps the per-session timing stats shown in the tempo menu.
+ */
+final class PlaybackClock {
+
+    static final long NANOS_PER_TICK = 50_000_000L;
+
+    /** Upper bound of steps played per tick under {@link LagPolicy#CATCH_UP}; the rest of the backlog waits for later ticks. */
+    static final int MAX_CATCH_UP_STEPS = 8;
+
+    // Bounds the backlog after a very long stall; anything older is dropped.
+    private static final int MAX_STEPS_PER_POLL = 4096;
+
+    // Ticks never land exactly on a step boundary; accept a step half a tick early rather than a whole tick late.
+    private static final long EARLY_SLACK_NANOS = NANOS_PER_TICK / 2;
+
+    private long stepNanos = NANOS_PER_TICK;
+    private long nextStepAt;
+    private int audibleSteps;
+
+    private long stepsPlayed;
+    private long missedSteps;
+    private long jitterEwmaNanos;
+    private long maxJitterNanos;
+
+    void reset(long now, long stepNanos) {
+        this.stepNanos = stepNanos;
+        nextStepAt = now;
+        audibleSteps = 0;
+        stepsPlayed = 0;
+        missedSteps = 0;
+        jitterEwmaNanos = 0;
+        maxJitterNanos = 0;
+    }
+
+    /** Changes tempo without losing phase; a faster tempo shortens the wait for the pending step. */
+    void retime(long now, long stepNanos) {
+        this.stepNanos = stepNanos;
+        if (nextStepAt - now > stepNanos) nextStepAt = now + stepNanos;
+    }
+
+    /** Sets the length of the next step (tempo map segment) without touching when it is due. */
+    void setStepNanos(long stepNanos) {
+        this.stepNanos = stepNanos;
+    }
+
+    /**
+     * Consumes the steps that are due at {@code now}, at most {@code maxSteps} of them. Steps beyond
+     * {@code maxSteps} (e.g. past a tempo change) stay due and are timed with the next step length.
+     *
+     * @return how many steps the playhead should advance; the last {@link #audibleSteps()} of them are played
+     */
+    int poll(long now, LagPolicy policy, int maxSteps) {
+        final long lateness = now - nextStepAt;
+        if (lateness + EARLY_SLACK_NANOS < 0) {
+            audibleSteps = 0;
+            return 0;
+        }
+
+        final long backlog = Math.max(0L, lateness + EARLY_SLACK_NANOS) / stepNanos + 1;
+        final int due = (int) Math.min(MAX_STEPS_PER_POLL, backlog);
+        final int batch = Math.min(due, Math.max(1, maxSteps));
+        // Lateness of the first due step against its own slot: a backlog being worked off is not jitter.
+        recordJitter(lateness < 0 ? -lateness : lateness % stepNanos);
+
+        // Misses are counted per policy: steps skipped (SKIP) or dropped from the backlog (CATCH_UP).
+        // STRETCH delays steps but never misses one.
+        final int advance;
+        switch (policy) {
+            case STRETCH -> {
+                // Play what one tick normally holds; if still behind, push the rest of the song back.
+                advance = Math.min(batch, stepsPerTick());
+                nextStepAt += advance * stepNanos;
+                if (now - nextStepAt > 0) nextStepAt = now + stepNanos;
+                audibleSteps = advance;
+            }
+            case SKIP -> {
+                // Only the backlog is dropped; steps that regularly share a tick are still heard.
+                advance = batch;
+                nextStepAt += advance * stepNanos;
+                audibleSteps = Math.min(advance, stepsPerTick());
+                missedSteps += advance - audibleSteps;
+                if (advance == due && now - nextStepAt > 0) {
+                    missedSteps += backlog - due;
+                    nextStepAt = now + stepNanos;
+                }
+            }
+            default -> {
+                // Every due step is played, at most MAX_CATCH_UP_STEPS per tick; nextStepAt stays behind
+                // so the following ticks play the rest. Only a backlog beyond MAX_STEPS_PER_POLL is dropped.
+                if (backlog > MAX_STEPS_PER_POLL) {
+                    final long dropped = backlog - MAX_STEPS_PER_POLL;
+                    nextStepAt += dropped * stepNanos;
+                    missedSteps += dropped;
+                }
+                advance = Math.min(batch, MAX_CATCH_UP_STEPS);
+                nextStepAt += advance * stepNanos;
+                audibleSteps = advance;
+            }
+        }
+        stepsPlayed += audibleSteps;
+        return advance;
+    }
+
+    private int stepsPerTick() {
+        return (int) Math.max(1L, (NANOS_PER_TICK + stepNanos - 1) / stepNanos);
+    }
+
+    /** Audible steps out of the last {@link #poll} result. */
+    int audibleSteps() {
+        return audibleSteps;
+    }
+
+    PlaybackEngine.TimingStats stats() {
+        return new PlaybackEngine.TimingStats(stepsPlayed, missedSteps, jitterEwmaNanos / 1_000_000.0, maxJitterNanos / 1_000_000.0);
+    }
+
+    private void recordJitter(long jitterNanos) {
+        // EWMA with alpha = 1/8.
+        jitterEwmaNanos += (jitterNanos - jitterEwmaNanos) >> 3;
+        if (jitterNanos > maxJitterNanos) maxJitterNanos = jitterNanos;
+    }
+}
@@ -1,43 +1,69 @@
 package ax.nk.noteblock.game.timeline.playback;
 
-import ax.nk.noteblock.game.timeline.InstrumentPalette;
-import ax.nk.noteblock.game.timeline.NoteEvent;
+import ax.nk.noteblock.game.timeline.TrackViewport;
+import ax.nk.noteblock.game.timeline.score.TimelineScore;
 import ax.nk.noteblock.game.timeline.util.TimelineMath;
+import ax.nk.noteblock.session.TickDriver;
 import org.bukkit.*;
 import org.bukkit.entity.Player;
-import org.bukkit.plugin.Plugin;
-import org.bukkit.scheduler.BukkitTask;
 
-import java.util.List;
-import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.IntConsumer;
 
 /**
  * Owns playback scheduling and playhead progression for the timeline.
  *
  * Controller responsibilities:
- * - provide score access (scoreByLayer + layerCount)
+ * - provide score access (score + layerCount)
  * - provide playhead and range overlay rendering callbacks
+ * - publish {@link Settings} whenever tempo, length, range, loop or layer count change
+ *
+ * While playing, one {@link TickDriver} handler runs every server tick and asks the {@link PlaybackClock}
+ * how many steps are due, so tempo follows wall time even when the server lags (see {@link LagPolicy}).
+ * Published settings and score edits (through the {@link PlaybackSchedule}) are picked up at the next step
+ * boundary, so changes never re-register the handler or move the playhead.
  */
 public final class PlaybackEngine {
 
-    private final Plugin plugin;
+    /** Immutable playback parameters; replaced as a whole via {@link #publish}. */
+    public record Settings(TempoMap tempo,
+                           boolean loopEnabled,
+                           int trackLength,
+                           Integer rangeBegin,
+                           Integer rangeEnd,
+                           int layerCount,
+                           LagPolicy lagPolicy) {
+        public Settings {
+            Objects.requireNonNull(tempo, "tempo");
+            if (lagPolicy == null) lagPolicy = LagPolicy.CATCH_UP;
+        }
+    }
+
+    /** Timing stats of the current (or last) playback run. Jitter is how far steps landed from their due time. */
+    public record TimingStats(long stepsPlayed, long missedSteps, double meanJitterMillis, double maxJitterMillis) {
+    }
 
-    private BukkitTask task;
+    private final TickDriver tickDriver;
+
+    private final PlaybackSchedule schedule;
+    private final PlaybackClock clock = new PlaybackClock();
+    private final AtomicReference<Settings> settings;
+
+    private int handle = -1;
     private int playhead;
 
-    private int ticksPerStep;
-    private boolean loopEnabled;
+    // Handler-side state: the settings playback last observed.
+    private Settings applied;
 
-    public PlaybackEngine(Plugin plugin, int ticksPerStep, boolean loopEnabled) {
-        this.plugin = Objects.requireNonNull(plugin, "plugin");
-        this.ticksPerStep = ticksPerStep;
-        this.loopEnabled = loopEnabled;
+    public PlaybackEngine(TickDriver tickDriver, Settings initial, int trackY, TrackViewport viewport, int originZ, float[] pitchByRow) {
+        this.tickDriver = Objects.requireNonNull(tickDriver, "tickDriver");
+        this.settings = new AtomicReference<>(Objects.requireNonNull(initial, "initial"));
+        this.schedule = new PlaybackSchedule(trackY, viewport, originZ, Objects.requireNonNull(pitchByRow, "pitchByRow"));
     }
 
     public boolean isPlaying() {
-        return task != null;
+        return handle != -1;
     }
 
     public int playhead() {
@@ -48,57 +74,44 @@ public final class PlaybackEngine {
         this.playhead = playhead;
     }
 
-    public void setLoopEnabled(boolean enabled) {
-        this.loopEnabled = enabled;
-    }
-
-    public boolean loopEnabled() {
-        return loopEnabled;
+    public TimingStats timingStats() {
+        return clock.stats();
     }
 
-    public int ticksPerStep() {
-        return ticksPerStep;
+    public Settings settings() {
+        return settings.get();
     }
 
-    public void setTicksPerStep(int ticksPerStep) {
-        this.ticksPerStep = ticksPerStep;
+    /** Makes new settings visible to playback; running playback applies them at its next tick. */
+    public void publish(Settings next) {
+        settings.set(Objects.requireNonNull(next, "next"));
     }
 
     public void toggle(Player player,
                        World world,
-                       int trackLength,
-                       Integer rangeBegin,
-                       Integer rangeEnd,
-                       int layerCount,
-                       List<Map<Integer, List<NoteEvent>>> scoreByLayer,
+                       TimelineScore score,
                        IntConsumer drawPlayhead,
                        Runnable clearPlayhead,
-                       float pitchRowWidth,
-                       java.util.function.IntFunction<Float> pitchFromRow,
                        Runnable onFinishedOrStopped) {
-        if (task != null) {
+        if (handle != -1) {
             stop(clearPlayhead);
             if (onFinishedOrStopped != null) onFinishedOrStopped.run();
             return;
         }
-        start(player, world, trackLength, rangeBegin, rangeEnd, layerCount, scoreByLayer, drawPlayhead, clearPlayhead, pitchRowWidth, pitchFromRow, onFinishedOrStopped);
+        start(player, world, score, drawPlayhead, clearPlayhead, onFinishedOrStopped);
     }
 
     public void start(Player player,
                       World world,
-                      int trackLength,
-                      Integer rangeBegin,
-                      Integer rangeEnd,
-                      int layerCount,
-                      List<Map<Integer, List<NoteEvent>>> scoreByLayer,
+                      TimelineScore score,
                       IntConsumer drawPlayhead,
                       Runnable clearPlayhead,
-                      float pitchRowWidth,
-                      java.util.function.IntFunction<Float> pitchFromRow,
                       Runnable onFinished) {
         stop(clearPlayhead);
 
-        task = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+        applied = settings.get();
+        clock.reset(System.nanoTime(), applied.tempo().stepNanosAt(playhead));
+        handle = tickDriver.register(() -> {
             if (player == null || !player.isOnline()) {
                 stop(clearPlayhead);
                 return;
@@ -108,38 +121,73 @@ public final class PlaybackEngine {
                 return;
             }
 
-            final int startIndex = playbackStartIndex(trackLength, rangeBegin, rangeEnd);
-            final int endExclusive = playbackEndExclusive(trackLength, rangeBegin, rangeEnd);
-            if (startIndex >= endExclusive) {
-                stop(clearPlayhead);
-                player.sendMessage(ChatColor.RED + "Invalid range.");
-                return;
+            final long now = System.nanoTime();
+            final Settings s = settings.get();
+            // The step about to play decides how long it lasts (tempo map segment lookup, O(log markers)).
+            final long stepNanos = s.tempo().stepNanosAt(playhead);
+            if (s != applied) {
+                applied = s;
+                clock.retime(now, stepNanos);
+            } else {
+                clock.setStepNanos(stepNanos);
             }
 
-            if (playhead < startIndex || playhead >= endExclusive) {
-                playhead = startIndex;
+            // Several steps can be due in one tick (fast tempo or catching up); all audible ones are played now.
+            // A batch stops at the next tempo change or the range end (a loop may wrap into another tempo),
+            // so every step in it has the length looked up above; the rest follows next tick.
+            final int endExclusive = playbackEndExclusive(s.trackLength(), s.rangeBegin(), s.rangeEnd());
+            final int maxSteps = Math.min(s.tempo().stepsUntilChange(playhead), endExclusive - playhead);
+            final int steps = clock.poll(now, s.lagPolicy(), maxSteps);
+            final int firstAudible = steps - clock.audibleSteps();
+            for (int i = 0; i < steps && isPlaying(); i++) {
+                step(player, world, score, s, i >= firstAudible, i == steps - 1 ? drawPlayhead : null, clearPlayhead, onFinished);
             }
+        }, 0L, 1L);
+    }
 
-            if (drawPlayhead != null) drawPlayhead.accept(playhead);
-            playStep(player, world, playhead, layerCount, scoreByLayer, pitchFromRow);
-            playhead++;
-
-            if (playhead >= endExclusive) {
-                if (loopEnabled) {
-                    playhead = startIndex;
-                } else {
-                    stop(clearPlayhead);
-                    player.sendMessage(ChatColor.GRAY + "Playback finished.");
-                    if (onFinished != null) onFinished.run();
-                }
+    /** Advances the playhead by one step, playing it if {@code audible}. */
+    private void step(Player player,
+                      World world,
+                      TimelineScore score,
+                      Settings s,
+                      boolean audible,
+                      IntConsumer drawPlayhead,
+                      Runnable clearPlayhead,
+                      Runnable onFinished) {
+        final int startIndex = playbackStartIndex(s.trackLength(), s.rangeBegin(), s.rangeEnd());
+        final int endExclusive = playbackEndExclusive(s.trackLength(), s.rangeBegin(), s.rangeEnd());
+        if (startIndex >= endExclusive) {
+            stop(clearPlayhead);
+            player.sendMessage(ChatColor.RED + "Invalid range.");
+            return;
+        }
+
+        if (playhead < startIndex || playhead >= endExclusive) {
+            playhead = startIndex;
+        }
+
+        if (drawPlayhead != null) drawPlayhead.accept(playhead);
+        if (audible && score != null) {
+            schedule.refresh(score, s.trackLength(), s.layerCount());
+            schedule.dispatch(player, world, playhead);
+        }
+        playhead++;
+
+        if (playhead >= endExclusive) {
+            if (s.loopEnabled()) {
+                playhead = startIndex;
+            } else {
+                stop(clearPlayhead);
+                player.sendMessage(ChatColor.GRAY + "Playback finished.");
+                if (onFinished != null) onFinished.run();
             }
-        }, 0L, ticksPerStep);
+        }
     }
 
     public void stop(Runnable clearPlayhead) {
-        if (task != null) {
-            task.cancel();
-            task = null;
+        if (handle != -1) {
+            tickDriver.cancel(handle);
+            handle = -1;
         }
         if (clearPlayhead != null) clearPlayhead.run();
     }
@@ -163,32 +211,4 @@ public final class PlaybackEngine {
         int b = rangeEnd == null ? (max - 1) : TimelineMath.clamp(rangeEnd, min, max - 1);
         return Math.max(a, b) + 1;
     }
-
-    private static void playStep(Player player,
-                                 World world,
-                                 int tickIndex,
-                                 int layerCount,
-                                 List<Map<Integer, List<NoteEvent>>> scoreByLayer,
-                                 java.util.function.IntFunction<Float> pitchFromRow) {
-        if (player == null || world == null || scoreByLayer == null) return;
-
-        final int layersToPlay = Math.min(layerCount, scoreByLayer.size());
-        for (int layer = 0; layer < layersToPlay; layer++) {
-            final Map<Integer, List<NoteEvent>> layerMap = scoreByLayer.get(layer);
-            if (layerMap == null) continue;
-
-            final List<NoteEvent> events = layerMap.get(tickIndex);
-            if (events == null || events.isEmpty()) continue;
-
-            for (NoteEvent e : events) {
-                final InstrumentPalette palette = InstrumentPalette.byId(e.instrumentId());
-                final float pitch = pitchFromRow.apply(e.pitch());
-                player.playSound(player.getLocation(), palette.sound, SoundCategory.RECORDS, 1.0f, pitch);
-
-                final Location at = e.pos().toLocation(world).add(0.5, 0.8, 0.5);
-                world.spawnParticle(Particle.NOTE, at, 1, 0, 0, 0, 1);
-            }
-        }
-    }
 }
-
@@ -0,0 +1,206 @@
+package ax.nk.noteblock.game.timeline.playback;
+
+import ax.nk.noteblock.game.timeline.InstrumentPalette;
+import ax.nk.noteblock.game.timeline.TrackViewport;
+import ax.nk.noteblock.game.timeline.score.TimelineScore;
+import org.bukkit.Particle;
+import org.bukkit.Sound;
+import org.bukkit.SoundCategory;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Flat, tick-ordered view of a {@link TimelineScore} used by playback.
+ *
+ * - Events of tick {@code t} live in {@code [tickStart[t], tickStart[t + 1])}.
+ * - Sounds, pitches and particle Y/Z are resolved at compile time, so {@link #dispatch} allocates nothing.
+ *   Particle X depends on the {@link TrackViewport} and is worked out per dispatch.
+ * - {@link #refresh} only recompiles ticks the score reports as edited. A few edited ticks are patched in place,
+ *   moving the events after each one by its change in size (so one edit costs O(events after it), a single
+ *   array move); larger edits rebuild into a second set of arrays, copying untouched ticks over in runs.
+ */
+final class PlaybackSchedule implements TimelineScore.NoteVisitor {
+
+    // Above this many edited ticks, one rebuild pass is cheaper than moving the tail once per tick.
+    private static final int PATCH_LIMIT = 32;
+
+    private final int trackY;
+    private final TrackViewport viewport;
+    private final int originZ;
+    private final float[] pitchByRow;
+
+    private int compiledLength = -1;
+    private int compiledLayers = -1;
+
+    private int[] tickStart = new int[1];
+    private Sound[] sounds = new Sound[0];
+    private float[] pitches = new float[0];
+    private int[] ys = new int[0];
+    private int[] zs = new int[0];
+
+    // Build target, swapped with the live arrays after each compile so buffers are reused.
+    private int[] nextTickStart = new int[1];
+    private Sound[] nextSounds = new Sound[0];
+    private float[] nextPitches = new float[0];
+    private int[] nextYs = new int[0];
+    private int[] nextZs = new int[0];
+    private int cursor;
+    private int emitY;
+
+    private final BitSet dirtyTicks = new BitSet();
+
+    PlaybackSchedule(int trackY, TrackViewport viewport, int originZ, float[] pitchByRow) {
+        this.trackY = trackY;
+        this.viewport = viewport;
+        this.originZ = originZ;
+        this.pitchByRow = pitchByRow;
+    }
+
+    /** Brings the schedule up to date with the score; cheap when nothing changed. */
+    void refresh(TimelineScore score, int trackLength, int layerCount) {
+        final int layers = Math.min(layerCount, score.layerCapacity());
+        final boolean all = score.drainDirtyTicks(dirtyTicks);
+
+        if (all || trackLength != compiledLength || layers != compiledLayers) {
+            compile(score, trackLength, layers, null);
+        } else if (dirtyTicks.cardinality() > PATCH_LIMIT) {
+            compile(score, trackLength, layers, dirtyTicks);
+        } else if (!dirtyTicks.isEmpty()) {
+            patch(score, layers, dirtyTicks);
+        }
+    }
+
+    /** Plays every event of {@code tickIndex} for the player; particles only when the column is in the viewport. */
+    void dispatch(Player player, World world, int tickIndex) {
+        if (tickIndex < 0 || tickIndex >= compiledLength) return;
+
+        final boolean visible = viewport.isVisible(tickIndex);
+        final double x = viewport.worldX(tickIndex) + 0.5;
+        final int end = tickStart[tickIndex + 1];
+        for (int i = tickStart[tickIndex]; i < end; i++) {
+            player.playSound(player, sounds[i], SoundCategory.RECORDS, 1.0f, pitches[i]);
+            if (visible) world.spawnParticle(Particle.NOTE, x, ys[i] + 0.8, zs[i] + 0.5, 1, 0, 0, 0, 1);
+        }
+    }
+
+    /**
+     * Rebuilds the event arrays. With {@code dirty == null} every tick is read from the score;
+     * otherwise clean ticks are copied from the current arrays and only dirty ticks are visited.
+     */
+    private void compile(TimelineScore score, int trackLength, int layers, BitSet dirty) {
+        if (nextTickStart.length < trackLength + 1) nextTickStart = new int[trackLength + 1];
+        cursor = 0;
+
+        int tick = 0;
+        while (tick < trackLength) {
+            if (dirty != null && !dirty.get(tick)) {
+                // Copy the whole run of clean ticks in one go.
+                final int runEnd = Math.min(trackLength, nextOrEnd(dirty, tick));
+                final int from = tickStart[tick];
+                final int count = tickStart[runEnd] - from;
+                ensureCapacity(cursor + count);
+                System.arraycopy(sounds, from, nextSounds, cursor, count);
+                System.arraycopy(pitches, from, nextPitches, cursor, count);
+                System.arraycopy(ys, from, nextYs, cursor, count);
+                System.arraycopy(zs, from, nextZs, cursor, count);
+                final int shift = cursor - from;
+                for (int t = tick; t < runEnd; t++) nextTickStart[t] = tickStart[t] + shift;
+                cursor += count;
+                tick = runEnd;
+                continue;
+            }
+
+            nextTickStart[tick] = cursor;
+            emitTick(score, layers, tick);
+            tick++;
+        }
+        nextTickStart[trackLength] = cursor;
+
+        swapBuffers();
+        compiledLength = trackLength;
+        compiledLayers = layers;
+    }
+
+    /**
+     * Recompiles {@code dirty} ticks in the live arrays. Each tick is compiled into the front of the build arrays,
+     * the events after it are moved by the difference in size, and the new events are copied into place.
+     */
+    private void patch(TimelineScore score, int layers, BitSet dirty) {
+        for (int tick = dirty.nextSetBit(0); tick >= 0 && tick < compiledLength; tick = dirty.nextSetBit(tick + 1)) {
+            cursor = 0;
+            emitTick(score, layers, tick);
+
+            final int from = tickStart[tick];
+            final int oldEnd = tickStart[tick + 1];
+            final int delta = cursor - (oldEnd - from);
+            if (delta != 0) {
+                final int total = tickStart[compiledLength];
+                ensureLiveCapacity(total + delta);
+                System.arraycopy(sounds, oldEnd, sounds, oldEnd + delta, total - oldEnd);
+                System.arraycopy(pitches, oldEnd, pitches, oldEnd + delta, total - oldEnd);
+                System.arraycopy(ys, oldEnd, ys, oldEnd + delta, total - oldEnd);
+                System.arraycopy(zs, oldEnd, zs, oldEnd + delta, total - oldEnd);
+                for (int t = tick + 1; t <= compiledLength; t++) tickStart[t] += delta;
+            }
+
+            System.arraycopy(nextSounds, 0, sounds, from, cursor);
+            System.arraycopy(nextPitches, 0, pitches, from, cursor);
+            System.arraycopy(nextYs, 0, ys, from, cursor);
+            System.arraycopy(nextZs, 0, zs, from, cursor);
+        }
+    }
+
+    /** Appends the events of one tick to the build arrays. */
+    private void emitTick(TimelineScore score, int layers, int tick) {
+        for (int layer = 0; layer < layers; layer++) {
+            emitY = trackY + layer;
+            score.forEachNoteAtTick(layer, tick, this);
+        }
+    }
+
+    @Override
+    public void visit(int tickIndex, int pitch, int instrumentId) {
+        if (pitch < 0 || pitch >= pitchByRow.length) return;
+
+        ensureCapacity(cursor + 1);
+        nextSounds[cursor] = InstrumentPalette.byId(instrumentId).sound;
+        nextPitches[cursor] = pitchByRow[pitch];
+        nextYs[cursor] = emitY;
+        nextZs[cursor] = originZ + pitch;
+        cursor++;
+    }
+
+    private static int nextOrEnd(BitSet dirty, int from) {
+        final int next = dirty.nextSetBit(from);
+        return next < 0 ? Integer.MAX_VALUE : next;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= nextSounds.length) return;
+        final int capacity = Math.max(needed, Math.max(16, nextSounds.length * 2));
+        nextSounds = Arrays.copyOf(nextSounds, capacity);
+        nextPitches = Arrays.copyOf(nextPitches, capacity);
+        nextYs = Arrays.copyOf(nextYs, capacity);
+        nextZs = Arrays.copyOf(nextZs, capacity);
+    }
+
+    private void ensureLiveCapacity(int needed) {
+        if (needed <= sounds.length) return;
+        final int capacity = Math.max(needed, Math.max(16, sounds.length * 2));
+        sounds = Arrays.copyOf(sounds, capacity);
+        pitches = Arrays.copyOf(pitches, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        zs = Arrays.copyOf(zs, capacity);
+    }
+
+    private void swapBuffers() {
+        final int[] ts = tickStart; tickStart = nextTickStart; nextTickStart = ts;
+        final Sound[] s = sounds; sounds = nextSounds; nextSounds = s;
+        final float[] p = pitches; pitches = nextPitches; nextPitches = p;
+        final int[] y = ys; ys = nextYs; nextYs = y;
+        final int[] z = zs; zs = nextZs; nextZs = z;
+    }
+}
@@ -0,0 +1,35 @@
+package ax.nk.noteblock.game.timeline.playback;
+
+/**
+ * Tempo conversions. A step is one sixteenth note, so a beat is {@link #STEPS_PER_BEAT} steps.
+ *
+ * The old whole-tick tempo maps onto this as {@code bpm = 300 / ticksPerStep} (2 ticks/step = 150 BPM).
+ */
+public final class Tempo {
+
+    public static final int STEPS_PER_BEAT = 4;
+
+    private static final double TICKS_PER_SECOND = 20.0;
+    private static final double NANOS_PER_MINUTE = 60_000_000_000.0;
+
+    private Tempo() {
+    }
+
+    public static double bpmFromTicksPerStep(int ticksPerStep) {
+        return TICKS_PER_SECOND * 60.0 / (Math.max(1, ticksPerStep) * STEPS_PER_BEAT);
+    }
+
+    /** Closest whole-tick tempo (1..20), for readers that only know {@code ticksPerStep}. */
+    public static int nearestTicksPerStep(double bpm) {
+        final long ticks = Math.round(TICKS_PER_SECOND * 60.0 / (bpm * STEPS_PER_BEAT));
+        return (int) Math.max(1, Math.min(20, ticks));
+    }
+
+    public static double stepsPerSecond(double bpm) {
+        return bpm * STEPS_PER_BEAT / 60.0;
+    }
+
+    public static long stepNanos(double bpm) {
+        return Math.max(1L, Math.round(NANOS_PER_MINUTE / (bpm * STEPS_PER_BEAT)));
+    }
+}
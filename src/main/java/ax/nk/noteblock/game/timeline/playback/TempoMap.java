@@ -0,0 +1,142 @@
+package ax.nk.noteblock.game.timeline.playback;
+
+import java.util.Arrays;
+
+/**
+ * Tempo along the timeline: a base tempo from step 0 plus sorted (step, bpm) change markers.
+ *
+ * Immutable; editing returns a new map, so it can be published to playback as part of
+ * {@link PlaybackEngine.Settings}. Segment starts and a prefix table of segment start times are
+ * precomputed, so {@link #bpmAt} and {@link #nanosAt} are a binary search plus constant work.
+ */
+public final class TempoMap {
+
+    // Segment 0 is the base tempo starting at step 0; segment k > 0 is marker k - 1.
+    private final int[] segmentStart;
+    private final double[] segmentBpm;
+    private final long[] segmentStepNanos;
+    private final long[] segmentStartNanos;
+
+    private TempoMap(int[] segmentStart, double[] segmentBpm) {
+        this.segmentStart = segmentStart;
+        this.segmentBpm = segmentBpm;
+
+        final int n = segmentStart.length;
+        this.segmentStepNanos = new long[n];
+        this.segmentStartNanos = new long[n];
+        for (int i = 0; i < n; i++) {
+            segmentStepNanos[i] = Tempo.stepNanos(segmentBpm[i]);
+            if (i > 0) {
+                segmentStartNanos[i] = segmentStartNanos[i - 1] + (segmentStart[i] - segmentStart[i - 1]) * segmentStepNanos[i - 1];
+            }
+        }
+    }
+
+    public static TempoMap constant(double bpm) {
+        return new TempoMap(new int[]{0}, new double[]{bpm});
+    }
+
+    public double baseBpm() {
+        return segmentBpm[0];
+    }
+
+    public int markerCount() {
+        return segmentStart.length - 1;
+    }
+
+    public int markerStep(int markerIndex) {
+        return segmentStart[markerIndex + 1];
+    }
+
+    public double markerBpm(int markerIndex) {
+        return segmentBpm[markerIndex + 1];
+    }
+
+    public boolean hasMarkerAt(int step) {
+        return step > 0 && Arrays.binarySearch(segmentStart, step) > 0;
+    }
+
+    /** Tempo in effect while playing {@code step}. */
+    public double bpmAt(int step) {
+        return segmentBpm[segmentOf(step)];
+    }
+
+    /** Length of {@code step} in nanoseconds. */
+    public long stepNanosAt(int step) {
+        return segmentStepNanos[segmentOf(step)];
+    }
+
+    /** Steps from {@code step} up to the next tempo change, or {@link Integer#MAX_VALUE} when none follows. */
+    public int stepsUntilChange(int step) {
+        final int seg = segmentOf(step);
+        return seg + 1 < segmentStart.length ? segmentStart[seg + 1] - Math.max(0, step) : Integer.MAX_VALUE;
+    }
+
+    /** Time from the start of the song to the start of {@code step}. */
+    public long nanosAt(int step) {
+        final int seg = segmentOf(step);
+        return segmentStartNanos[seg] + (long) (Math.max(0, step) - segmentStart[seg]) * segmentStepNanos[seg];
+    }
+
+    public TempoMap withBaseBpm(double bpm) {
+        final double[] bpms = segmentBpm.clone();
+        bpms[0] = bpm;
+        return new TempoMap(segmentStart, bpms);
+    }
+
+    /** Adds or replaces the marker at {@code step}; step 0 sets the base tempo. */
+    public TempoMap withMarker(int step, double bpm) {
+        if (step <= 0) return withBaseBpm(bpm);
+
+        final int idx = Arrays.binarySearch(segmentStart, step);
+        if (idx >= 0) {
+            final double[] bpms = segmentBpm.clone();
+            bpms[idx] = bpm;
+            return new TempoMap(segmentStart, bpms);
+        }
+
+        final int insertAt = -idx - 1;
+        final int n = segmentStart.length;
+        final int[] starts = new int[n + 1];
+        final double[] bpms = new double[n + 1];
+        System.arraycopy(segmentStart, 0, starts, 0, insertAt);
+        System.arraycopy(segmentBpm, 0, bpms, 0, insertAt);
+        starts[insertAt] = step;
+        bpms[insertAt] = bpm;
+        System.arraycopy(segmentStart, insertAt, starts, insertAt + 1, n - insertAt);
+        System.arraycopy(segmentBpm, insertAt, bpms, insertAt + 1, n - insertAt);
+        return new TempoMap(starts, bpms);
+    }
+
+    public TempoMap withoutMarker(int step) {
+        final int idx = step > 0 ? Arrays.binarySearch(segmentStart, step) : -1;
+        if (idx <= 0) return this;
+
+        final int n = segmentStart.length;
+        final int[] starts = new int[n - 1];
+        final double[] bpms = new double[n - 1];
+        System.arraycopy(segmentStart, 0, starts, 0, idx);
+        System.arraycopy(segmentBpm, 0, bpms, 0, idx);
+        System.arraycopy(segmentStart, idx + 1, starts, idx, n - idx - 1);
+        System.arraycopy(segmentBpm, idx + 1, bpms, idx, n - idx - 1);
+        return new TempoMap(starts, bpms);
+    }
+
+    public TempoMap withoutMarkers() {
+        return markerCount() == 0 ? this : constant(baseBpm());
+    }
+
+    /** Drops markers at or beyond {@code trackLength}. */
+    public TempoMap truncatedTo(int trackLength) {
+        int keep = segmentStart.length;
+        while (keep > 1 && segmentStart[keep - 1] >= trackLength) keep--;
+        if (keep == segmentStart.length) return this;
+        return new TempoMap(Arrays.copyOf(segmentStart, keep), Arrays.copyOf(segmentBpm, keep));
+    }
+
+    private int segmentOf(int step) {
+        if (step <= 0 || segmentStart.length == 1) return 0;
+        final int idx = Arrays.binarySearch(segmentStart, step);
+        return idx >= 0 ? idx : -idx - 2;
+    }
+}
@@ -0,0 +1,93 @@
+package ax.nk.noteblock.game.timeline.render;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Collects block writes and applies them together, skipping the ones that wouldn't change anything.
+ *
+ * - Blocks that already have the target type are skipped: no write, no light update, no packet. This is what makes
+ *   rebuilding an unchanged track cheap; every write still costs one {@link World#getBlockAt} and type check.
+ * - {@link BlockData} is created once per material and reused.
+ *
+ * Main thread only. A batch can be reused after {@link #apply()}.
+ */
+public final class BlockBatch {
+
+    private final World world;
+
+    private int[] xs = new int[256];
+    private int[] ys = new int[256];
+    private int[] zs = new int[256];
+    private Material[] materials = new Material[256];
+    private int size;
+
+    private final Map<Material, BlockData> blockData = new EnumMap<>(Material.class);
+
+    private int written;
+    private int skipped;
+
+    public BlockBatch(World world) {
+        this.world = world;
+    }
+
+    public void set(int x, int y, int z, Material material) {
+        if (size == xs.length) grow();
+
+        xs[size] = x;
+        ys[size] = y;
+        zs[size] = z;
+        materials[size] = material;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Blocks actually changed by all {@link #apply()} calls so far. */
+    public int written() {
+        return written;
+    }
+
+    /** Writes skipped because the block already matched. */
+    public int skipped() {
+        return skipped;
+    }
+
+    /** Applies pending writes in the order they were made, so later writes to the same block win. */
+    public void apply() {
+        if (size == 0 || world == null) {
+            size = 0;
+            return;
+        }
+
+        for (int i = 0; i < size; i++) {
+            final Material material = materials[i];
+            final Block block = world.getBlockAt(xs[i], ys[i], zs[i]);
+            if (block.getType() == material) {
+                skipped++;
+                continue;
+            }
+            block.setBlockData(blockData.computeIfAbsent(material, Material::createBlockData), false);
+            written++;
+        }
+
+        Arrays.fill(materials, 0, size, null);
+        size = 0;
+    }
+
+    private void grow() {
+        final int capacity = xs.length * 2;
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        zs = Arrays.copyOf(zs, capacity);
+        materials = Arrays.copyOf(materials, capacity);
+    }
+}
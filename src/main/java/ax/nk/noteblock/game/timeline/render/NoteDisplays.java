@@ -0,0 +1,67 @@
+package ax.nk.noteblock.game.timeline.render;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.BlockDisplay;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Note markers shown as {@link BlockDisplay} entities instead of blocks.
+ *
+ * Each track cell gets at most one display, spawned the first time a note lands there and kept afterwards:
+ * emptying a cell only switches its display to air, so later notes (and viewport scrolls) reuse it with a
+ * single metadata update. No block, light or chunk changes are involved.
+ *
+ * Main thread only.
+ */
+final class NoteDisplays {
+
+    private final Map<Material, BlockData> blockData = new EnumMap<>(Material.class);
+
+    private BlockDisplay[] displays = new BlockDisplay[0];
+    private int spawned;
+
+    /** Shows {@code material} in the cell {@code slot} at x/y/z; air hides it. */
+    void show(World world, int slot, int x, int y, int z, Material material) {
+        if (slot >= displays.length) {
+            if (material == Material.AIR) return;
+            displays = Arrays.copyOf(displays, Math.max(slot + 1, displays.length * 2));
+        }
+
+        final BlockDisplay display = displays[slot];
+        if (display != null && display.isValid()) {
+            display.setBlock(dataFor(material));
+            return;
+        }
+        if (material == Material.AIR) return;
+
+        final BlockData data = dataFor(material);
+        displays[slot] = world.spawn(new Location(world, x, y, z), BlockDisplay.class, d -> {
+            d.setPersistent(false);
+            d.setBlock(data);
+        });
+        spawned++;
+    }
+
+    /** Displays spawned so far (visible or pooled). */
+    int spawned() {
+        return spawned;
+    }
+
+    void removeAll() {
+        for (BlockDisplay display : displays) {
+            if (display != null && display.isValid()) display.remove();
+        }
+        displays = new BlockDisplay[0];
+        spawned = 0;
+    }
+
+    private BlockData dataFor(Material material) {
+        return blockData.computeIfAbsent(material, Material::createBlockData);
+    }
+}
@@ -0,0 +1,21 @@
+package ax.nk.noteblock.game.timeline.render;
+
+import java.util.Locale;
+
+/** How note markers and the playhead are shown on the track. */
+public enum NoteMarkerMode {
+    /** Real wool blocks for notes; the playhead is a client-side block overlay. */
+    BLOCKS,
+    /** Pooled {@link org.bukkit.entity.BlockDisplay} entities; the world keeps no note blocks. */
+    DISPLAYS;
+
+    /** Parses a config value, falling back to {@link #BLOCKS}. */
+    public static NoteMarkerMode fromConfig(String value) {
+        if (value == null) return BLOCKS;
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return BLOCKS;
+        }
+    }
+}
@@ -1,99 +1,216 @@
 package ax.nk.noteblock.game.timeline.render;
 
-import ax.nk.noteblock.game.timeline.BlockPos;
+import ax.nk.noteblock.game.timeline.TrackViewport;
 import ax.nk.noteblock.game.timeline.util.TimelineMath;
+import io.papermc.paper.math.Position;
+import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.BlockDisplay;
+import org.bukkit.entity.Player;
+import org.bukkit.util.Transformation;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
-/** Renders and tracks temporary overlays like playhead and range markers. */
+/**
+ * Renders temporary overlays like playhead and range markers, for the session player only.
+ *
+ * Overlays are client-side block changes: nothing is written to the world. Each redraw sends one
+ * {@link Player#sendMultiBlockChange} batch that restores the columns the overlay left (to their real block data)
+ * and paints the columns it moved to. Only empty cells are painted, so notes stay visible; where a range
+ * marker and the playhead share a column the range marker wins. Markers outside the {@link TrackViewport} are not
+ * shown. In display mode note cells are air in the world, so {@link NoteCells} (the {@link TrackRenderer}'s shadow)
+ * tells which cells hold a note.
+ *
+ * In {@link NoteMarkerMode#DISPLAYS} mode the playhead is instead one {@link BlockDisplay} stretched over the pitch
+ * rows; moving it only updates its transformation, and clearing it shrinks it to nothing. It is spawned once and
+ * only removed by {@link #removeDisplays}.
+ */
 public final class OverlayRenderer {
 
-    private final int originX;
+    /** Whether a note is drawn at a world block; see {@link TrackRenderer#showsNoteAt}. */
+    @FunctionalInterface
+    public interface NoteCells {
+        boolean hasNote(int x, int y, int z);
+    }
+
+    private static final int NONE = Integer.MIN_VALUE;
+
+    private final TrackViewport viewport;
+    private final NoteCells noteCells;
     private final int originZ;
     private final int trackPitchWidth;
+    private final boolean displayPlayhead;
+
+    // Current overlay columns (world x + y); NONE when not shown.
+    private int playheadX = NONE;
+    private int playheadY;
+    private int rangeBeginX = NONE;
+    private int rangeEndX = NONE;
+    private int rangeY;
+
+    // Display playhead (display mode only); translation is relative to where it was spawned.
+    private BlockDisplay playheadDisplay;
+    private int playheadDisplayY;
+    // The transformation holds these vectors, so moving the playhead mutates them instead of allocating.
+    private final Vector3f playheadTranslation = new Vector3f();
+    private final Vector3f playheadScale = new Vector3f();
+    private final Transformation playheadTransformation =
+            new Transformation(playheadTranslation, new Quaternionf(), playheadScale, new Quaternionf());
 
-    private final Map<BlockPos, Material> playheadOverlay = new HashMap<>();
-    private final Map<BlockPos, Material> rangeOverlay = new HashMap<>();
+    private static final BlockData PLAYHEAD = Material.RED_STAINED_GLASS.createBlockData();
+    private static final BlockData RANGE_BEGIN = Material.BLUE_STAINED_GLASS.createBlockData();
+    private static final BlockData RANGE_END = Material.ORANGE_STAINED_GLASS.createBlockData();
 
-    public OverlayRenderer(int originX, int originZ, int trackPitchWidth) {
-        this.originX = originX;
+    private final Map<Position, BlockData> batch = new HashMap<>();
+    // Dirty (x, y) columns; all of them are visible, so a viewport's worth always fits.
+    private long[] dirtyColumns;
+    private int dirtyColumnCount;
+
+    public OverlayRenderer(TrackViewport viewport, NoteMarkerMode mode, NoteCells noteCells, int originZ, int trackPitchWidth) {
+        this.viewport = viewport;
+        this.noteCells = noteCells;
+        this.displayPlayhead = mode == NoteMarkerMode.DISPLAYS;
         this.originZ = originZ;
         this.trackPitchWidth = trackPitchWidth;
+        this.dirtyColumns = new long[Math.max(1, viewport.width())];
     }
 
-    public void clearPlayhead(World world) {
-        if (world == null) {
-            playheadOverlay.clear();
-            return;
-        }
-        for (Map.Entry<BlockPos, Material> e : playheadOverlay.entrySet()) {
-            final BlockPos pos = e.getKey();
-            final Block b = world.getBlockAt(pos.x(), pos.y(), pos.z());
-            if (b.getType() == Material.RED_STAINED_GLASS) {
-                b.setType(e.getValue(), false);
+    public void clearPlayhead(Player player, World world) {
+        if (displayPlayhead) {
+            if (playheadDisplay != null && playheadDisplay.isValid()) {
+                playheadScale.zero();
+                applyDisplayTransformation();
             }
+            return;
         }
-        playheadOverlay.clear();
+        if (playheadX == NONE) return;
+        markDirty(playheadX, playheadY);
+        playheadX = NONE;
+        flush(player, world);
     }
 
-    public void drawPlayhead(World world, int tickIndex, int y) {
-        if (world == null) return;
-        clearPlayhead(world);
-        final int x = originX + tickIndex;
-        for (int dz = 0; dz < trackPitchWidth; dz++) {
-            final int z = originZ + dz;
-            final Block b = world.getBlockAt(x, y, z);
-            if (b.getType() == Material.AIR) {
-                final BlockPos pos = BlockPos.from(b.getLocation());
-                playheadOverlay.put(pos, Material.AIR);
-                b.setType(Material.RED_STAINED_GLASS, false);
-            }
+    public void drawPlayhead(Player player, World world, int tickIndex, int y) {
+        if (displayPlayhead) {
+            moveDisplayPlayhead(world, columnX(tickIndex), y);
+            return;
         }
+        if (playheadX != NONE) markDirty(playheadX, playheadY);
+        playheadX = columnX(tickIndex);
+        playheadY = y;
+        if (playheadX != NONE) markDirty(playheadX, playheadY);
+        flush(player, world);
     }
 
-    public void clearRange(World world) {
-        if (world == null) {
-            rangeOverlay.clear();
-            return;
-        }
-        for (Map.Entry<BlockPos, Material> e : rangeOverlay.entrySet()) {
-            final BlockPos pos = e.getKey();
-            final Block b = world.getBlockAt(pos.x(), pos.y(), pos.z());
-            if (b.getType() == Material.BLUE_STAINED_GLASS || b.getType() == Material.ORANGE_STAINED_GLASS) {
-                b.setType(e.getValue(), false);
-            }
+    /** Removes the display playhead for good; call when the session ends. */
+    public void removeDisplays() {
+        if (playheadDisplay != null && playheadDisplay.isValid()) playheadDisplay.remove();
+        playheadDisplay = null;
+    }
+
+    public void clearRange(Player player, World world) {
+        markRangeDirty();
+        rangeBeginX = NONE;
+        rangeEndX = NONE;
+        flush(player, world);
+    }
+
+    public void redrawRange(Player player, World world, Integer begin, Integer end, int trackLength, int activeLayerY) {
+        markRangeDirty();
+        rangeBeginX = NONE;
+        rangeEndX = NONE;
+        rangeY = activeLayerY;
+
+        if (trackLength > 0) {
+            if (begin != null) rangeBeginX = columnX(TimelineMath.clamp(begin, 0, trackLength - 1));
+            if (end != null) rangeEndX = columnX(TimelineMath.clamp(end, 0, trackLength - 1));
         }
-        rangeOverlay.clear();
+        markRangeDirty();
+        flush(player, world);
     }
 
-    public void redrawRange(World world, Integer begin, Integer end, int trackLength, int activeLayerY) {
-        clearRange(world);
+    private void moveDisplayPlayhead(World world, int x, int y) {
         if (world == null) return;
-        if (trackLength <= 0) return;
+        if (playheadDisplay == null || !playheadDisplay.isValid()) {
+            final Location at = new Location(world, viewport.originX(), y, originZ);
+            playheadDisplay = world.spawn(at, BlockDisplay.class, d -> {
+                d.setPersistent(false);
+                d.setBlock(Material.RED_STAINED_GLASS.createBlockData());
+            });
+            playheadDisplayY = y;
+        }
 
-        if (begin != null) {
-            drawRangeMarker(world, TimelineMath.clamp(begin, 0, trackLength - 1), activeLayerY, Material.BLUE_STAINED_GLASS);
+        // Outside the viewport: shrink to nothing rather than respawning later.
+        final boolean shown = x != NONE;
+        playheadTranslation.set(shown ? x - viewport.originX() : 0, y - playheadDisplayY, 0);
+        if (shown) {
+            playheadScale.set(1, 1, trackPitchWidth);
+        } else {
+            playheadScale.zero();
         }
-        if (end != null) {
-            drawRangeMarker(world, TimelineMath.clamp(end, 0, trackLength - 1), activeLayerY, Material.ORANGE_STAINED_GLASS);
+        applyDisplayTransformation();
+    }
+
+    private void applyDisplayTransformation() {
+        playheadDisplay.setTransformation(playheadTransformation);
+        playheadDisplay.setInterpolationDelay(0);
+        playheadDisplay.setInterpolationDuration(0);
+    }
+
+    private int columnX(int tickIndex) {
+        return viewport.isVisible(tickIndex) ? viewport.worldX(tickIndex) : NONE;
+    }
+
+    private void markRangeDirty() {
+        if (rangeBeginX != NONE) markDirty(rangeBeginX, rangeY);
+        if (rangeEndX != NONE) markDirty(rangeEndX, rangeY);
+    }
+
+    private void markDirty(int x, int y) {
+        final long key = ((long) x << 32) | (y & 0xFFFFFFFFL);
+        for (int i = 0; i < dirtyColumnCount; i++) {
+            if (dirtyColumns[i] == key) return;
         }
+        if (dirtyColumnCount == dirtyColumns.length) dirtyColumns = Arrays.copyOf(dirtyColumns, dirtyColumnCount * 2);
+        dirtyColumns[dirtyColumnCount++] = key;
     }
 
-    private void drawRangeMarker(World world, int timeIndex, int y, Material mat) {
-        final int x = originX + timeIndex;
-        for (int dz = 0; dz < trackPitchWidth; dz++) {
-            final int z = originZ + dz;
-            final Block b = world.getBlockAt(x, y, z);
-            if (b.getType() == Material.AIR) {
-                final BlockPos pos = BlockPos.from(b.getLocation());
-                rangeOverlay.put(pos, Material.AIR);
-                b.setType(mat, false);
+    /** Sends the current overlay state of every dirty column in one packet. */
+    private void flush(Player player, World world) {
+        final int columns = dirtyColumnCount;
+        dirtyColumnCount = 0;
+        if (columns == 0 || world == null || player == null || !player.isOnline() || !world.equals(player.getWorld())) {
+            return;
+        }
+
+        batch.clear();
+        for (int i = 0; i < columns; i++) {
+            final int x = (int) (dirtyColumns[i] >> 32);
+            final int y = (int) dirtyColumns[i];
+            final BlockData overlay = overlayAt(x, y);
+            for (int dz = 0; dz < trackPitchWidth; dz++) {
+                final int z = originZ + dz;
+                // Block data only: unlike getState() this doesn't snapshot the block.
+                final BlockData real = world.getBlockAt(x, y, z).getBlockData();
+                final boolean empty = real.getMaterial() == Material.AIR && !(displayPlayhead && noteCells.hasNote(x, y, z));
+                batch.put(Position.block(x, y, z), overlay != null && empty ? overlay : real);
             }
         }
+        player.sendMultiBlockChange(batch);
+        batch.clear();
     }
-}
 
+    private BlockData overlayAt(int x, int y) {
+        if (y == rangeY) {
+            if (x == rangeBeginX) return RANGE_BEGIN;
+            if (x == rangeEndX) return RANGE_END;
+        }
+        if (x == playheadX && y == playheadY) return PLAYHEAD;
+        return null;
+    }
+}
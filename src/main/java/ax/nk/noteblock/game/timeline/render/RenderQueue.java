@@ -0,0 +1,92 @@
+package ax.nk.noteblock.game.timeline.render;
+
+import ax.nk.noteblock.session.TickDriver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spreads block writes of all sessions across ticks.
+ *
+ * Every tick the queue hands out at most {@code blocksPerTick} block writes, shared round-robin between the
+ * jobs that still have work, so one big render can't stall the tick and several renders progress together.
+ *
+ * Main thread only.
+ */
+public final class RenderQueue {
+
+    /** Incremental work that can be cut off after roughly {@code budget} block writes. */
+    interface Job {
+        /** @return budget used; the job is dropped from the queue once {@link #isDone()} */
+        int drain(int budget);
+
+        boolean isDone();
+    }
+
+    // Keeps tiny shares from degrading into one column per job per tick.
+    private static final int MIN_SHARE = 256;
+
+    private final TickDriver tickDriver;
+    private final int blocksPerTick;
+
+    private final List<Job> jobs = new ArrayList<>();
+    private int nextJob;
+    private int handle = -1;
+
+    public RenderQueue(TickDriver tickDriver, int blocksPerTick) {
+        this.tickDriver = tickDriver;
+        this.blocksPerTick = Math.max(1, blocksPerTick);
+    }
+
+    public int blocksPerTick() {
+        return blocksPerTick;
+    }
+
+    public int jobCount() {
+        return jobs.size();
+    }
+
+    void enqueue(Job job) {
+        if (jobs.contains(job)) return;
+        jobs.add(job);
+        if (handle < 0) handle = tickDriver.register(this::tick, 1L, 1L);
+    }
+
+    void remove(Job job) {
+        final int idx = jobs.indexOf(job);
+        if (idx < 0) return;
+        jobs.remove(idx);
+        if (idx < nextJob) nextJob--;
+        stopIfIdle();
+    }
+
+    private void tick() {
+        int budget = blocksPerTick;
+        final int share = Math.max(Math.min(MIN_SHARE, blocksPerTick), blocksPerTick / Math.max(1, jobs.size()));
+
+        // Start where the previous tick stopped so no job is starved when the budget runs out.
+        int visited = 0;
+        while (budget > 0 && !jobs.isEmpty() && visited < jobs.size()) {
+            if (nextJob >= jobs.size()) nextJob = 0;
+            final Job job = jobs.get(nextJob);
+
+            budget -= job.drain(Math.min(share, budget));
+            // Completion callbacks may have cancelled the job already.
+            if (nextJob >= jobs.size() || jobs.get(nextJob) != job) continue;
+            if (job.isDone()) {
+                jobs.remove(nextJob);
+            } else {
+                nextJob++;
+                visited++;
+            }
+        }
+        stopIfIdle();
+    }
+
+    private void stopIfIdle() {
+        if (!jobs.isEmpty() || handle < 0) return;
+        tickDriver.cancel(handle);
+        handle = -1;
+        nextJob = 0;
+    }
+}
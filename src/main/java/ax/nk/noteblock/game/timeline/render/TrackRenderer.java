@@ -1,120 +1,310 @@
 package ax.nk.noteblock.game.timeline.render;
 
-import ax.nk.noteblock.game.timeline.BlockPos;
 import ax.nk.noteblock.game.timeline.InstrumentPalette;
-import ax.nk.noteblock.game.timeline.NoteEvent;
-import org.bukkit.Location;
+import ax.nk.noteblock.game.timeline.TrackViewport;
+import ax.nk.noteblock.game.timeline.score.TimelineScore;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 
-/** Responsible for building the track in the world and repainting notes. */
-public final class TrackRenderer {
+/**
+ * Responsible for building the track in the world and repainting notes.
+ *
+ * - Only the {@link TrackViewport} window is drawn: shadow and pending state are per world column, and each
+ *   column shows whatever time index the viewport currently maps to it. Scrolling is just another render.
+ * - Keeps a shadow copy of what is drawn (one byte per note cell: 0 = empty, otherwise instrument id + 1,
+ *   and one byte per column for the floor), so only cells that differ from the score are written.
+ * - {@link #render} only marks columns as pending; the {@link RenderQueue} reconciles them over the next ticks,
+ *   nearest to the viewer first, reading the score as it goes. {@link #whenDrawn} runs once nothing is pending.
+ * - Everything that changes the track blocks must go through this class, or the shadow goes stale.
+ * - In {@link NoteMarkerMode#DISPLAYS} mode notes are {@link NoteDisplays} entities; the floor stays blocks.
+ */
+public final class TrackRenderer implements RenderQueue.Job {
+
+    private static final Material[] CELL_MATERIALS = new Material[InstrumentPalette.values().length + 1];
+
+    static {
+        CELL_MATERIALS[0] = Material.AIR;
+        for (InstrumentPalette p : InstrumentPalette.values()) CELL_MATERIALS[p.id + 1] = p.marker;
+    }
+
+    private static final byte FLOOR_NONE = 0;
+    private static final byte FLOOR_PLAIN = 1;
+    private static final byte FLOOR_BORDER = 2;
+
+    private final RenderQueue queue;
+    private final TrackViewport viewport;
+    // Null in block mode.
+    private final NoteDisplays displays;
 
     private final int baseY;
     private final int trackY;
     private final int layerCount;
     private final int trackPitchWidth;
 
-    private final int originX;
     private final int originZ;
 
-    public TrackRenderer(int baseY, int trackY, int layerCount, int trackPitchWidth, int originX, int originZ) {
+    // Column-major: cell (column, layer, pitch) is at (column * layerCount + layer) * trackPitchWidth + pitch.
+    private final int cellsPerColumn;
+    private byte[] drawn = new byte[0];
+    private byte[] floor = new byte[0];
+    // World columns [0, extent) may have blocks; unknown columns are written in full on their next reconcile.
+    private int extent;
+    private final BitSet unknown = new BitSet();
+    private final BitSet pending = new BitSet();
+
+    // Latest render target.
+    private World world;
+    private Player viewer;
+    private TimelineScore score;
+    private int length;
+
+    private final byte[] columnTarget;
+    private int collectLayer;
+    private final TimelineScore.NoteVisitor collect = this::collectNote;
+
+    private final List<Runnable> onDrawn = new ArrayList<>();
+
+    public TrackRenderer(RenderQueue queue, TrackViewport viewport, NoteMarkerMode mode, int baseY, int trackY, int layerCount, int trackPitchWidth, int originZ) {
+        this.queue = queue;
+        this.viewport = viewport;
+        this.displays = mode == NoteMarkerMode.DISPLAYS ? new NoteDisplays() : null;
         this.baseY = baseY;
         this.trackY = trackY;
         this.layerCount = layerCount;
         this.trackPitchWidth = trackPitchWidth;
-        this.originX = originX;
         this.originZ = originZ;
+        this.cellsPerColumn = layerCount * trackPitchWidth;
+        this.columnTarget = new byte[cellsPerColumn];
     }
 
     public int layerY(int layerIndex) {
         return trackY + layerIndex;
     }
 
-    public void buildTrack(World world, Player player, int trackLength) {
+    /** Forgets the shadow and redraws the whole track; use when the world's contents are unknown. */
+    public void rebuild(World world, Player viewer, int trackLength, TimelineScore score) {
+        if (world == null || score == null) return;
+
+        // Anything may be standing anywhere in the window, not just within the track.
+        extent = Math.max(extent, viewport.width());
+        render(world, viewer, trackLength, score);
+        unknown.set(0, extent);
+    }
+
+    /**
+     * Schedules the viewport window to be brought in line with {@code score} and {@code trackLength}.
+     * Columns past the end of the track are cleared. Call again after the viewport scrolls.
+     */
+    public void render(World world, Player viewer, int trackLength, TimelineScore score) {
+        if (world == null || score == null) return;
+
+        this.world = world;
+        this.viewer = viewer;
+        this.score = score;
+        this.length = Math.max(0, trackLength);
+
+        extent = Math.max(extent, visibleColumns());
+        ensureCapacity(extent);
+        pending.set(0, extent);
+        queue.enqueue(this);
+    }
+
+    /** Runs {@code action} once the track is fully drawn (right away if it already is). */
+    public void whenDrawn(Runnable action) {
+        if (pending.isEmpty()) {
+            action.run();
+        } else {
+            onDrawn.add(action);
+        }
+    }
+
+    public boolean isDrawing() {
+        return !pending.isEmpty();
+    }
+
+    /** Drops pending work and callbacks, e.g. when the session world goes away. */
+    public void cancel() {
+        pending.clear();
+        onDrawn.clear();
+        queue.remove(this);
+        if (displays != null) displays.removeAll();
+        world = null;
+        viewer = null;
+        score = null;
+    }
+
+    /** Draws or erases ({@code instrumentId < 0}) a single note cell right away, if it is in the viewport. */
+    public void setCell(World world, int layerIndex, int tickIndex, int pitch, int instrumentId) {
         if (world == null) return;
+        if (layerIndex < 0 || layerIndex >= layerCount || pitch < 0 || pitch >= trackPitchWidth) return;
+        final int column = tickIndex - viewport.start();
+        if (column < 0 || column >= extent) return;
 
-        // Build BASE_Y floor once, and clear all layers above.
-        for (int dx = 0; dx < trackLength; dx++) {
-            for (int dz = 0; dz < trackPitchWidth; dz++) {
-                final int x = originX + dx;
-                final int z = originZ + dz;
+        final byte cell = instrumentId < 0 ? 0 : (byte) (InstrumentPalette.byId(instrumentId).id + 1);
+        final int i = cellIndex(column, layerIndex, pitch);
+        if (drawn[i] == cell && !unknown.get(column)) return;
 
-                final Material floor = (dz & 1) == 0 ? Material.BROWN_CONCRETE : Material.TERRACOTTA;
-                world.getBlockAt(x, baseY, z).setType(floor, false);
+        final int x = viewport.originX() + column;
+        if (displays != null) {
+            displays.show(world, i, x, layerY(layerIndex), originZ + pitch, CELL_MATERIALS[cell]);
+        } else {
+            world.getBlockAt(x, layerY(layerIndex), originZ + pitch).setType(CELL_MATERIALS[cell], false);
+        }
+        drawn[i] = cell;
+    }
 
-                for (int layer = 0; layer < layerCount; layer++) {
-                    world.getBlockAt(x, layerY(layer), z).setType(Material.AIR, false);
-                }
+    /** Whether a note is drawn at the given world block, as far as the shadow knows. */
+    public boolean showsNoteAt(int x, int y, int z) {
+        final int column = x - viewport.originX();
+        final int layer = y - trackY;
+        final int pitch = z - originZ;
+        if (column < 0 || column >= extent || layer < 0 || layer >= layerCount || pitch < 0 || pitch >= trackPitchWidth) {
+            return false;
+        }
+        return drawn[cellIndex(column, layer, pitch)] != 0;
+    }
 
-                // Only keep the time borders black; pitch edges remain playable alternating floor.
-                if (dx == 0 || dx == trackLength - 1) {
-                    world.getBlockAt(x, baseY, z).setType(Material.BLACK_CONCRETE, false);
-                }
-            }
+    @Override
+    public int drain(int budget) {
+        if (world == null || score == null) {
+            pending.clear();
+            fireDrawn();
+            return 0;
         }
 
-        // Direction indicator strip
-        final int zArrow = originZ + trackPitchWidth;
-        for (int dx = 0; dx < trackLength; dx++) {
-            world.getBlockAt(originX + dx, baseY, zArrow).setType(Material.DARK_OAK_PLANKS, false);
+        final BlockBatch batch = new BlockBatch(world);
+        final int viewColumn = viewColumn();
+
+        int used = 0;
+        while (used < budget && !pending.isEmpty()) {
+            final int dx = nearestPending(viewColumn);
+            pending.clear(dx);
+            // Visiting a column costs one unit even when nothing needs writing.
+            used += 1 + reconcileColumn(batch, dx);
+        }
+        batch.apply();
+
+        if (pending.isEmpty()) {
+            // Everything past the end of the track has been cleared by now.
+            extent = visibleColumns();
+            fireDrawn();
         }
+        return used;
     }
 
-    public void redrawNotes(World world, int trackLength, List<Map<Integer, List<NoteEvent>>> scoreByLayer) {
-        if (world == null || scoreByLayer == null) return;
+    @Override
+    public boolean isDone() {
+        return pending.isEmpty();
+    }
 
-        for (int layer = 0; layer < layerCount; layer++) {
-            final Map<Integer, List<NoteEvent>> map = scoreByLayer.get(layer);
-            if (map == null || map.isEmpty()) continue;
+    private void fireDrawn() {
+        if (onDrawn.isEmpty()) return;
+        final List<Runnable> actions = new ArrayList<>(onDrawn);
+        onDrawn.clear();
+        for (Runnable action : actions) action.run();
+    }
 
-            final int y = layerY(layer);
-            for (Map.Entry<Integer, List<NoteEvent>> e : map.entrySet()) {
-                final int tickIndex = e.getKey();
-                if (tickIndex < 0 || tickIndex >= trackLength) continue;
+    private int viewColumn() {
+        if (viewer == null || !viewer.isOnline() || !world.equals(viewer.getWorld())) return 0;
+        return viewer.getLocation().getBlockX() - viewport.originX();
+    }
 
-                final List<NoteEvent> list = e.getValue();
-                if (list == null) continue;
+    private int nearestPending(int column) {
+        final int c = Math.max(0, Math.min(column, extent - 1));
+        final int right = pending.nextSetBit(c);
+        final int left = pending.previousSetBit(c);
+        if (left < 0) return right;
+        if (right < 0) return left;
+        return c - left <= right - c ? left : right;
+    }
 
-                for (NoteEvent n : list) {
-                    final BlockPos pos = n.pos();
-                    final int dx = pos.x() - originX;
-                    final int dz = pos.z() - originZ;
-                    if (dx < 0 || dx >= trackLength) continue;
-                    if (dz < 0 || dz >= trackPitchWidth) continue;
+    /** @return blocks queued for writing */
+    private int reconcileColumn(BlockBatch batch, int dx) {
+        final boolean full = unknown.get(dx);
+        unknown.clear(dx);
+        int writes = 0;
 
-                    final Material marker = InstrumentPalette.byId(n.instrumentId()).marker;
-                    world.getBlockAt(pos.x(), y, pos.z()).setType(marker, false);
+        final int tick = viewport.start() + dx;
+        final boolean inside = tick < length;
+        final byte wantFloor = !inside ? FLOOR_NONE : tick == 0 || tick == length - 1 ? FLOOR_BORDER : FLOOR_PLAIN;
+        if (full || floor[dx] != wantFloor) {
+            writes += writeFloor(batch, dx, wantFloor);
+            floor[dx] = wantFloor;
+        }
+
+        Arrays.fill(columnTarget, (byte) 0);
+        if (inside) {
+            final int layers = Math.min(layerCount, score.layerCapacity());
+            for (int layer = 0; layer < layers; layer++) {
+                collectLayer = layer;
+                score.forEachNoteAtTick(layer, tick, collect);
+            }
+        }
+
+        final int x = viewport.originX() + dx;
+        final int base = dx * cellsPerColumn;
+        for (int c = 0; c < cellsPerColumn; c++) {
+            final byte cell = columnTarget[c];
+            if (!full && drawn[base + c] == cell) continue;
+            final int y = layerY(c / trackPitchWidth);
+            final int z = originZ + c % trackPitchWidth;
+            if (displays != null) {
+                // Cells are always air in the world here; only an unknown column may need clearing.
+                if (full) {
+                    batch.set(x, y, z, Material.AIR);
+                    writes++;
                 }
+                displays.show(world, base + c, x, y, z, CELL_MATERIALS[cell]);
+            } else {
+                batch.set(x, y, z, CELL_MATERIALS[cell]);
             }
+            drawn[base + c] = cell;
+            writes++;
         }
+        return writes;
     }
 
-    public void clearWorldColumnsOutsideLength(World world, int startInclusive, int endExclusive) {
-        if (world == null) return;
+    private void collectNote(int tickIndex, int pitch, int instrumentId) {
+        if (pitch < 0 || pitch >= trackPitchWidth) return;
+        columnTarget[collectLayer * trackPitchWidth + pitch] = (byte) (InstrumentPalette.byId(instrumentId).id + 1);
+    }
 
-        for (int dx = startInclusive; dx < endExclusive; dx++) {
-            final int x = originX + dx;
+    private int writeFloor(BlockBatch batch, int dx, byte state) {
+        final int x = viewport.originX() + dx;
 
-            for (int dz = 0; dz < trackPitchWidth; dz++) {
-                final int z = originZ + dz;
+        for (int dz = 0; dz < trackPitchWidth; dz++) {
+            // Only keep the time borders black; pitch edges remain playable alternating floor.
+            final Material m = switch (state) {
+                case FLOOR_NONE -> Material.AIR;
+                case FLOOR_BORDER -> Material.BLACK_CONCRETE;
+                default -> (dz & 1) == 0 ? Material.BROWN_CONCRETE : Material.TERRACOTTA;
+            };
+            batch.set(x, baseY, originZ + dz, m);
+        }
 
-                // Clear all note layers.
-                for (int layer = 0; layer < layerCount; layer++) {
-                    world.getBlockAt(x, layerY(layer), z).setType(Material.AIR, false);
-                }
+        // Direction indicator strip
+        batch.set(x, baseY, originZ + trackPitchWidth, state == FLOOR_NONE ? Material.AIR : Material.DARK_OAK_PLANKS);
+        return trackPitchWidth + 1;
+    }
 
-                // Optional: clear floor too.
-                world.getBlockAt(x, baseY, z).setType(Material.AIR, false);
-            }
+    private int visibleColumns() {
+        return Math.max(0, Math.min(viewport.width(), length - viewport.start()));
+    }
 
-            // Clear arrow strip column too.
-            final int zArrow = originZ + trackPitchWidth;
-            world.getBlockAt(x, baseY, zArrow).setType(Material.AIR, false);
-        }
+    private int cellIndex(int column, int layerIndex, int pitch) {
+        return (column * layerCount + layerIndex) * trackPitchWidth + pitch;
+    }
+
+    private void ensureCapacity(int columns) {
+        if (columns <= floor.length) return;
+        final int capacity = Math.max(columns, floor.length * 2);
+        floor = Arrays.copyOf(floor, capacity);
+        drawn = Arrays.copyOf(drawn, capacity * cellsPerColumn);
     }
 }
@@ -0,0 +1,130 @@
+package ax.nk.noteblock.game.timeline.score;
+
+/**
+ * Open-addressing map from a packed cell key (see {@link TimelineScore#cellKey}) to a note pool slot.
+ *
+ * Linear probing with backward-shift deletion, so there are no tombstones and lookups never allocate.
+ * Values are stored as {@code slot + 1}; 0 marks a free bucket.
+ */
+final class CellIndex {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    CellIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /** Exchanges the contents of the two maps. */
+    void swap(CellIndex other) {
+        final long[] k = keys;
+        keys = other.keys;
+        other.keys = k;
+        final int[] v = values;
+        values = other.values;
+        other.values = v;
+        final int m = mask;
+        mask = other.mask;
+        other.mask = m;
+        final int n = size;
+        size = other.size;
+        other.size = n;
+    }
+
+    /** @return slot for {@code key}, or -1 if absent. */
+    int get(long key) {
+        for (int i = bucket(key); ; i = (i + 1) & mask) {
+            final int v = values[i];
+            if (v == 0) return -1;
+            if (keys[i] == key) return v - 1;
+        }
+    }
+
+    void put(long key, int slot) {
+        for (int i = bucket(key); ; i = (i + 1) & mask) {
+            final int v = values[i];
+            if (v == 0) {
+                keys[i] = key;
+                values[i] = slot + 1;
+                if (++size > (mask + 1) * 3 / 4) rehash((mask + 1) * 2);
+                return;
+            }
+            if (keys[i] == key) {
+                values[i] = slot + 1;
+                return;
+            }
+        }
+    }
+
+    /** @return removed slot, or -1 if absent. */
+    int remove(long key) {
+        for (int i = bucket(key); ; i = (i + 1) & mask) {
+            final int v = values[i];
+            if (v == 0) return -1;
+            if (keys[i] != key) continue;
+
+            shiftBack(i);
+            size--;
+            return v - 1;
+        }
+    }
+
+    private void shiftBack(int hole) {
+        // Move later entries of the same probe run into the hole so lookups stay contiguous.
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == 0) break;
+
+            final int home = bucket(keys[i]);
+            final boolean movable = hole <= i
+                    ? (home <= hole || home > i)
+                    : (home <= hole && home > i);
+            if (movable) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        values[hole] = 0;
+    }
+
+    private void rehash(int newCapacity) {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != 0) put(oldKeys[i], oldValues[i] - 1);
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private int bucket(long key) {
+        // murmur3 fmix64
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
@@ -0,0 +1,36 @@
+package ax.nk.noteblock.game.timeline.score;
+
+/**
+ * Immutable copy of a {@link TimelineScore}'s notes (see {@link TimelineScore#snapshot}).
+ *
+ * Per layer, two primitive arrays in ascending tick order: the tick and the packed instrument + pitch.
+ * Safe to read from any thread while the live score keeps being edited.
+ */
+public final class ScoreSnapshot {
+
+    private final int[][] ticks;
+    private final short[][] notes;
+
+    ScoreSnapshot(int[][] ticks, short[][] notes) {
+        this.ticks = ticks;
+        this.notes = notes;
+    }
+
+    public int layerCapacity() {
+        return ticks.length;
+    }
+
+    public int noteCount(int layerIndex) {
+        return ticks[TimelineScore.clampLayerIndex(layerIndex, ticks.length)].length;
+    }
+
+    /** Visits every note of a layer in ascending tick order. */
+    public void forEachNote(int layerIndex, TimelineScore.NoteVisitor visitor) {
+        final int layer = TimelineScore.clampLayerIndex(layerIndex, ticks.length);
+        final int[] t = ticks[layer];
+        final short[] n = notes[layer];
+        for (int i = 0; i < t.length; i++) {
+            visitor.visit(t[i], TimelineScore.unpackPitch(n[i]), TimelineScore.unpackInstrument(n[i]));
+        }
+    }
+}
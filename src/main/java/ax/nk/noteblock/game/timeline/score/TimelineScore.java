@@ -1,112 +1,208 @@
 package ax.nk.noteblock.game.timeline.score;
 
-import ax.nk.noteblock.game.timeline.BlockPos;
-import ax.nk.noteblock.game.timeline.NoteEvent;
-
 import java.util.*;
 
 /**
  * Pure data structure for timeline notes.
  *
- * - Stores notes per layer by tickIndex.
- * - Keeps an index from BlockPos -> (layer,tick) for fast removals.
+ * - Stores notes column-wise: per layer, a tick-indexed head array pointing into a shared primitive note pool.
+ * - Each pool slot packs instrument + pitch into a short and is doubly linked with the other notes of its tick.
+ * - A per-layer bitset marks occupied ticks so iteration skips empty columns.
+ * - A packed (layer, tick, pitch) -> slot index resolves any cell in O(1) without allocating.
+ * - Remembers which ticks were edited so derived data (the playback schedule) can update incrementally.
+ *
+ * Nothing here boxes per note; readers walk notes through {@link NoteVisitor}.
  */
 public final class TimelineScore {
 
-    public record NoteRef(int layerIndex, int tickIndex) {
+    /** Receives notes without boxing (see {@link #forEachNote} / {@link #forEachNoteAtTick}). */
+    @FunctionalInterface
+    public interface NoteVisitor {
+        void visit(int tickIndex, int pitch, int instrumentId);
     }
 
+    /** Per-layer columns. Heads and links store {@code slot + 1} so zeroed arrays mean "empty". */
+    private static final class Layer {
+        int[] headByTick = new int[0];
+        final BitSet occupiedTicks = new BitSet();
+        int noteCount;
+    }
+
+    private static final int INITIAL_POOL_CAPACITY = 64;
+
     private final int layerCapacity;
+    private final Layer[] layers;
 
-    private final List<Map<Integer, List<NoteEvent>>> scoreByLayer;
-    private final Map<BlockPos, NoteRef> refByPos = new HashMap<>();
+    private short[] poolNote = new short[INITIAL_POOL_CAPACITY];
+    private int[] poolNext = new int[INITIAL_POOL_CAPACITY];
+    private int[] poolPrev = new int[INITIAL_POOL_CAPACITY];
+    private int poolSize;
+    private int freeHead;
+
+    private final CellIndex index = new CellIndex();
+
+    private final BitSet dirtyTicks = new BitSet();
+    private boolean dirtyAll = true;
 
     public TimelineScore(int layerCapacity) {
         this.layerCapacity = layerCapacity;
-        this.scoreByLayer = new ArrayList<>(layerCapacity);
+        this.layers = new Layer[layerCapacity];
         ensureInitialized();
     }
 
     public void clear() {
-        for (Map<Integer, List<NoteEvent>> m : scoreByLayer) m.clear();
-        refByPos.clear();
+        for (int i = 0; i < layerCapacity; i++) layers[i] = new Layer();
+        poolNote = new short[INITIAL_POOL_CAPACITY];
+        poolNext = new int[INITIAL_POOL_CAPACITY];
+        poolPrev = new int[INITIAL_POOL_CAPACITY];
+        poolSize = 0;
+        freeHead = 0;
+        index.clear();
+        markAllDirty();
     }
 
-    public List<Map<Integer, List<NoteEvent>>> scoreByLayerView() {
-        return Collections.unmodifiableList(scoreByLayer);
-    }
+    /**
+     * Exchanges all notes with {@code other} in O(1), e.g. to swap in a score decoded on another thread.
+     * Both scores are then treated as changed wholesale (see {@link #drainDirtyTicks}).
+     */
+    public void swapContents(TimelineScore other) {
+        if (other == this) return;
+        if (other.layerCapacity != layerCapacity) {
+            throw new IllegalArgumentException("Layer capacity mismatch: " + other.layerCapacity + " != " + layerCapacity);
+        }
+
+        for (int i = 0; i < layerCapacity; i++) {
+            final Layer l = layers[i];
+            layers[i] = other.layers[i];
+            other.layers[i] = l;
+        }
 
-    /** Mutable view (used by playback). */
-    public List<Map<Integer, List<NoteEvent>>> scoreByLayerMutable() {
-        return scoreByLayer;
+        final short[] note = poolNote;
+        poolNote = other.poolNote;
+        other.poolNote = note;
+        final int[] next = poolNext;
+        poolNext = other.poolNext;
+        other.poolNext = next;
+        final int[] prev = poolPrev;
+        poolPrev = other.poolPrev;
+        other.poolPrev = prev;
+        final int size = poolSize;
+        poolSize = other.poolSize;
+        other.poolSize = size;
+        final int free = freeHead;
+        freeHead = other.freeHead;
+        other.freeHead = free;
+
+        index.swap(other.index);
+        markAllDirty();
+        other.markAllDirty();
     }
 
-    public Map<BlockPos, NoteRef> refByPosView() {
-        return Collections.unmodifiableMap(refByPos);
+    public int layerCapacity() {
+        return layerCapacity;
     }
 
     public void ensureInitialized() {
-        while (scoreByLayer.size() < layerCapacity) scoreByLayer.add(new HashMap<>());
+        for (int i = 0; i < layerCapacity; i++) {
+            if (layers[i] == null) layers[i] = new Layer();
+        }
     }
 
     public static int clampLayerIndex(int idx, int layerCapacity) {
         return Math.max(0, Math.min(layerCapacity - 1, idx));
     }
 
-    public void upsertNote(TimelineCell cell, BlockPos pos, int instrumentId, int pitch, int layerIndex) {
-        ensureInitialized();
+    /** Packs a cell into one long: layer in bits 40+, tick in bits 8..39, pitch in bits 0..7. */
+    public static long cellKey(int layerIndex, int tickIndex, int pitch) {
+        return ((long) layerIndex << 40) | ((tickIndex & 0xFFFFFFFFL) << 8) | (pitch & 0xFF);
+    }
+
+    public void upsertNote(int layerIndex, int tickIndex, int pitch, int instrumentId) {
+        if (tickIndex < 0) return;
         layerIndex = clampLayerIndex(layerIndex, layerCapacity);
 
-        final int tickIndex = cell.timeIndex();
-        final NoteRef old = refByPos.put(pos, new NoteRef(layerIndex, tickIndex));
-        if (old != null) {
-            final int oldLayer = clampLayerIndex(old.layerIndex(), layerCapacity);
-            final List<NoteEvent> oldList = scoreByLayer.get(oldLayer).get(old.tickIndex());
-            if (oldList != null) {
-                oldList.removeIf(n -> n.pos().equals(pos));
-                if (oldList.isEmpty()) scoreByLayer.get(oldLayer).remove(old.tickIndex());
-            }
+        final long key = cellKey(layerIndex, tickIndex, pitch);
+        final int existing = index.get(key);
+        if (existing >= 0) {
+            poolNote[existing] = pack(instrumentId, pitch);
+        } else {
+            index.put(key, link(layers[layerIndex], tickIndex, instrumentId, pitch));
         }
-
-        scoreByLayer.get(layerIndex)
-                .computeIfAbsent(tickIndex, k -> new ArrayList<>())
-                .add(new NoteEvent(pos, instrumentId, pitch));
+        dirtyTicks.set(tickIndex);
     }
 
-    public NoteEvent removeNoteAt(BlockPos pos) {
-        ensureInitialized();
+    /** @return instrument id of the removed note, or -1 if the cell was empty. */
+    public int removeNote(int layerIndex, int tickIndex, int pitch) {
+        layerIndex = clampLayerIndex(layerIndex, layerCapacity);
 
-        final NoteRef ref = refByPos.remove(pos);
-        if (ref == null) return null;
-
-        final int refLayer = clampLayerIndex(ref.layerIndex(), layerCapacity);
-
-        NoteEvent removed = null;
-        final Map<Integer, List<NoteEvent>> layerScore = scoreByLayer.get(refLayer);
-        final List<NoteEvent> list = layerScore.get(ref.tickIndex());
-        if (list != null) {
-            for (Iterator<NoteEvent> it = list.iterator(); it.hasNext(); ) {
-                final NoteEvent n = it.next();
-                if (n.pos().equals(pos)) {
-                    removed = n;
-                    it.remove();
-                    break;
-                }
-            }
-            if (list.isEmpty()) layerScore.remove(ref.tickIndex());
-        }
+        final int slot = index.remove(cellKey(layerIndex, tickIndex, pitch));
+        if (slot < 0) return -1;
+
+        final int instrumentId = unpackInstrument(poolNote[slot]);
+        unlink(layers[layerIndex], tickIndex, slot);
+        dirtyTicks.set(tickIndex);
+        return instrumentId;
+    }
 
-        return removed;
+    /** @return instrument id at the given cell, or -1 if there is none. */
+    public int instrumentAt(int layerIndex, int tickIndex, int pitch) {
+        final int slot = index.get(cellKey(clampLayerIndex(layerIndex, layerCapacity), tickIndex, pitch));
+        return slot < 0 ? -1 : unpackInstrument(poolNote[slot]);
     }
 
     public boolean isLayerEmpty(int layerIndex) {
         layerIndex = clampLayerIndex(layerIndex, layerCapacity);
-        final Map<Integer, List<NoteEvent>> map = scoreByLayer.get(layerIndex);
-        if (map == null || map.isEmpty()) return true;
-        for (List<NoteEvent> list : map.values()) {
-            if (list != null && !list.isEmpty()) return false;
+        return layers[layerIndex].noteCount == 0;
+    }
+
+    public int noteCount(int layerIndex) {
+        return layers[clampLayerIndex(layerIndex, layerCapacity)].noteCount;
+    }
+
+    /** Visits every note of a layer in ascending tick order. */
+    public void forEachNote(int layerIndex, NoteVisitor visitor) {
+        final Layer layer = layers[clampLayerIndex(layerIndex, layerCapacity)];
+        if (layer.noteCount == 0) return;
+
+        final BitSet occupied = layer.occupiedTicks;
+        for (int tick = occupied.nextSetBit(0); tick >= 0; tick = occupied.nextSetBit(tick + 1)) {
+            visitTick(layer, tick, visitor);
         }
-        return true;
+    }
+
+    /** Visits the notes of a single (layer, tick) column. */
+    public void forEachNoteAtTick(int layerIndex, int tickIndex, NoteVisitor visitor) {
+        final Layer layer = layers[clampLayerIndex(layerIndex, layerCapacity)];
+        if (tickIndex < 0 || tickIndex >= layer.headByTick.length) return;
+        visitTick(layer, tickIndex, visitor);
+    }
+
+    /**
+     * Copies every note into an immutable {@link ScoreSnapshot}: O(notes), two primitive arrays per layer.
+     * Later edits to this score don't affect the snapshot.
+     */
+    public ScoreSnapshot snapshot() {
+        final int[][] ticks = new int[layerCapacity][];
+        final short[][] notes = new short[layerCapacity][];
+
+        for (int layerIndex = 0; layerIndex < layerCapacity; layerIndex++) {
+            final Layer layer = layers[layerIndex];
+            final int[] t = new int[layer.noteCount];
+            final short[] n = new short[layer.noteCount];
+
+            int i = 0;
+            final BitSet occupied = layer.occupiedTicks;
+            for (int tick = occupied.nextSetBit(0); tick >= 0; tick = occupied.nextSetBit(tick + 1)) {
+                for (int s = layer.headByTick[tick]; s != 0; s = poolNext[s - 1]) {
+                    t[i] = tick;
+                    n[i] = poolNote[s - 1];
+                    i++;
+                }
+            }
+            ticks[layerIndex] = t;
+            notes[layerIndex] = n;
+        }
+        return new ScoreSnapshot(ticks, notes);
     }
 
     /**
@@ -114,30 +210,122 @@ public final class TimelineScore {
      *
      * @return number of removed note events
      */
-    public int pruneNotesOutsideLength(int newLength, int originX) {
+    public int pruneNotesOutsideLength(int newLength) {
         int removedCount = 0;
 
-        for (int layer = 0; layer < layerCapacity; layer++) {
-            final Map<Integer, List<NoteEvent>> map = scoreByLayer.get(layer);
-            if (map == null || map.isEmpty()) continue;
-
-            final Iterator<Map.Entry<Integer, List<NoteEvent>>> it = map.entrySet().iterator();
-            while (it.hasNext()) {
-                final Map.Entry<Integer, List<NoteEvent>> e = it.next();
-                if (e.getKey() < newLength) continue;
-
-                final List<NoteEvent> list = e.getValue();
-                if (list != null) {
-                    removedCount += list.size();
-                    for (NoteEvent n : list) {
-                        refByPos.remove(n.pos());
-                    }
+        for (int layerIndex = 0; layerIndex < layerCapacity; layerIndex++) {
+            final Layer layer = layers[layerIndex];
+            if (layer.noteCount == 0) continue;
+
+            final BitSet occupied = layer.occupiedTicks;
+            for (int tick = occupied.nextSetBit(Math.max(0, newLength)); tick >= 0; tick = occupied.nextSetBit(tick + 1)) {
+                int s = layer.headByTick[tick];
+                while (s != 0) {
+                    final int slot = s - 1;
+                    s = poolNext[slot];
+                    index.remove(cellKey(layerIndex, tick, unpackPitch(poolNote[slot])));
+                    freeSlot(slot);
+                    layer.noteCount--;
+                    removedCount++;
                 }
-                it.remove();
+                layer.headByTick[tick] = 0;
             }
+            if (newLength < occupied.length()) occupied.clear(Math.max(0, newLength), occupied.length());
         }
 
-        refByPos.entrySet().removeIf(e -> (e.getKey().x() - originX) >= newLength);
+        if (removedCount > 0) markAllDirty();
         return removedCount;
     }
+
+    /**
+     * Moves the ticks edited since the previous call into {@code out} (which is cleared first).
+     * There is a single consumer per score: the playback schedule.
+     *
+     * @return true if the score changed wholesale (cleared/pruned) and every tick must be treated as dirty
+     */
+    public boolean drainDirtyTicks(BitSet out) {
+        out.clear();
+        final boolean all = dirtyAll;
+        if (!all) out.or(dirtyTicks);
+        dirtyTicks.clear();
+        dirtyAll = false;
+        return all;
+    }
+
+    private void markAllDirty() {
+        dirtyTicks.clear();
+        dirtyAll = true;
+    }
+
+    // --- columns
+
+    private void visitTick(Layer layer, int tickIndex, NoteVisitor visitor) {
+        for (int s = layer.headByTick[tickIndex]; s != 0; s = poolNext[s - 1]) {
+            final short packed = poolNote[s - 1];
+            visitor.visit(tickIndex, unpackPitch(packed), unpackInstrument(packed));
+        }
+    }
+
+    private int link(Layer layer, int tickIndex, int instrumentId, int pitch) {
+        if (tickIndex >= layer.headByTick.length) {
+            layer.headByTick = Arrays.copyOf(layer.headByTick, Math.max(tickIndex + 1, Math.max(16, layer.headByTick.length * 2)));
+        }
+
+        final int slot = allocSlot();
+        final int head = layer.headByTick[tickIndex];
+        poolNote[slot] = pack(instrumentId, pitch);
+        poolNext[slot] = head;
+        poolPrev[slot] = 0;
+        if (head != 0) poolPrev[head - 1] = slot + 1;
+        layer.headByTick[tickIndex] = slot + 1;
+        layer.occupiedTicks.set(tickIndex);
+        layer.noteCount++;
+        return slot;
+    }
+
+    private void unlink(Layer layer, int tickIndex, int slot) {
+        final int prev = poolPrev[slot];
+        final int next = poolNext[slot];
+        if (prev == 0) layer.headByTick[tickIndex] = next;
+        else poolNext[prev - 1] = next;
+        if (next != 0) poolPrev[next - 1] = prev;
+        freeSlot(slot);
+
+        if (layer.headByTick[tickIndex] == 0) layer.occupiedTicks.clear(tickIndex);
+        layer.noteCount--;
+    }
+
+    // --- pool
+
+    private int allocSlot() {
+        if (freeHead != 0) {
+            final int slot = freeHead - 1;
+            freeHead = poolNext[slot];
+            return slot;
+        }
+        if (poolSize == poolNote.length) {
+            final int newCapacity = poolNote.length * 2;
+            poolNote = Arrays.copyOf(poolNote, newCapacity);
+            poolNext = Arrays.copyOf(poolNext, newCapacity);
+            poolPrev = Arrays.copyOf(poolPrev, newCapacity);
+        }
+        return poolSize++;
+    }
+
+    private void freeSlot(int slot) {
+        poolNext[slot] = freeHead;
+        freeHead = slot + 1;
+    }
+
+    private static short pack(int instrumentId, int pitch) {
+        return (short) (((instrumentId & 0xFF) << 8) | (pitch & 0xFF));
+    }
+
+    static int unpackInstrument(short packed) {
+        return (packed >> 8) & 0xFF;
+    }
+
+    static int unpackPitch(short packed) {
+        return packed & 0xFF;
+    }
 }
@@ -1,5 +1,6 @@
 package ax.nk.noteblock.game.timeline.ui;
 
+import ax.nk.noteblock.game.timeline.playback.Tempo;
 import ax.nk.noteblock.game.timeline.util.TimelineMath;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -10,7 +11,9 @@ import org.bukkit.inventory.InventoryView;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Owns and renders the timeline settings GUIs and translates clicks into callbacks.
@@ -27,8 +30,14 @@ public final class SettingsMenus {
     private static final int MAIN_LOOP_BUTTON_SLOT = 11;
 
     private static final int TEMPO_DISPLAY_SLOT = 13;
+    private static final int TEMPO_MINUS_10_SLOT = 19;
     private static final int TEMPO_MINUS_SLOT = 20;
     private static final int TEMPO_PLUS_SLOT = 24;
+    private static final int TEMPO_PLUS_10_SLOT = 25;
+    private static final int TEMPO_LAG_POLICY_SLOT = 22;
+    private static final int TEMPO_ADD_MARKER_SLOT = 11;
+    private static final int TEMPO_REMOVE_MARKER_SLOT = 15;
+    private static final int TEMPO_CLEAR_MARKERS_SLOT = 31;
     private static final int TEMPO_BACK_SLOT = 30;
     private static final int TEMPO_CLOSE_SLOT = 32;
 
@@ -54,12 +63,28 @@ public final class SettingsMenus {
 
         void setLoopEnabled(boolean enabled);
 
-        void setTicksPerStep(int newValue);
+        void setBpm(double newValue);
 
         void adjustTrackLength(int delta);
 
+        void cycleLagPolicy();
+
+        /** Places a tempo marker at the range begin. */
+        void addTempoMarker();
+
+        /** Removes the tempo marker at the range begin. */
+        void removeTempoMarker();
+
+        void clearTempoMarkers();
+
         // getters
-        int ticksPerStep();
+        /** Tempo currently edited by the tempo menu (see {@link #tempoEditTarget()}). */
+        double bpm();
+
+        /** What the tempo buttons edit, e.g. "base tempo" or "marker at step 32". */
+        String tempoEditTarget();
+
+        int tempoMarkerCount();
 
         int trackLength();
 
@@ -71,6 +96,11 @@ public final class SettingsMenus {
 
         boolean isPlaying();
 
+        String lagPolicyLabel();
+
+        /** Human-readable playback timing stats (steps, missed steps, jitter). */
+        List<String> playbackTimingLines();
+
         void resetPlayheadToRangeStartIfLooping();
     }
 
@@ -172,11 +202,29 @@ public final class SettingsMenus {
         if (shouldDebounce(now, lastTempoClickMs)) return;
         lastTempoClickMs = now;
 
-        if (rawSlot == TEMPO_MINUS_SLOT) {
-            cb.setTicksPerStep(cb.ticksPerStep() + 1);
+        if (rawSlot == TEMPO_MINUS_10_SLOT) {
+            cb.setBpm(cb.bpm() - 10);
+            redrawTempo(cb);
+        } else if (rawSlot == TEMPO_MINUS_SLOT) {
+            cb.setBpm(cb.bpm() - 1);
             redrawTempo(cb);
         } else if (rawSlot == TEMPO_PLUS_SLOT) {
-            cb.setTicksPerStep(cb.ticksPerStep() - 1);
+            cb.setBpm(cb.bpm() + 1);
+            redrawTempo(cb);
+        } else if (rawSlot == TEMPO_PLUS_10_SLOT) {
+            cb.setBpm(cb.bpm() + 10);
+            redrawTempo(cb);
+        } else if (rawSlot == TEMPO_LAG_POLICY_SLOT) {
+            cb.cycleLagPolicy();
+            redrawTempo(cb);
+        } else if (rawSlot == TEMPO_ADD_MARKER_SLOT) {
+            cb.addTempoMarker();
+            redrawTempo(cb);
+        } else if (rawSlot == TEMPO_REMOVE_MARKER_SLOT) {
+            cb.removeTempoMarker();
+            redrawTempo(cb);
+        } else if (rawSlot == TEMPO_CLEAR_MARKERS_SLOT) {
+            cb.clearTempoMarkers();
             redrawTempo(cb);
         } else if (rawSlot == TEMPO_BACK_SLOT) {
             cb.close();
@@ -252,21 +300,61 @@ public final class SettingsMenus {
 
         final ItemStack tempo = new ItemStack(Material.CLOCK);
         final ItemMeta tempoMeta = tempo.getItemMeta();
-        tempoMeta.setDisplayName(ChatColor.YELLOW + "Tempo: " + ChatColor.WHITE + cb.ticksPerStep() + " t/step");
+        tempoMeta.setDisplayName(ChatColor.YELLOW + "Tempo: " + ChatColor.WHITE + formatBpm(cb.bpm()) + " BPM");
+        tempoMeta.setLore(List.of(
+                ChatColor.GRAY + "Editing: " + ChatColor.WHITE + cb.tempoEditTarget(),
+                ChatColor.GRAY + String.format(Locale.ROOT, "%.2f steps/sec", Tempo.stepsPerSecond(cb.bpm())),
+                ChatColor.GRAY + "" + Tempo.STEPS_PER_BEAT + " steps per beat",
+                ChatColor.GRAY + "Tempo markers: " + cb.tempoMarkerCount()
+        ));
         tempo.setItemMeta(tempoMeta);
         settingsTempoInventory.setItem(TEMPO_DISPLAY_SLOT, tempo);
 
         final ItemStack minus = new ItemStack(Material.RED_STAINED_GLASS_PANE);
         final ItemMeta minusMeta = minus.getItemMeta();
-        minusMeta.setDisplayName(ChatColor.RED + "- Slower");
+        minusMeta.setDisplayName(ChatColor.RED + "-1 BPM");
         minus.setItemMeta(minusMeta);
         settingsTempoInventory.setItem(TEMPO_MINUS_SLOT, minus);
+        settingsTempoInventory.setItem(TEMPO_MINUS_10_SLOT, namedButton(Material.RED_STAINED_GLASS_PANE, ChatColor.RED + "-10 BPM"));
 
         final ItemStack plus = new ItemStack(Material.LIME_STAINED_GLASS_PANE);
         final ItemMeta plusMeta = plus.getItemMeta();
-        plusMeta.setDisplayName(ChatColor.GREEN + "+ Faster");
+        plusMeta.setDisplayName(ChatColor.GREEN + "+1 BPM");
         plus.setItemMeta(plusMeta);
         settingsTempoInventory.setItem(TEMPO_PLUS_SLOT, plus);
+        settingsTempoInventory.setItem(TEMPO_PLUS_10_SLOT, namedButton(Material.LIME_STAINED_GLASS_PANE, ChatColor.GREEN + "+10 BPM"));
+
+        final ItemStack lag = new ItemStack(Material.COMPASS);
+        final ItemMeta lagMeta = lag.getItemMeta();
+        lagMeta.setDisplayName(ChatColor.YELLOW + "When lagging: " + ChatColor.WHITE + cb.lagPolicyLabel());
+        final List<String> lagLore = new ArrayList<>();
+        lagLore.add(ChatColor.GRAY + "Click to cycle: Catch up / Skip / Stretch");
+        for (String line : cb.playbackTimingLines()) lagLore.add(ChatColor.DARK_GRAY + line);
+        lagMeta.setLore(lagLore);
+        lag.setItemMeta(lagMeta);
+        settingsTempoInventory.setItem(TEMPO_LAG_POLICY_SLOT, lag);
+
+        final ItemStack addMarker = new ItemStack(Material.REPEATER);
+        final ItemMeta addMarkerMeta = addMarker.getItemMeta();
+        addMarkerMeta.setDisplayName(ChatColor.GREEN + "Add tempo marker");
+        addMarkerMeta.setLore(List.of(
+                ChatColor.GRAY + "Changes tempo from the range begin on.",
+                ChatColor.GRAY + "While the range begin sits on a marker,",
+                ChatColor.GRAY + "the tempo buttons edit that marker."
+        ));
+        addMarker.setItemMeta(addMarkerMeta);
+        settingsTempoInventory.setItem(TEMPO_ADD_MARKER_SLOT, addMarker);
+
+        final ItemStack removeMarker = new ItemStack(Material.RED_DYE);
+        final ItemMeta removeMarkerMeta = removeMarker.getItemMeta();
+        removeMarkerMeta.setDisplayName(ChatColor.RED + "Remove tempo marker");
+        removeMarkerMeta.setLore(List.of(ChatColor.GRAY + "Removes the marker at the range begin."));
+        removeMarker.setItemMeta(removeMarkerMeta);
+        settingsTempoInventory.setItem(TEMPO_REMOVE_MARKER_SLOT, removeMarker);
+
+        if (cb.tempoMarkerCount() > 0) {
+            settingsTempoInventory.setItem(TEMPO_CLEAR_MARKERS_SLOT, namedButton(Material.RED_CONCRETE, ChatColor.RED + "Clear all tempo markers"));
+        }
 
         final ItemStack back = new ItemStack(Material.ARROW);
         final ItemMeta backMeta = back.getItemMeta();
@@ -335,8 +423,14 @@ public final class SettingsMenus {
         }
     }
 
-    public int clampTicksPerStep(int ticksPerStep, int min, int max) {
-        return TimelineMath.clamp(ticksPerStep, min, max);
+    public double clampBpm(double bpm, double min, double max) {
+        return TimelineMath.clamp(bpm, min, max);
+    }
+
+    /** Whole tempos print without decimals, fractional ones with one (a migrated 7 ticks/step is 42.9 BPM). */
+    public static String formatBpm(double bpm) {
+        if (bpm == Math.rint(bpm)) return Long.toString((long) bpm);
+        return String.format(Locale.ROOT, "%.1f", bpm);
     }
 
     public int clampTrackLength(int trackLength, int min, int max) {
@@ -1,5 +1,6 @@
 package ax.nk.noteblock.game.timeline.ui;
 
+import ax.nk.noteblock.persistence.SongCursor;
 import ax.nk.noteblock.persistence.SongRow;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -17,6 +18,7 @@ import org.bukkit.plugin.Plugin;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -24,6 +26,9 @@ import java.util.List;
  *
  * Top 45 slots: songs (PAPER)
  * Bottom row: back/close
+ *
+ * Pages are addressed by cursor (see {@link SongCursor}): the menu keeps the start of every page up to the
+ * current one, so Previous goes back without counting rows and Next continues after the last song shown.
  */
 public final class SongBrowserMenus {
 
@@ -37,9 +42,9 @@ public final class SongBrowserMenus {
 
         void close();
 
-        void prevPage(int newPage);
+        void prevPage();
 
-        void nextPage(int newPage);
+        void nextPage();
 
         void toggleDeleteMode(boolean enabled);
 
@@ -63,13 +68,34 @@ public final class SongBrowserMenus {
     private final NamespacedKey keySongId;
 
     private Inventory inv;
-    private int pageIndex = 0;
-    private boolean hasPrev = false;
+    // Start of each page up to the current one; null starts the first page.
+    private final List<SongCursor> pageStarts = new ArrayList<>();
+    private SongCursor nextStart;
     private boolean hasNext = false;
     private Mode mode = Mode.LOAD;
 
     public int pageIndex() {
-        return pageIndex;
+        return pageStarts.size() - 1;
+    }
+
+    /** Where the current page starts; pass to {@code SongRepository#listSongs}. */
+    public SongCursor pageStart() {
+        return pageStarts.get(pageStarts.size() - 1);
+    }
+
+    /** Back to the first page. */
+    public void resetPages() {
+        pageStarts.clear();
+        pageStarts.add(null);
+        nextStart = null;
+        hasNext = false;
+    }
+
+    /** Steps back one page (e.g. when the current one has become empty); false on the first page. */
+    public boolean backToPreviousPage() {
+        if (pageIndex() == 0) return false;
+        pageStarts.remove(pageStarts.size() - 1);
+        return true;
     }
 
     public Mode mode() {
@@ -78,6 +104,7 @@ public final class SongBrowserMenus {
 
     public SongBrowserMenus(Plugin plugin) {
         this.keySongId = new NamespacedKey(plugin, "nb_song_id");
+        resetPages();
     }
 
     public void invalidate() {
@@ -95,12 +122,13 @@ public final class SongBrowserMenus {
         return inv != null && view.getTopInventory().equals(inv);
     }
 
-    public void render(List<SongRow> songs, int pageIndex, boolean hasPrev, boolean hasNext, Mode mode) {
+    /** Shows the current page; {@code hasNext} tells whether more songs follow the last one in {@code songs}. */
+    public void render(List<SongRow> songs, boolean hasNext, Mode mode) {
         if (inv == null) return;
-        this.pageIndex = Math.max(0, pageIndex);
-        this.hasPrev = hasPrev;
-        this.hasNext = hasNext;
+        this.nextStart = hasNext && songs != null && !songs.isEmpty() ? songs.get(songs.size() - 1).cursor() : null;
+        this.hasNext = nextStart != null;
         this.mode = mode == null ? Mode.LOAD : mode;
+        final boolean hasPrev = pageIndex() > 0;
 
         inv.clear();
 
@@ -153,7 +181,7 @@ public final class SongBrowserMenus {
 
         final ItemStack next = new ItemStack(Material.ARROW);
         final ItemMeta nextMeta = next.getItemMeta();
-        nextMeta.setDisplayName(hasNext ? ChatColor.YELLOW + "Next" : ChatColor.DARK_GRAY + "Next");
+        nextMeta.setDisplayName(this.hasNext ? ChatColor.YELLOW + "Next" : ChatColor.DARK_GRAY + "Next");
         next.setItemMeta(nextMeta);
         inv.setItem(NEXT_SLOT, next);
 
@@ -171,12 +199,14 @@ public final class SongBrowserMenus {
             cb.close();
             return;
         }
-        if (rawSlot == PREV_SLOT && hasPrev) {
-            cb.prevPage(pageIndex - 1);
+        if (rawSlot == PREV_SLOT && backToPreviousPage()) {
+            cb.prevPage();
             return;
         }
         if (rawSlot == NEXT_SLOT && hasNext) {
-            cb.nextPage(pageIndex + 1);
+            pageStarts.add(nextStart);
+            hasNext = false; // until the next page is rendered
+            cb.nextPage();
             return;
         }
         if (rawSlot == MODE_SLOT) {
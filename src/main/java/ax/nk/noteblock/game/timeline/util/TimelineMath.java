@@ -8,5 +8,9 @@ public final class TimelineMath {
     public static int clamp(int v, int minInclusive, int maxInclusive) {
         return Math.max(minInclusive, Math.min(maxInclusive, v));
     }
+
+    public static double clamp(double v, double minInclusive, double maxInclusive) {
+        return Math.max(minInclusive, Math.min(maxInclusive, v));
+    }
 }
 
@@ -1,47 +1,49 @@
 package ax.nk.noteblock.game.timeline.world;
 
-import org.bukkit.Bukkit;
+import ax.nk.noteblock.session.TickDriver;
 import org.bukkit.World;
-import org.bukkit.plugin.Plugin;
-import org.bukkit.scheduler.BukkitTask;
 
-import java.util.function.Supplier;
+import java.util.HashMap;
+import java.util.Map;
 
-/** Keeps time frozen with a repeating task (defensive against other plugins). */
+/**
+ * Keeps time frozen in session worlds with one repeating handler on the shared {@link TickDriver}
+ * (defensive against other plugins). Shared by all sessions: a world held by several sessions
+ * (plots of a shared world) is frozen once per pass.
+ */
 public final class FreezeTimeService {
 
-    private final Plugin plugin;
-    private final Supplier<World> worldSupplier;
+    private final TickDriver tickDriver;
 
-    private BukkitTask task;
+    // World -> number of sessions holding it.
+    private final Map<World, Integer> holds = new HashMap<>();
 
-    public FreezeTimeService(Plugin plugin, Supplier<World> worldSupplier) {
-        this.plugin = plugin;
-        this.worldSupplier = worldSupplier;
+    private int handle = -1;
+
+    public FreezeTimeService(TickDriver tickDriver) {
+        this.tickDriver = tickDriver;
     }
 
-    public void start(World expectedWorld) {
-        stop();
-        task = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
-            final World w = worldSupplier.get();
-            if (w == null) {
-                stop();
-                return;
-            }
-            if (!w.equals(expectedWorld)) return;
+    public void hold(World world) {
+        holds.merge(world, 1, Integer::sum);
+        if (handle == -1) handle = tickDriver.register(this::freezeAll, 0L, 20L);
+    }
 
+    public void release(World world) {
+        holds.computeIfPresent(world, (w, count) -> count == 1 ? null : count - 1);
+        if (holds.isEmpty() && handle != -1) {
+            tickDriver.cancel(handle);
+            handle = -1;
+        }
+    }
+
+    private void freezeAll() {
+        for (World w : holds.keySet()) {
             WorldRules.setGameRuleIfPresent(w, "doDaylightCycle", false);
             WorldRules.setGameRuleIfPresent(w, "tickTime", false);
 
             // Freeze both time-of-day and day counter (moon phase) deterministically.
             w.setFullTime(6000L);
-        }, 0L, 20L);
-    }
-
-    public void stop() {
-        if (task != null) {
-            task.cancel();
-            task = null;
         }
     }
 }
@@ -0,0 +1,227 @@
+package ax.nk.noteblock.persistence;
+
+import ax.nk.noteblock.game.timeline.playback.Tempo;
+import ax.nk.noteblock.game.timeline.playback.TempoMap;
+import ax.nk.noteblock.game.timeline.score.ScoreSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compact binary serialization for songs stored in SQLite ({@code songs.data_bin}).
+ *
+ * Layout (format 1):
+ * <pre>
+ * byte    format version
+ * varint  track length
+ * byte    layer count
+ * double  base bpm
+ * varint  marker count, then per marker: varint step delta, double bpm
+ * per layer:
+ *   varint  note count
+ *   per note, ascending tick: varint (tick delta << 4 | instrument), byte pitch
+ * </pre>
+ * Instruments are 0..15 (see {@code InstrumentPalette}); anything else is stored as 0, which is what playback
+ * falls back to anyway. A note one to seven steps after the previous one (or in the same step) costs 2 bytes.
+ *
+ * {@link #read} streams a song to a {@link Visitor}, so it can be loaded straight into a score.
+ */
+public final class SongBinaryCodec {
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int INSTRUMENT_BITS = 4;
+    private static final int INSTRUMENT_MASK = (1 << INSTRUMENT_BITS) - 1;
+
+    private SongBinaryCodec() {
+    }
+
+    /** Encodes a snapshot of the score; may run on any thread. */
+    public static byte[] encode(ScoreSnapshot score, int trackLength, TempoMap tempo, int layerCount) {
+        int notes = 0;
+        for (int layer = 0; layer < layerCount; layer++) notes += score.noteCount(layer);
+
+        final Writer out = new Writer(32 + 16 * tempo.markerCount() + 2 * notes);
+        writeHeader(out, trackLength, layerCount, tempo.baseBpm());
+        out.varInt(tempo.markerCount());
+        int previousStep = 0;
+        for (int m = 0; m < tempo.markerCount(); m++) {
+            out.varInt(tempo.markerStep(m) - previousStep);
+            out.float64(tempo.markerBpm(m));
+            previousStep = tempo.markerStep(m);
+        }
+
+        final int[] previousTick = new int[1];
+        for (int layer = 0; layer < layerCount; layer++) {
+            out.varInt(score.noteCount(layer));
+            previousTick[0] = 0;
+            score.forEachNote(layer, (tickIndex, pitch, instrumentId) -> {
+                writeNote(out, tickIndex - previousTick[0], pitch, instrumentId);
+                previousTick[0] = tickIndex;
+            });
+        }
+        return out.toByteArray();
+    }
+
+    /** Encodes a decoded payload (e.g. a legacy JSON row); notes with a negative tick or a pitch outside a byte are dropped. */
+    public static byte[] encode(TimelineScoreJson.SongPayload payload) {
+        final double bpm = payload.bpm() != null ? payload.bpm() : Tempo.bpmFromTicksPerStep(payload.ticksPerStep());
+        final int layerCount = Math.max(0, Math.min(0xFF, payload.layerCount()));
+
+        final Writer out = new Writer(256);
+        writeHeader(out, payload.trackLength(), layerCount, bpm);
+
+        final List<TimelineScoreJson.TempoMarkerDto> markers = new ArrayList<>();
+        if (payload.tempoMarkers() != null) {
+            for (TimelineScoreJson.TempoMarkerDto m : payload.tempoMarkers()) {
+                if (m != null && m.t() > 0) markers.add(m);
+            }
+            markers.sort(Comparator.comparingInt(TimelineScoreJson.TempoMarkerDto::t));
+        }
+        out.varInt(markers.size());
+        int previousStep = 0;
+        for (TimelineScoreJson.TempoMarkerDto m : markers) {
+            out.varInt(m.t() - previousStep);
+            out.float64(m.bpm());
+            previousStep = m.t();
+        }
+
+        for (int layer = 0; layer < layerCount; layer++) {
+            final List<TimelineScoreJson.NoteDto> in = payload.layers() != null && layer < payload.layers().size()
+                    ? payload.layers().get(layer) : null;
+            final List<TimelineScoreJson.NoteDto> notes = new ArrayList<>(in == null ? 0 : in.size());
+            if (in != null) {
+                for (TimelineScoreJson.NoteDto n : in) {
+                    if (n != null && n.t() >= 0 && n.p() >= 0 && n.p() <= 0xFF) notes.add(n);
+                }
+                notes.sort(Comparator.comparingInt(TimelineScoreJson.NoteDto::t));
+            }
+
+            out.varInt(notes.size());
+            int previousTick = 0;
+            for (TimelineScoreJson.NoteDto n : notes) {
+                writeNote(out, n.t() - previousTick, n.p(), n.i());
+                previousTick = n.t();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /** Receives a song as it is read, in file order: the header, the tempo markers, then the notes layer by layer. */
+    public interface Visitor {
+        void header(int trackLength, int layerCount, double bpm);
+
+        void tempoMarker(int step, double bpm);
+
+        void note(int layer, int tickIndex, int pitch, int instrumentId);
+    }
+
+    /**
+     * Streams a song into {@code visitor} without building intermediate objects.
+     *
+     * @throws IllegalArgumentException when the data is truncated, corrupt or of an unknown format
+     */
+    public static void read(byte[] data, Visitor visitor) {
+        final Reader in = new Reader(data);
+        final int version = in.u8();
+        if (version != FORMAT_VERSION) throw new IllegalArgumentException("Unknown song format " + version);
+
+        final int trackLength = in.varInt();
+        final int layerCount = in.u8();
+        visitor.header(trackLength, layerCount, in.float64());
+
+        final int markerCount = in.varInt();
+        int step = 0;
+        for (int m = 0; m < markerCount; m++) {
+            step += in.varInt();
+            visitor.tempoMarker(step, in.float64());
+        }
+
+        for (int layer = 0; layer < layerCount; layer++) {
+            final int noteCount = in.varInt();
+            int tick = 0;
+            for (int n = 0; n < noteCount; n++) {
+                final int head = in.varInt();
+                tick += head >>> INSTRUMENT_BITS;
+                visitor.note(layer, tick, in.u8(), head & INSTRUMENT_MASK);
+            }
+        }
+    }
+
+    private static void writeHeader(Writer out, int trackLength, int layerCount, double bpm) {
+        out.u8(FORMAT_VERSION);
+        out.varInt(Math.max(0, trackLength));
+        out.u8(layerCount);
+        out.float64(bpm);
+    }
+
+    private static void writeNote(Writer out, int tickDelta, int pitch, int instrumentId) {
+        final int instrument = instrumentId >= 0 && instrumentId <= INSTRUMENT_MASK ? instrumentId : 0;
+        out.varInt(tickDelta << INSTRUMENT_BITS | instrument);
+        out.u8(pitch);
+    }
+
+    /** Growable byte buffer; unlike ByteArrayOutputStream it doesn't lock on every byte. */
+    private static final class Writer {
+        private byte[] buf;
+        private int size;
+
+        Writer(int capacity) {
+            buf = new byte[Math.max(16, capacity)];
+        }
+
+        void u8(int value) {
+            if (size == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            buf[size++] = (byte) value;
+        }
+
+        void varInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                u8((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            u8(value);
+        }
+
+        void float64(double value) {
+            final long bits = Double.doubleToLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) u8((int) (bits >>> shift));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buf;
+        private int pos;
+
+        Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        int u8() {
+            if (pos >= buf.length) throw new IllegalArgumentException("Corrupt song data: truncated");
+            return buf[pos++] & 0xFF;
+        }
+
+        int varInt() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                final int b = u8();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("Corrupt song data: varint too long");
+        }
+
+        double float64() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) bits = (bits << 8) | u8();
+            return Double.longBitsToDouble(bits);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package ax.nk.noteblock.persistence;
+
+/** Position in an owner's song list (newest first): pages continue after this song. */
+public record SongCursor(long updatedAtMs, long id) {
+}
@@ -1,6 +1,5 @@
 package ax.nk.noteblock.persistence;
 
-/** Full song row including JSON payload. */
-public record SongDataRow(long id, String ownerUuid, String name, String dataJson, long createdAtMs, long updatedAtMs) {
+/** Full song row; {@code data} is the song in {@link SongBinaryCodec} format. */
+public record SongDataRow(long id, String ownerUuid, String name, byte[] data, long createdAtMs, long updatedAtMs) {
 }
-
@@ -1,6 +1,8 @@
 package ax.nk.noteblock.persistence;
 
-import java.sql.Connection;
+import ax.nk.noteblock.game.timeline.playback.TempoMap;
+import ax.nk.noteblock.game.timeline.score.ScoreSnapshot;
+
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -9,7 +11,17 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
+/**
+ * Song storage. Saves and deletes go through the database's single writer; listings and loads use its read
+ * connections. Futures complete off the main thread.
+ *
+ * Songs are loaded from their {@link SongBinaryCodec} form ({@code data_bin}). Saves also write the JSON form
+ * ({@code data_json}, see {@link TimelineScoreJson}) so older builds, which only read JSON, can still load them.
+ * Rows saved by older builds have only JSON; their binary form is added the first time they are loaded.
+ */
 public final class SongRepository {
 
     private final SqliteDatabase db;
@@ -18,85 +30,133 @@ public final class SongRepository {
         this.db = Objects.requireNonNull(db);
     }
 
-    public void insertSong(UUID ownerUuid, String name, String dataJson) throws SQLException {
+    /** Both forms of the song are encoded on the writer thread right before the insert, so the caller only takes the snapshot. */
+    public CompletableFuture<Void> insertSong(UUID ownerUuid, String name, ScoreSnapshot notes, int trackLength, TempoMap tempo, int layerCount) {
         Objects.requireNonNull(ownerUuid);
         Objects.requireNonNull(name);
-        Objects.requireNonNull(dataJson);
+        Objects.requireNonNull(notes);
+        Objects.requireNonNull(tempo);
 
         final long now = Instant.now().toEpochMilli();
 
-        final Connection c = db.connection();
-        try (PreparedStatement ps = c.prepareStatement(
-                "INSERT INTO songs(owner_uuid, name, data_json, created_at_ms, updated_at_ms) VALUES(?,?,?,?,?)")) {
-            ps.setString(1, ownerUuid.toString());
-            ps.setString(2, name);
-            ps.setString(3, dataJson);
-            ps.setLong(4, now);
-            ps.setLong(5, now);
-            ps.executeUpdate();
-        }
+        return db.write(c -> {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO songs(owner_uuid, name, data_json, data_bin, created_at_ms, updated_at_ms) VALUES(?,?,?,?,?,?)")) {
+                ps.setString(1, ownerUuid.toString());
+                ps.setString(2, name);
+                ps.setString(3, TimelineScoreJson.toJson(notes, trackLength, tempo, layerCount));
+                ps.setBytes(4, SongBinaryCodec.encode(notes, trackLength, tempo, layerCount));
+                ps.setLong(5, now);
+                ps.setLong(6, now);
+                ps.executeUpdate();
+            }
+            return null;
+        });
     }
 
-    public List<SongRow> listSongs(UUID ownerUuid, int limit, int offset) throws SQLException {
+    /**
+     * Lists an owner's songs, most recently updated first (ties by id).
+     *
+     * Keyset pagination: a page starts right after {@code after} (null for the first page), so every page is an
+     * index seek plus {@code limit} rows, no matter how deep into the list it is.
+     */
+    public CompletableFuture<List<SongRow>> listSongs(UUID ownerUuid, SongCursor after, int limit) {
         Objects.requireNonNull(ownerUuid);
-        limit = Math.max(1, Math.min(54, limit));
-        offset = Math.max(0, offset);
-
-        final Connection c = db.connection();
-        try (PreparedStatement ps = c.prepareStatement(
-                "SELECT id, owner_uuid, name, created_at_ms, updated_at_ms FROM songs WHERE owner_uuid = ? ORDER BY updated_at_ms DESC LIMIT ? OFFSET ?")) {
-            ps.setString(1, ownerUuid.toString());
-            ps.setInt(2, limit);
-            ps.setInt(3, offset);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                final List<SongRow> out = new ArrayList<>();
-                while (rs.next()) {
-                    out.add(new SongRow(
+        final int pageLimit = Math.max(1, Math.min(54, limit));
+
+        return db.read(c -> {
+            try (PreparedStatement ps = c.prepareStatement(after == null
+                    ? "SELECT id, owner_uuid, name, created_at_ms, updated_at_ms FROM songs WHERE owner_uuid = ? ORDER BY updated_at_ms DESC, id DESC LIMIT ?"
+                    : "SELECT id, owner_uuid, name, created_at_ms, updated_at_ms FROM songs WHERE owner_uuid = ? AND (updated_at_ms, id) < (?, ?) ORDER BY updated_at_ms DESC, id DESC LIMIT ?")) {
+                int p = 1;
+                ps.setString(p++, ownerUuid.toString());
+                if (after != null) {
+                    ps.setLong(p++, after.updatedAtMs());
+                    ps.setLong(p++, after.id());
+                }
+                ps.setInt(p, pageLimit);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    final List<SongRow> out = new ArrayList<>();
+                    while (rs.next()) {
+                        out.add(new SongRow(
+                                rs.getLong("id"),
+                                rs.getString("owner_uuid"),
+                                rs.getString("name"),
+                                rs.getLong("created_at_ms"),
+                                rs.getLong("updated_at_ms")
+                        ));
+                    }
+                    return out;
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads a song and hands it to {@code decode} on the reader thread, so decoding never lands on the main thread.
+     * Completes with null when there's no such song.
+     */
+    public <T> CompletableFuture<T> getSongById(UUID ownerUuid, long id, Function<SongDataRow, T> decode) {
+        Objects.requireNonNull(ownerUuid);
+        Objects.requireNonNull(decode);
+
+        return db.read(c -> {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT id, owner_uuid, name, data_json, data_bin, created_at_ms, updated_at_ms FROM songs WHERE owner_uuid = ? AND id = ?")) {
+                ps.setString(1, ownerUuid.toString());
+                ps.setLong(2, id);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return null;
+
+                    byte[] data = rs.getBytes("data_bin");
+                    if (data == null) {
+                        final TimelineScoreJson.SongPayload legacy = TimelineScoreJson.fromJson(rs.getString("data_json"));
+                        if (legacy == null) throw new SQLException("Song " + id + " has no data");
+                        data = SongBinaryCodec.encode(legacy);
+                        convertLegacyRow(rs.getLong("id"), data);
+                    }
+
+                    return decode.apply(new SongDataRow(
                             rs.getLong("id"),
                             rs.getString("owner_uuid"),
                             rs.getString("name"),
+                            data,
                             rs.getLong("created_at_ms"),
                             rs.getLong("updated_at_ms")
                     ));
                 }
-                return out;
             }
-        }
+        });
     }
 
-    public SongDataRow getSongById(UUID ownerUuid, long id) throws SQLException {
-        Objects.requireNonNull(ownerUuid);
-
-        final Connection c = db.connection();
-        try (PreparedStatement ps = c.prepareStatement(
-                "SELECT id, owner_uuid, name, data_json, created_at_ms, updated_at_ms FROM songs WHERE owner_uuid = ? AND id = ?")) {
-            ps.setString(1, ownerUuid.toString());
-            ps.setLong(2, id);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return null;
-                return new SongDataRow(
-                        rs.getLong("id"),
-                        rs.getString("owner_uuid"),
-                        rs.getString("name"),
-                        rs.getString("data_json"),
-                        rs.getLong("created_at_ms"),
-                        rs.getLong("updated_at_ms")
-                );
+    /**
+     * Queues the binary form of a JSON-only row; the JSON stays for older builds. Best effort: if it fails,
+     * the row is converted on a later load.
+     */
+    private void convertLegacyRow(long id, byte[] data) {
+        db.write(c -> {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "UPDATE songs SET data_bin = ? WHERE id = ? AND data_bin IS NULL")) {
+                ps.setBytes(1, data);
+                ps.setLong(2, id);
+                return ps.executeUpdate();
             }
-        }
+        });
     }
 
-    public boolean deleteSong(UUID ownerUuid, long id) throws SQLException {
+    /** Completes with false when there was no such song. */
+    public CompletableFuture<Boolean> deleteSong(UUID ownerUuid, long id) {
         Objects.requireNonNull(ownerUuid);
 
-        final Connection c = db.connection();
-        try (PreparedStatement ps = c.prepareStatement("DELETE FROM songs WHERE owner_uuid = ? AND id = ?")) {
-            ps.setString(1, ownerUuid.toString());
-            ps.setLong(2, id);
-            final int affected = ps.executeUpdate();
-            return affected > 0;
-        }
+        return db.write(c -> {
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM songs WHERE owner_uuid = ? AND id = ?")) {
+                ps.setString(1, ownerUuid.toString());
+                ps.setLong(2, id);
+                final int affected = ps.executeUpdate();
+                return affected > 0;
+            }
+        });
     }
 }
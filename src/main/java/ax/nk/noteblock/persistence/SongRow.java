@@ -2,5 +2,9 @@ package ax.nk.noteblock.persistence;
 
 /** Lightweight row for listing songs. */
 public record SongRow(long id, String ownerUuid, String name, long createdAtMs, long updatedAtMs) {
-}
 
+    /** Cursor for the page that continues after this row. */
+    public SongCursor cursor() {
+        return new SongCursor(updatedAtMs, id);
+    }
+}
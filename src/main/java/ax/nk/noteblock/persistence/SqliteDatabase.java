@@ -5,30 +5,84 @@ import org.bukkit.plugin.Plugin;
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Very small SQLite bootstrapper.
+ * SQLite access with one writer and a few readers, all off the main thread.
  *
- * Keeps a single connection open for the plugin lifetime.
- * (SQLite is file-based; a single shared connection is fine for our basic use.
- * If we later add heavy concurrent reads/writes, we can swap this for a pool.)
+ * - Writes ({@link #write}) run on a single writer thread that owns the only read-write connection. Whatever is
+ *   queued when the writer wakes up is committed in one transaction, each write in its own savepoint, so a failing
+ *   write doesn't take the others down with it.
+ * - Reads ({@link #read}) run on {@code readConnections} threads, each with its own read-only connection. With WAL,
+ *   readers see the last commit and never wait for the writer, so browsing the library isn't held up by a big save.
+ * - Both return futures completed on those threads; hop back to the main thread before touching Bukkit.
+ *
+ * Queue depths and latencies (queued to done) are tracked per side and logged on {@link #close}.
  */
 public final class SqliteDatabase {
 
+    /** Work done with a connection of this database. */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    /** Operations done and their queued-to-done latency so far. */
+    public record Latency(long count, double averageMillis, double maxMillis) {
+        @Override
+        public String toString() {
+            return String.format("%d op(s), avg %.2f ms, max %.2f ms", count, averageMillis, maxMillis);
+        }
+    }
+
+    private static final int SCHEMA_VERSION = 3;
+
+    // Writes committed together at most; the rest go into the next transaction.
+    private static final int MAX_WRITE_BATCH = 64;
+    private static final int BUSY_TIMEOUT_MILLIS = 5000;
+
     private final Plugin plugin;
     private final File dbFile;
+    private final int readConnections;
+
+    private Connection writeConnection;
+    private final BlockingQueue<Connection> readPool;
+    private final List<Connection> allReadConnections = new ArrayList<>();
 
-    private Connection connection;
+    private final LinkedBlockingQueue<WriteTask<?>> writeQueue = new LinkedBlockingQueue<>();
+    private Thread writer;
+    private ExecutorService readers;
+    private volatile boolean closing;
 
-    public SqliteDatabase(Plugin plugin, File dbFile) {
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private final AtomicInteger pendingReads = new AtomicInteger();
+    private final LatencyStats writeLatency = new LatencyStats();
+    private final LatencyStats readLatency = new LatencyStats();
+
+    public SqliteDatabase(Plugin plugin, File dbFile, int readConnections) {
         this.plugin = plugin;
         this.dbFile = dbFile;
+        this.readConnections = Math.max(1, readConnections);
+        this.readPool = new ArrayBlockingQueue<>(this.readConnections);
     }
 
     public synchronized void open() throws SQLException {
-        if (connection != null && !connection.isClosed()) return;
+        if (writeConnection != null) return;
 
         final File parent = dbFile.getParentFile();
         if (parent != null && !parent.exists()) {
@@ -43,50 +97,311 @@ public final class SqliteDatabase {
             // DriverManager will still often work via ServiceLoader, but keep going.
         }
 
-        connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+        final String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        try {
+            writeConnection = DriverManager.getConnection(url);
+
+            // WAL lets the readers below run alongside the writer; NORMAL sync is safe with WAL
+            // (a power cut may lose the last commits, never corrupt the file).
+            try (Statement st = writeConnection.createStatement()) {
+                st.execute("PRAGMA journal_mode=WAL;");
+                st.execute("PRAGMA synchronous=NORMAL;");
+                st.execute("PRAGMA foreign_keys=ON;");
+                st.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MILLIS + ";");
+            }
+            migrate();
+            writeConnection.setAutoCommit(false);
 
-        // Basic pragmas: WAL improves concurrency and reduces corruption risk.
-        try (Statement st = connection.createStatement()) {
-            st.execute("PRAGMA journal_mode=WAL;");
-            st.execute("PRAGMA foreign_keys=ON;");
+            // Opened after the migration, so they see the schema; "open_mode" 1 is SQLITE_OPEN_READONLY.
+            final Properties readOnly = new Properties();
+            readOnly.setProperty("open_mode", "1");
+            for (int i = 0; i < readConnections; i++) {
+                final Connection c = DriverManager.getConnection(url, readOnly);
+                try (Statement st = c.createStatement()) {
+                    st.execute("PRAGMA query_only=ON;");
+                    st.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MILLIS + ";");
+                }
+                allReadConnections.add(c);
+                readPool.add(c);
+            }
+        } catch (SQLException e) {
+            closeConnections();
+            throw e;
         }
 
-        migrate();
-        plugin.getLogger().info("SQLite opened: " + dbFile.getAbsolutePath());
+        closing = false;
+        writer = new Thread(this::writeLoop, "noteblock-sqlite-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        final AtomicInteger threadIndex = new AtomicInteger();
+        readers = new ThreadPoolExecutor(readConnections, readConnections, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            final Thread t = new Thread(r, "noteblock-sqlite-reader-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        plugin.getLogger().info("SQLite opened: " + dbFile.getAbsolutePath() + " (1 writer, " + readConnections + " reader(s))");
     }
 
+    /**
+     * Brings the schema up to {@link #SCHEMA_VERSION}, tracked in {@code PRAGMA user_version}.
+     *
+     * - 1: {@code songs} with the song as JSON ({@code data_json})
+     * - 2: {@code data_bin}, the song in {@link SongBinaryCodec} format; rows are converted lazily when read
+     * - 3: {@code idx_songs_owner_updated}, covering the song list in its order (replaces {@code idx_songs_owner})
+     */
     private void migrate() throws SQLException {
-        try (Statement st = connection.createStatement()) {
-            st.execute("""
-                    CREATE TABLE IF NOT EXISTS songs (
-                        id INTEGER PRIMARY KEY AUTOINCREMENT,
-                        owner_uuid TEXT NOT NULL,
-                        name TEXT NOT NULL,
-                        data_json TEXT NOT NULL,
-                        created_at_ms INTEGER NOT NULL,
-                        updated_at_ms INTEGER NOT NULL
-                    )
-                    """);
-            st.execute("CREATE INDEX IF NOT EXISTS idx_songs_owner ON songs(owner_uuid);");
+        try (Statement st = writeConnection.createStatement()) {
+            final int version;
+            try (ResultSet rs = st.executeQuery("PRAGMA user_version;")) {
+                version = rs.next() ? rs.getInt(1) : 0;
+            }
+            if (version >= SCHEMA_VERSION) return;
+
+            st.execute("BEGIN;");
+            try {
+                if (version < 1) {
+                    st.execute("""
+                            CREATE TABLE IF NOT EXISTS songs (
+                                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                                owner_uuid TEXT NOT NULL,
+                                name TEXT NOT NULL,
+                                data_json TEXT NOT NULL,
+                                created_at_ms INTEGER NOT NULL,
+                                updated_at_ms INTEGER NOT NULL
+                            )
+                            """);
+                    st.execute("CREATE INDEX IF NOT EXISTS idx_songs_owner ON songs(owner_uuid);");
+                }
+                if (version < 2) {
+                    st.execute("ALTER TABLE songs ADD COLUMN data_bin BLOB;");
+                }
+                if (version < 3) {
+                    // Everything the song list selects, in list order; the song data stays out of it.
+                    st.execute("""
+                            CREATE INDEX IF NOT EXISTS idx_songs_owner_updated
+                                ON songs(owner_uuid, updated_at_ms DESC, id DESC, name, created_at_ms)
+                            """);
+                    st.execute("DROP INDEX IF EXISTS idx_songs_owner;");
+                }
+                st.execute("PRAGMA user_version=" + SCHEMA_VERSION + ";");
+                st.execute("COMMIT;");
+            } catch (SQLException e) {
+                st.execute("ROLLBACK;");
+                throw e;
+            }
+            plugin.getLogger().info("SQLite schema upgraded from version " + version + " to " + SCHEMA_VERSION + ".");
+        }
+    }
+
+    /** Queues {@code work} for the writer thread; the future completes once its transaction is committed. */
+    public <T> CompletableFuture<T> write(SqlWork<T> work) {
+        final WriteTask<T> task = new WriteTask<>(work, System.nanoTime());
+        if (closing || writer == null) {
+            task.future.completeExceptionally(new SQLException("Database is closed"));
+            return task.future;
         }
+        pendingWrites.incrementAndGet();
+        writeQueue.add(task);
+        return task.future;
     }
 
-    public synchronized Connection connection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            open();
+    /** Runs {@code work} on a reader thread with a read-only connection. */
+    public <T> CompletableFuture<T> read(SqlWork<T> work) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final ExecutorService readers = this.readers;
+        if (closing || readers == null) {
+            future.completeExceptionally(new SQLException("Database is closed"));
+            return future;
+        }
+
+        final long queuedAt = System.nanoTime();
+        pendingReads.incrementAndGet();
+        try {
+            readers.execute(() -> {
+                // One thread per connection, so one is always free here.
+                final Connection c = readPool.poll();
+                try {
+                    future.complete(work.run(c));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    readPool.add(c);
+                    pendingReads.decrementAndGet();
+                    readLatency.record(System.nanoTime() - queuedAt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingReads.decrementAndGet();
+            future.completeExceptionally(new SQLException("Database is closed"));
         }
-        return connection;
+        return future;
+    }
+
+    /** Writes queued or running. */
+    public int writeQueueDepth() {
+        return pendingWrites.get();
+    }
+
+    /** Reads queued or running. */
+    public int readQueueDepth() {
+        return pendingReads.get();
     }
 
+    public Latency writeLatency() {
+        return writeLatency.snapshot();
+    }
+
+    public Latency readLatency() {
+        return readLatency.snapshot();
+    }
+
+    /** Lets queued writes finish (so pending saves aren't lost), then closes every connection. */
     public synchronized void close() {
-        if (connection == null) return;
+        if (writeConnection == null) return;
+        closing = true;
+
+        readers.shutdown();
+        try {
+            if (!readers.awaitTermination(5, TimeUnit.SECONDS)) readers.shutdownNow();
+        } catch (InterruptedException e) {
+            readers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        // The writer drains the queue and stops once it is empty.
+        writer.interrupt();
         try {
-            connection.close();
+            writer.join(10_000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            plugin.getLogger().warning("SQLite writer didn't finish in time; " + pendingWrites.get() + " write(s) dropped.");
+        }
+        // Anything queued while closing never reaches the writer.
+        for (WriteTask<?> task; (task = writeQueue.poll()) != null; ) {
+            pendingWrites.decrementAndGet();
+            task.finish(null, new SQLException("Database is closed"));
+        }
+        writer = null;
+        readers = null;
+
+        plugin.getLogger().info("SQLite writes: " + writeLatency.snapshot() + "; reads: " + readLatency.snapshot() + ".");
+        closeConnections();
+    }
+
+    private void closeConnections() {
+        for (Connection c : allReadConnections) closeQuietly(c);
+        allReadConnections.clear();
+        readPool.clear();
+        if (writeConnection != null) {
+            closeQuietly(writeConnection);
+            writeConnection = null;
+        }
+    }
+
+    private void closeQuietly(Connection c) {
+        try {
+            c.close();
         } catch (SQLException e) {
             plugin.getLogger().warning("Failed to close SQLite connection: " + e.getMessage());
-        } finally {
-            connection = null;
         }
     }
-}
 
+    private void writeLoop() {
+        final List<WriteTask<?>> batch = new ArrayList<>(MAX_WRITE_BATCH);
+        while (true) {
+            try {
+                if (closing) {
+                    final WriteTask<?> next = writeQueue.poll();
+                    if (next == null) return;
+                    batch.add(next);
+                } else {
+                    batch.add(writeQueue.take());
+                }
+            } catch (InterruptedException e) {
+                // close() wakes us up; drain what's left and stop.
+                continue;
+            }
+            writeQueue.drainTo(batch, MAX_WRITE_BATCH - 1);
+            commitBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void commitBatch(List<WriteTask<?>> batch) {
+        final Object[] results = new Object[batch.size()];
+        final Throwable[] failures = new Throwable[batch.size()];
+
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                try (Statement st = writeConnection.createStatement()) {
+                    st.execute("SAVEPOINT w");
+                    try {
+                        results[i] = batch.get(i).work.run(writeConnection);
+                        st.execute("RELEASE w");
+                    } catch (Throwable t) {
+                        failures[i] = t;
+                        st.execute("ROLLBACK TO w");
+                        st.execute("RELEASE w");
+                    }
+                }
+            }
+            writeConnection.commit();
+        } catch (SQLException e) {
+            plugin.getLogger().warning("SQLite write transaction failed: " + e.getMessage());
+            try {
+                writeConnection.rollback();
+            } catch (SQLException ignored) {
+                // The connection is gone; nothing more to undo.
+            }
+            for (int i = 0; i < batch.size(); i++) failures[i] = e;
+        }
+
+        final long now = System.nanoTime();
+        for (int i = 0; i < batch.size(); i++) {
+            final WriteTask<?> task = batch.get(i);
+            pendingWrites.decrementAndGet();
+            writeLatency.record(now - task.queuedAt);
+            task.finish(results[i], failures[i]);
+        }
+    }
+
+    private static final class WriteTask<T> {
+        final SqlWork<T> work;
+        final long queuedAt;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        WriteTask(SqlWork<T> work, long queuedAt) {
+            this.work = work;
+            this.queuedAt = queuedAt;
+        }
+
+        @SuppressWarnings("unchecked")
+        void finish(Object result, Throwable failure) {
+            if (failure != null) future.completeExceptionally(failure);
+            else future.complete((T) result);
+        }
+    }
+
+    private static final class LatencyStats {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        Latency snapshot() {
+            final long n = count.get();
+            final double avg = n == 0 ? 0.0 : totalNanos.get() / (double) n / 1_000_000.0;
+            return new Latency(n, avg, maxNanos.get() / 1_000_000.0);
+        }
+    }
+}
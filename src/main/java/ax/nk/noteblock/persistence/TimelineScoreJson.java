@@ -1,22 +1,30 @@
 package ax.nk.noteblock.persistence;
 
-import ax.nk.noteblock.game.timeline.NoteEvent;
-import ax.nk.noteblock.game.timeline.score.TimelineScore;
+import ax.nk.noteblock.game.timeline.playback.Tempo;
+import ax.nk.noteblock.game.timeline.playback.TempoMap;
+import ax.nk.noteblock.game.timeline.score.ScoreSnapshot;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
- * JSON serialization for songs stored in SQLite.
+ * JSON serialization for songs ({@code songs.data_json}). Every save still writes it next to the
+ * {@link SongBinaryCodec} form so older builds can load the song; it is only read for rows saved by those builds.
+ *
+ * Schema versions:
+ * - 1: tempo as whole {@code ticksPerStep}
+ * - 2: tempo as {@code bpm}; {@code ticksPerStep} is still written (nearest value) for older builds
+ * - 3: {@code tempoMarkers}, sorted (t, bpm) tempo changes; {@code bpm} is the tempo from t = 0
  */
 public final class TimelineScoreJson {
 
     private TimelineScoreJson() {
     }
 
+    public static final int SCHEMA_VERSION = 3;
+
     private static final Gson GSON = new GsonBuilder()
             .serializeNulls()
             .create();
@@ -24,35 +32,50 @@ public final class TimelineScoreJson {
     public record SongPayload(int schemaVersion,
                               int trackLength,
                               int ticksPerStep,
+                              Double bpm,
                               int layerCount,
-                              List<List<NoteDto>> layers) {
+                              List<List<NoteDto>> layers,
+                              List<TempoMarkerDto> tempoMarkers) {
     }
 
     public record NoteDto(int t, int i, int p) {
     }
 
-    public static String toJson(TimelineScore score, int trackLength, int ticksPerStep, int layerCount) {
+    public record TempoMarkerDto(int t, double bpm) {
+    }
+
+    public static String toJson(ScoreSnapshot score, int trackLength, TempoMap tempo, int layerCount) {
         final List<List<NoteDto>> layers = new ArrayList<>(layerCount);
 
-        final List<Map<Integer, List<NoteEvent>>> srcLayers = score.scoreByLayerView();
         for (int layer = 0; layer < layerCount; layer++) {
-            final List<NoteDto> eventsOut = new ArrayList<>();
-            final Map<Integer, List<NoteEvent>> byTick = srcLayers.get(layer);
-
-            for (Map.Entry<Integer, List<NoteEvent>> e : byTick.entrySet()) {
-                final int tickIndex = e.getKey();
-                final List<NoteEvent> events = e.getValue();
-                if (events == null) continue;
-
-                for (NoteEvent n : events) {
-                    eventsOut.add(new NoteDto(tickIndex, n.instrumentId(), n.pitch()));
-                }
-            }
-
+            final List<NoteDto> eventsOut = new ArrayList<>(score.noteCount(layer));
+            score.forEachNote(layer, (tickIndex, pitch, instrumentId) -> eventsOut.add(new NoteDto(tickIndex, instrumentId, pitch)));
             layers.add(eventsOut);
         }
 
-        final SongPayload payload = new SongPayload(1, trackLength, ticksPerStep, layerCount, layers);
+        final List<TempoMarkerDto> markers = new ArrayList<>(tempo.markerCount());
+        for (int m = 0; m < tempo.markerCount(); m++) {
+            markers.add(new TempoMarkerDto(tempo.markerStep(m), tempo.markerBpm(m)));
+        }
+
+        final double bpm = tempo.baseBpm();
+        final SongPayload payload = new SongPayload(SCHEMA_VERSION, trackLength, Tempo.nearestTicksPerStep(bpm), bpm, layerCount, layers, markers);
         return GSON.toJson(payload);
     }
+
+    /** Parses a stored song and upgrades it to {@link #SCHEMA_VERSION}. */
+    public static SongPayload fromJson(String json) {
+        return migrate(GSON.fromJson(json, SongPayload.class));
+    }
+
+    static SongPayload migrate(SongPayload payload) {
+        if (payload == null) return null;
+        if (payload.schemaVersion() >= SCHEMA_VERSION && payload.bpm() != null && payload.tempoMarkers() != null) return payload;
+
+        // v1 -> v2: derive bpm from the whole-tick tempo.
+        final double bpm = payload.bpm() != null ? payload.bpm() : Tempo.bpmFromTicksPerStep(payload.ticksPerStep());
+        // v2 -> v3: no tempo changes.
+        final List<TempoMarkerDto> markers = payload.tempoMarkers() != null ? payload.tempoMarkers() : List.of();
+        return new SongPayload(SCHEMA_VERSION, payload.trackLength(), payload.ticksPerStep(), bpm, payload.layerCount(), payload.layers(), markers);
+    }
 }
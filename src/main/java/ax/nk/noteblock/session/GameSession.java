@@ -8,8 +8,15 @@ import java.util.UUID;
 
 public record GameSession(
         UUID playerId,
-        World world,
-        Location spawn,
+        Plot plot,
         GameController controller
-) {}
+) {
 
+    public World world() {
+        return plot.world();
+    }
+
+    public Location spawn() {
+        return plot.spawn();
+    }
+}
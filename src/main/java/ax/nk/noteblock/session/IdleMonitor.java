@@ -0,0 +1,150 @@
+package ax.nk.noteblock.session;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerItemHeldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerSwapHandItemsEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Hibernates the sessions of idle players through {@link SessionManager} and wakes them on their next input.
+ *
+ * Activity is any camera or position change, click, hotbar scroll, hand swap or inventory click. Handlers only
+ * record the current check number (a no-op when it is already recorded, which is most moves); the idle scan runs
+ * once a second on the {@link TickDriver}. Waking a session is deferred to the next tick rather than done inside
+ * the event. Activity in the same second a session was hibernated doesn't wake it again.
+ *
+ * Main thread only.
+ */
+public final class IdleMonitor implements Listener {
+
+    private static final long CHECK_PERIOD_TICKS = 20L;
+
+    private final Plugin plugin;
+    private final TickDriver tickDriver;
+    private final SessionManager sessionManager;
+    private final int idleChecks;
+
+    private final Map<UUID, Activity> activity = new HashMap<>();
+    private int checks;
+
+    private int handle = -1;
+
+    public IdleMonitor(Plugin plugin, TickDriver tickDriver, SessionManager sessionManager, int idleSeconds) {
+        this.plugin = plugin;
+        this.tickDriver = tickDriver;
+        this.sessionManager = sessionManager;
+        this.idleChecks = Math.max(1, idleSeconds);
+    }
+
+    public void start() {
+        if (handle >= 0) return;
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+        for (Player player : Bukkit.getOnlinePlayers()) activity.put(player.getUniqueId(), new Activity(checks));
+        handle = tickDriver.register(this::check, CHECK_PERIOD_TICKS, CHECK_PERIOD_TICKS);
+    }
+
+    public void shutdown() {
+        if (handle < 0) return;
+        tickDriver.cancel(handle);
+        handle = -1;
+        HandlerList.unregisterAll(this);
+        activity.clear();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        activity.put(event.getPlayer().getUniqueId(), new Activity(checks));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        activity.remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onMove(PlayerMoveEvent event) {
+        active(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInteract(PlayerInteractEvent event) {
+        active(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onItemHeld(PlayerItemHeldEvent event) {
+        active(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onSwap(PlayerSwapHandItemsEvent event) {
+        active(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryClick(InventoryClickEvent event) {
+        if (event.getWhoClicked() instanceof Player player) active(player);
+    }
+
+    private void active(Player player) {
+        final UUID playerId = player.getUniqueId();
+        final Activity a = activity.get(playerId);
+        if (a == null) {
+            activity.put(playerId, new Activity(checks));
+            return;
+        }
+        if (a.lastCheck == checks) return;
+
+        a.lastCheck = checks;
+        if (!a.resumeQueued && sessionManager.isHibernated(playerId)) {
+            a.resumeQueued = true;
+            Bukkit.getScheduler().runTask(plugin, () -> resume(playerId, a));
+        }
+    }
+
+    private void resume(UUID playerId, Activity a) {
+        a.resumeQueued = false;
+        if (handle < 0 || activity.get(playerId) != a) return; // stopped, or the player left
+        final Player player = Bukkit.getPlayer(playerId);
+        if (player != null && sessionManager.isHibernated(playerId)) sessionManager.resumeSession(player);
+    }
+
+    private void check() {
+        checks++;
+        for (Map.Entry<UUID, Activity> entry : activity.entrySet()) {
+            final Activity a = entry.getValue();
+            if (checks - a.lastCheck < idleChecks) continue;
+            final UUID playerId = entry.getKey();
+            if (sessionManager.isHibernated(playerId)) continue;
+
+            // Also resets the clock when the controller keeps the session awake, so it is asked again later.
+            a.lastCheck = checks;
+            sessionManager.hibernateSession(playerId);
+        }
+    }
+
+    /** Mutable per player, so recording activity doesn't box or re-insert. */
+    private static final class Activity {
+        // Check number of the last activity (or of the hibernation).
+        int lastCheck;
+        boolean resumeQueued;
+
+        Activity(int lastCheck) {
+            this.lastCheck = lastCheck;
+        }
+    }
+}
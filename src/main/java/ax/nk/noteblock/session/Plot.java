@@ -0,0 +1,16 @@
+package ax.nk.noteblock.session;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * The part of a world a session owns. Session content is laid out relative to ({@code originX}, {@code originZ});
+ * with one world per session the plot is the whole world and the origin is 0/0.
+ */
+public record Plot(World world, int originX, int originZ) {
+
+    /** Where players enter the plot: on the spawn platform. */
+    public Location spawn() {
+        return new Location(world, originX + 0.5, 65, originZ + 0.5, 0f, 0f);
+    }
+}
@@ -0,0 +1,236 @@
+package ax.nk.noteblock.session;
+
+import ax.nk.noteblock.game.GameControllerFactory;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.util.BoundingBox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Places sessions on plots in a few shared void worlds instead of giving each session a world of its own.
+ *
+ * - Each world holds {@code perWorld} plots on a square grid of cells {@code spacing} blocks wide; another world
+ *   is created only once the previous ones are full. Sessions get the lowest free plot, so the first worlds fill up first.
+ * - A plot's origin is one chunk in from its cell corner. Everything a session builds must stay inside its cell.
+ * - A returned plot is scrubbed (entities in the cell removed, then {@link GameControllerFactory#preparePlot})
+ *   before it is handed out again.
+ * - Players can only break or place blocks inside their own plot, and optionally don't see players on other plots.
+ *
+ * Main thread only.
+ */
+public final class PlotAllocator implements PlotProvider, Listener {
+
+    private static final String WORLD_PREFIX = WorldPool.WORLD_PREFIX + "plots_";
+    // Room between the cell corner and the plot origin, for the spawn platform.
+    private static final int CELL_MARGIN = 16;
+
+    private final Plugin plugin;
+    private final GameControllerFactory controllerFactory;
+    private final int perWorld;
+    private final int spacing;
+    private final int gridWidth;
+    private final boolean hidePlayers;
+
+    private final List<World> worlds = new ArrayList<>();
+
+    // Plot index = world index * perWorld + slot.
+    // Busy = in use or still being prepared; built = spawn platform placed.
+    private final BitSet busy = new BitSet();
+    private final BitSet built = new BitSet();
+    private UUID[] occupants = new UUID[0];
+    private final Map<UUID, Integer> plotOfPlayer = new HashMap<>();
+
+    private boolean running;
+
+    public PlotAllocator(Plugin plugin, GameControllerFactory controllerFactory, int perWorld, int spacing, boolean hidePlayers) {
+        this.plugin = plugin;
+        this.controllerFactory = controllerFactory;
+        this.perWorld = Math.max(1, perWorld);
+        // The game's footprint plus a margin on either side; anything narrower lets neighbouring plots overlap.
+        final int minSpacing = CELL_MARGIN + controllerFactory.plotWidth() + CELL_MARGIN;
+        this.spacing = Math.max(minSpacing, spacing);
+        if (spacing < minSpacing) {
+            plugin.getLogger().warning("plots.spacing " + spacing + " is too small for this game, using " + minSpacing + ".");
+        }
+        this.gridWidth = (int) Math.ceil(Math.sqrt(this.perWorld));
+        this.hidePlayers = hidePlayers;
+    }
+
+    @Override
+    public void start() {
+        if (running) return;
+        running = true;
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+
+        // Create the first world now rather than on the first join.
+        worldAt(0);
+    }
+
+    /** Unloads the shared worlds; their folders are removed by the next boot cleanup. */
+    @Override
+    public void shutdown() {
+        if (!running) return;
+        running = false;
+        HandlerList.unregisterAll(this);
+
+        for (World world : worlds) Bukkit.unloadWorld(world, false);
+        worlds.clear();
+        busy.clear();
+        built.clear();
+        occupants = new UUID[0];
+        plotOfPlayer.clear();
+    }
+
+    @Override
+    public Plot acquire(UUID playerId) {
+        final int index = busy.nextClearBit(0);
+        final World world = worldAt(index / perWorld);
+        if (world == null) return null;
+
+        busy.set(index);
+        final Plot plot = plotAt(world, index);
+        if (!built.get(index)) {
+            WorldPool.ensureSpawnPlatform(world, plot.originX(), plot.originZ());
+            built.set(index);
+        }
+        occupy(index, playerId);
+        return plot;
+    }
+
+    @Override
+    public void release(Plot plot) {
+        final int index = indexOf(plot);
+        if (index < 0) return;
+        vacate(index);
+
+        final World world = plot.world();
+        for (Entity entity : world.getNearbyEntities(cellBounds(world, index))) {
+            if (!(entity instanceof Player)) entity.remove();
+        }
+        controllerFactory.preparePlot(plot, () -> {
+            if (running) busy.clear(index);
+        });
+    }
+
+    public int worldCount() {
+        return worlds.size();
+    }
+
+    public int occupiedCount() {
+        return plotOfPlayer.size();
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onBreak(BlockBreakEvent event) {
+        if (!mayBuild(event.getPlayer(), event.getBlock())) event.setCancelled(true);
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlace(BlockPlaceEvent event) {
+        if (!mayBuild(event.getPlayer(), event.getBlock())) event.setCancelled(true);
+    }
+
+    private boolean mayBuild(Player player, Block block) {
+        final int w = worlds.indexOf(block.getWorld());
+        if (w < 0) return true; // not ours
+
+        final Integer index = plotOfPlayer.get(player.getUniqueId());
+        if (index == null || index / perWorld != w) return false;
+
+        final int minX = cellMinX(index);
+        final int minZ = cellMinZ(index);
+        return block.getX() >= minX && block.getX() < minX + spacing
+                && block.getZ() >= minZ && block.getZ() < minZ + spacing;
+    }
+
+    private World worldAt(int w) {
+        while (worlds.size() <= w) {
+            final World world = WorldPool.createSessionWorld(WORLD_PREFIX + worlds.size());
+            if (world == null) {
+                plugin.getLogger().warning("Failed to create a shared plot world.");
+                return null;
+            }
+            worlds.add(world);
+        }
+        return worlds.get(w);
+    }
+
+    private Plot plotAt(World world, int index) {
+        return new Plot(world, cellMinX(index) + CELL_MARGIN, cellMinZ(index) + CELL_MARGIN);
+    }
+
+    private int indexOf(Plot plot) {
+        final int w = worlds.indexOf(plot.world());
+        if (w < 0) return -1;
+        final int gx = Math.floorDiv(plot.originX(), spacing);
+        final int gz = Math.floorDiv(plot.originZ(), spacing);
+        return w * perWorld + gz * gridWidth + gx;
+    }
+
+    private int cellMinX(int index) {
+        return (index % perWorld) % gridWidth * spacing;
+    }
+
+    private int cellMinZ(int index) {
+        return (index % perWorld) / gridWidth * spacing;
+    }
+
+    private BoundingBox cellBounds(World world, int index) {
+        final int minX = cellMinX(index);
+        final int minZ = cellMinZ(index);
+        return new BoundingBox(minX, world.getMinHeight(), minZ, minX + spacing, world.getMaxHeight(), minZ + spacing);
+    }
+
+    private void occupy(int index, UUID playerId) {
+        if (index >= occupants.length) occupants = Arrays.copyOf(occupants, Math.max(index + 1, occupants.length * 2));
+        occupants[index] = playerId;
+        plotOfPlayer.put(playerId, index);
+        if (hidePlayers) setNeighboursVisible(index, playerId, false);
+    }
+
+    private void vacate(int index) {
+        final UUID playerId = occupants[index];
+        if (playerId == null) return;
+        occupants[index] = null;
+        plotOfPlayer.remove(playerId);
+        if (hidePlayers) setNeighboursVisible(index, playerId, true);
+    }
+
+    /** Hides or shows the player and everyone on the other plots of the same world from each other. */
+    private void setNeighboursVisible(int index, UUID playerId, boolean visible) {
+        final Player player = Bukkit.getPlayer(playerId);
+        if (player == null) return;
+
+        final int first = index - index % perWorld;
+        final int last = Math.min(first + perWorld, occupants.length);
+        for (int i = first; i < last; i++) {
+            if (i == index || occupants[i] == null) continue;
+            final Player other = Bukkit.getPlayer(occupants[i]);
+            if (other == null) continue;
+            if (visible) {
+                player.showPlayer(plugin, other);
+                other.showPlayer(plugin, player);
+            } else {
+                player.hidePlayer(plugin, other);
+                other.hidePlayer(plugin, player);
+            }
+        }
+    }
+}
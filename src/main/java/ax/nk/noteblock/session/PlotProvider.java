@@ -0,0 +1,22 @@
+package ax.nk.noteblock.session;
+
+import java.util.UUID;
+
+/**
+ * Where sessions are placed: {@link WorldPool} gives every session its own world,
+ * {@link PlotAllocator} gives it a plot in a shared world.
+ *
+ * Main thread only.
+ */
+public interface PlotProvider {
+
+    void start();
+
+    /** @return a plot for the player's session, or null if none could be made */
+    Plot acquire(UUID playerId);
+
+    /** Takes back the plot of an ended session; its player has already been sent elsewhere. */
+    void release(Plot plot);
+
+    void shutdown();
+}
@@ -2,15 +2,12 @@ package ax.nk.noteblock.session;
 
 import ax.nk.noteblock.game.GameController;
 import ax.nk.noteblock.game.GameControllerFactory;
-import ax.nk.noteblock.world.VoidChunkGenerator;
 import ax.nk.noteblock.world.WorldDeletion;
 import org.bukkit.*;
-import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 
 import java.io.File;
-import java.nio.file.Path;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -18,21 +15,31 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public final class SessionManager {
 
-    private static final String WORLD_PREFIX = "player_";
+    private static final String WORLD_PREFIX = WorldPool.WORLD_PREFIX;
 
     private final Plugin plugin;
     private final GameControllerFactory controllerFactory;
+    private final PlotProvider plots;
+    private final WorldDeletion worldDeletion;
 
     private final Map<UUID, GameSession> sessions = new ConcurrentHashMap<>();
     private final Set<UUID> creating = ConcurrentHashMap.newKeySet();
 
-    public SessionManager(Plugin plugin, GameControllerFactory controllerFactory) {
+    // Idle sessions: packed controller state, plus where the player was relative to the plot origin.
+    private record Hibernated(byte[] state, double x, double y, double z, float yaw, float pitch) {
+    }
+
+    private final Map<UUID, Hibernated> hibernated = new ConcurrentHashMap<>();
+
+    public SessionManager(Plugin plugin, GameControllerFactory controllerFactory, PlotProvider plots, WorldDeletion worldDeletion) {
         this.plugin = plugin;
         this.controllerFactory = controllerFactory;
+        this.plots = plots;
+        this.worldDeletion = worldDeletion;
     }
 
     /**
-     * Creates (or reuses) a dedicated void world for the player.
+     * Gives the player a plot from the {@link PlotProvider}: a whole void world of their own, or a plot in a shared one.
      * Must run on the main server thread.
      */
     public void startSession(Player player) {
@@ -48,50 +55,118 @@ public final class SessionManager {
             return;
         }
 
+        if (hibernated.containsKey(playerId)) {
+            resumeSession(player);
+            return;
+        }
+
         if (!creating.add(playerId)) {
             return;
         }
 
         try {
-            final String worldName = WORLD_PREFIX + playerId;
+            final GameSession session = openSession(player);
+            if (session == null) return;
+
+            player.teleportAsync(session.spawn()).thenRun(() -> {
+                if (!player.isOnline()) return;
+                Bukkit.getScheduler().runTask(plugin, () -> session.controller().onStart(session, player));
+            });
+        } finally {
+            creating.remove(playerId);
+        }
+    }
 
-            final WorldCreator creator = new WorldCreator(worldName)
-                    .environment(World.Environment.NORMAL)
-                    .generator(new VoidChunkGenerator());
+    public boolean isHibernated(UUID playerId) {
+        return hibernated.containsKey(playerId);
+    }
 
-            final World world = Bukkit.createWorld(creator);
-            if (world == null) {
-                plugin.getLogger().severe("Failed to create world for " + player.getName());
-                return;
-            }
+    public int hibernatedCount() {
+        return hibernated.size();
+    }
 
-            configureWorld(world);
+    /**
+     * Puts an idle player's session to sleep: the controller packs its state and stops, the plot is released
+     * and the player waits in the main world until {@link #resumeSession}. Main thread only.
+     *
+     * @return false if there is no running session or its controller keeps it awake
+     */
+    public boolean hibernateSession(UUID playerId) {
+        final GameSession session = sessions.get(playerId);
+        final Player player = Bukkit.getPlayer(playerId);
+        if (session == null || player == null || !player.isOnline()) return false;
 
-            final Location spawn = ensureSpawnPlatform(world);
+        final byte[] state;
+        try {
+            state = session.controller().onHibernate(session);
+        } catch (Throwable t) {
+            plugin.getLogger().severe("Controller onHibernate failed: " + t.getMessage());
+            t.printStackTrace();
+            return false;
+        }
+        if (state == null) return false;
+
+        sessions.remove(playerId);
+        final Plot plot = session.plot();
+        final Location at = player.getLocation();
+        hibernated.put(playerId, new Hibernated(state,
+                at.getX() - plot.originX(), at.getY(), at.getZ() - plot.originZ(), at.getYaw(), at.getPitch()));
+
+        leaveWorld(player, plot.world());
+        plots.release(plot);
+        player.sendMessage(ChatColor.GRAY + "You were idle, so your timeline was put to sleep. Move to pick up where you left off.");
+        return true;
+    }
 
-            // Create controller last, after world/spawn exist.
-            final GameSession temp = new GameSession(playerId, world, spawn, null);
-            final GameController controller = controllerFactory.create(temp);
-            final GameSession session = new GameSession(playerId, world, spawn, controller);
+    /** Brings a hibernated session back on a new plot, with the player where they were. Main thread only. */
+    public void resumeSession(Player player) {
+        final UUID playerId = player.getUniqueId();
+        final Hibernated sleeping = hibernated.remove(playerId);
+        if (sleeping == null) return;
 
-            sessions.put(playerId, session);
+        final GameSession session = openSession(player);
+        if (session == null) {
+            hibernated.put(playerId, sleeping);
+            return;
+        }
 
-            player.teleportAsync(spawn).thenRun(() -> {
-                if (!player.isOnline()) return;
-                Bukkit.getScheduler().runTask(plugin, () -> controller.onStart(session, player));
-            });
-        } finally {
-            creating.remove(playerId);
+        final Plot plot = session.plot();
+        final Location at = new Location(plot.world(), plot.originX() + sleeping.x(), sleeping.y(), plot.originZ() + sleeping.z(),
+                sleeping.yaw(), sleeping.pitch());
+        player.teleportAsync(at).thenRun(() -> {
+            if (!player.isOnline()) return;
+            Bukkit.getScheduler().runTask(plugin, () -> session.controller().onResume(session, player, sleeping.state()));
+        });
+    }
+
+    /** Acquires a plot and creates the controller; the session is registered but not started. */
+    private GameSession openSession(Player player) {
+        final UUID playerId = player.getUniqueId();
+        final Plot plot = plots.acquire(playerId);
+        if (plot == null) {
+            plugin.getLogger().severe("Failed to create world for " + player.getName());
+            return null;
         }
+
+        // Create controller last, after world/spawn exist.
+        final GameSession temp = new GameSession(playerId, plot, null);
+        final GameController controller = controllerFactory.create(temp);
+        final GameSession session = new GameSession(playerId, plot, controller);
+
+        sessions.put(playerId, session);
+        return session;
     }
 
-    /** Ends session, unloads and deletes the player's world. */
+    /** Ends session and hands its plot back to the {@link PlotProvider}. */
     public void endSession(UUID playerId) {
         if (!Bukkit.isPrimaryThread()) {
             Bukkit.getScheduler().runTask(plugin, () -> endSession(playerId));
             return;
         }
 
+        // A hibernated session holds nothing but its packed state.
+        if (hibernated.remove(playerId) != null) return;
+
         final GameSession session = sessions.remove(playerId);
         if (session == null) return;
 
@@ -102,51 +177,18 @@ public final class SessionManager {
             t.printStackTrace();
         }
 
-        final World world = session.world();
-        final String worldName = world.getName();
+        leaveWorld(Bukkit.getPlayer(playerId), session.world());
+        plots.release(session.plot());
+    }
 
-        final Player player = Bukkit.getPlayer(playerId);
+    /** Sends the player to the main world's spawn if they are still in {@code world}. */
+    private static void leaveWorld(Player player, World world) {
         if (player != null && player.isOnline() && player.getWorld().equals(world)) {
             final World fallback = Bukkit.getWorlds().isEmpty() ? null : Bukkit.getWorlds().get(0);
             if (fallback != null) {
                 player.teleportAsync(fallback.getSpawnLocation());
             }
         }
-
-        // Unload + delete with retries (Windows can hold locks briefly).
-        unloadAndDeleteWorld(worldName, 10);
-    }
-
-    private void unloadAndDeleteWorld(String worldName, int triesLeft) {
-        if (!Bukkit.isPrimaryThread()) {
-            Bukkit.getScheduler().runTask(plugin, () -> unloadAndDeleteWorld(worldName, triesLeft));
-            return;
-        }
-
-        final World world = Bukkit.getWorld(worldName);
-        if (world != null) {
-            // Make sure no players are still inside.
-            for (Player p : world.getPlayers()) {
-                final World fallback = Bukkit.getWorlds().isEmpty() ? null : Bukkit.getWorlds().get(0);
-                if (fallback != null) {
-                    p.teleportAsync(fallback.getSpawnLocation());
-                }
-            }
-
-            final boolean unloaded = Bukkit.unloadWorld(world, false);
-            if (!unloaded) {
-                if (triesLeft > 0) {
-                    Bukkit.getScheduler().runTaskLater(plugin, () -> unloadAndDeleteWorld(worldName, triesLeft - 1), 20L);
-                } else {
-                    plugin.getLogger().severe("Failed to unload world '" + worldName + "' for deletion.");
-                }
-                return;
-            }
-        }
-
-        // Delete using the known world container + name (folder can still exist when world is already null).
-        final Path worldPath = Bukkit.getWorldContainer().toPath().resolve(worldName);
-        WorldDeletion.deleteDirectoryWithRetries(plugin, worldPath, 30);
     }
 
     public void shutdown() {
@@ -159,10 +201,12 @@ public final class SessionManager {
         for (UUID playerId : sessions.keySet().toArray(UUID[]::new)) {
             endSession(playerId);
         }
+        hibernated.clear();
     }
 
     /**
-     * Deletes leftover session worlds from previous server runs.
+     * Deletes leftover session worlds (and trash folders of interrupted deletions) from previous server runs.
+     * The folders are deleted in the background by {@link WorldDeletion}.
      * This is intentionally only called on plugin enable ("server reboot" cleanup).
      */
     public void cleanupLeftoverWorldsOnBoot() {
@@ -175,52 +219,20 @@ public final class SessionManager {
         final File[] children = container.listFiles();
         if (children == null) return;
 
+        int queued = 0;
         for (File f : children) {
             if (!f.isDirectory()) continue;
             final String name = f.getName();
-            if (!name.startsWith(WORLD_PREFIX)) continue;
+            if (!name.startsWith(WORLD_PREFIX) && !WorldDeletion.isTrash(name)) continue;
 
             // Don't touch loaded worlds.
             if (Bukkit.getWorld(name) != null) continue;
 
-            WorldDeletion.deleteDirectoryWithRetries(plugin, f.toPath(), 30);
-        }
-    }
-
-    private static void configureWorld(World world) {
-        world.setAutoSave(false);
-
-        // KeepSpawnInMemory and several GameRule constants are deprecated/marked for removal in recent Paper.
-        // You can still set gamerules in your controller if you want, but this base avoids those APIs.
-
-        world.setTime(6000);
-        world.setStorm(false);
-        world.setThundering(false);
-
-        world.setSpawnLocation(0, 64, 0);
-    }
-
-    /** Creates a tiny safe platform in the void and returns a good spawn location. */
-    private static Location ensureSpawnPlatform(World world) {
-        final Location spawn = new Location(world, 0.5, 65, 0.5, 0f, 0f);
-
-        final int baseY = 64;
-        for (int x = -1; x <= 1; x++) {
-            for (int z = -1; z <= 1; z++) {
-                final Block b = world.getBlockAt(x, baseY, z);
-                b.setType(Material.BARRIER, false);
-            }
+            worldDeletion.delete(f.toPath());
+            queued++;
         }
-
-        // Ensure air above.
-        for (int y = 65; y <= 68; y++) {
-            for (int x = -1; x <= 1; x++) {
-                for (int z = -1; z <= 1; z++) {
-                    world.getBlockAt(x, y, z).setType(Material.AIR, false);
-                }
-            }
+        if (queued > 0) {
+            plugin.getLogger().info("Deleting " + queued + " leftover session world folder(s) in the background.");
         }
-
-        return spawn;
     }
 }
@@ -0,0 +1,169 @@
+package ax.nk.noteblock.session;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Arrays;
+import java.util.logging.Level;
+
+/**
+ * One repeating scheduler task for the whole plugin.
+ *
+ * Sessions register periodic handlers here instead of creating their own Bukkit tasks, so scheduler
+ * overhead stays constant no matter how many sessions are open. Handlers are kept densely packed in
+ * parallel primitive arrays and each one counts down its own period.
+ *
+ * Main thread only.
+ */
+public final class TickDriver {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Plugin plugin;
+
+    private BukkitTask task;
+
+    // Dense handler table, indexed by slot.
+    private Runnable[] actions = new Runnable[INITIAL_CAPACITY];
+    private int[] periods = new int[INITIAL_CAPACITY];
+    private int[] remaining = new int[INITIAL_CAPACITY];
+    private int[] handleAt = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // Handle -> slot (-1 when free); freed handles are recycled.
+    private int[] slotOf = new int[INITIAL_CAPACITY];
+    private int[] freeHandles = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private int nextHandle;
+
+    private boolean dispatching;
+    private int cancelledDuringDispatch;
+
+    public TickDriver(Plugin plugin) {
+        this.plugin = plugin;
+        Arrays.fill(slotOf, -1);
+    }
+
+    public void start() {
+        if (task != null) return;
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        Arrays.fill(actions, 0, size, null);
+        Arrays.fill(slotOf, -1);
+        size = 0;
+        freeCount = 0;
+        nextHandle = 0;
+        cancelledDuringDispatch = 0;
+    }
+
+    /**
+     * Runs {@code action} every {@code period} ticks, first after {@code delay} ticks
+     * (same meaning as Bukkit's runTaskTimer).
+     *
+     * @return handle for {@link #cancel}
+     */
+    public int register(Runnable action, long delay, long period) {
+        final int handle = allocHandle();
+        if (size == actions.length) grow();
+
+        final int slot = size++;
+        actions[slot] = action;
+        periods[slot] = (int) Math.max(1L, period);
+        remaining[slot] = (int) Math.max(1L, delay);
+        handleAt[slot] = handle;
+        slotOf[handle] = slot;
+        return handle;
+    }
+
+    /** Stops a handler. Safe to call from inside a handler; cancelling a free handle does nothing. */
+    public void cancel(int handle) {
+        if (handle < 0 || handle >= slotOf.length) return;
+        final int slot = slotOf[handle];
+        if (slot < 0) return;
+
+        slotOf[handle] = -1;
+        freeHandles[freeCount++] = handle;
+
+        if (dispatching) {
+            // Keep slots stable while iterating; compacted after the pass.
+            actions[slot] = null;
+            cancelledDuringDispatch++;
+        } else {
+            removeAt(slot);
+        }
+    }
+
+    public int handlerCount() {
+        return size - cancelledDuringDispatch;
+    }
+
+    private void tick() {
+        // Handlers registered during this pass land beyond n and start next tick.
+        final int n = size;
+        dispatching = true;
+        try {
+            for (int i = 0; i < n; i++) {
+                if (--remaining[i] > 0) continue;
+                remaining[i] = periods[i];
+
+                final Runnable action = actions[i];
+                if (action == null) continue;
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    plugin.getLogger().log(Level.SEVERE, "Tick handler failed", e);
+                }
+            }
+        } finally {
+            dispatching = false;
+        }
+
+        if (cancelledDuringDispatch > 0) {
+            for (int i = 0; i < size; ) {
+                if (actions[i] == null) removeAt(i);
+                else i++;
+            }
+            cancelledDuringDispatch = 0;
+        }
+    }
+
+    private void removeAt(int slot) {
+        final int last = --size;
+        if (slot != last) {
+            actions[slot] = actions[last];
+            periods[slot] = periods[last];
+            remaining[slot] = remaining[last];
+            handleAt[slot] = handleAt[last];
+            if (actions[slot] != null) slotOf[handleAt[slot]] = slot;
+        }
+        actions[last] = null;
+    }
+
+    private int allocHandle() {
+        if (freeCount > 0) return freeHandles[--freeCount];
+
+        final int handle = nextHandle++;
+        if (handle == slotOf.length) {
+            final int oldLength = slotOf.length;
+            slotOf = Arrays.copyOf(slotOf, oldLength * 2);
+            Arrays.fill(slotOf, oldLength, slotOf.length, -1);
+            freeHandles = Arrays.copyOf(freeHandles, oldLength * 2);
+        }
+        return handle;
+    }
+
+    private void grow() {
+        final int capacity = actions.length * 2;
+        actions = Arrays.copyOf(actions, capacity);
+        periods = Arrays.copyOf(periods, capacity);
+        remaining = Arrays.copyOf(remaining, capacity);
+        handleAt = Arrays.copyOf(handleAt, capacity);
+    }
+}
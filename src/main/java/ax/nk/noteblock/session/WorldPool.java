@@ -0,0 +1,232 @@
+package ax.nk.noteblock.session;
+
+import ax.nk.noteblock.game.GameControllerFactory;
+import ax.nk.noteblock.world.VoidChunkGenerator;
+import ax.nk.noteblock.world.WorldDeletion;
+import org.bukkit.*;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One world per session. Keeps a few session worlds created, configured and prepared ahead of time, so starting
+ * a session only takes one off the queue instead of creating a world on the spot.
+ *
+ * - Refilling creates at most one world per refill interval; preparation runs through
+ *   {@link GameControllerFactory#preparePlot}, which may spread its work over several ticks.
+ * - Worlds of ended sessions are scrubbed and prepared again instead of being deleted, as long as the pool has room.
+ * - When the pool is empty a world is created on the spot; when it is full, returned worlds are unloaded and deleted.
+ * - World names come from a sequence and are never reused within a run, so a world that is still pooled, or
+ *   queued for unloading or deletion, can't be picked up again by name for another session.
+ *
+ * Main thread only.
+ */
+public final class WorldPool implements PlotProvider {
+
+    static final String WORLD_PREFIX = "player_";
+
+    private final Plugin plugin;
+    private final TickDriver tickDriver;
+    private final GameControllerFactory controllerFactory;
+    private final WorldDeletion worldDeletion;
+    private final int size;
+    private final int refillIntervalTicks;
+
+    private final ArrayDeque<World> ready = new ArrayDeque<>();
+    // Worlds handed to prepareWorld and not back yet.
+    private final List<World> preparing = new ArrayList<>();
+
+    private int handle = -1;
+    private int ticksUntilRefill;
+    private int nextWorldId;
+
+    public WorldPool(Plugin plugin, TickDriver tickDriver, GameControllerFactory controllerFactory, WorldDeletion worldDeletion, int size, int refillIntervalTicks) {
+        this.plugin = plugin;
+        this.tickDriver = tickDriver;
+        this.controllerFactory = controllerFactory;
+        this.worldDeletion = worldDeletion;
+        this.size = Math.max(0, size);
+        this.refillIntervalTicks = Math.max(1, refillIntervalTicks);
+    }
+
+    @Override
+    public void start() {
+        if (handle >= 0 || size == 0) return;
+        handle = tickDriver.register(this::tick, 1L, 1L);
+    }
+
+    /** Unloads pooled worlds; their folders are removed by the next boot cleanup. */
+    @Override
+    public void shutdown() {
+        if (handle >= 0) {
+            tickDriver.cancel(handle);
+            handle = -1;
+        }
+        for (World world : ready) Bukkit.unloadWorld(world, false);
+        for (World world : preparing) Bukkit.unloadWorld(world, false);
+        ready.clear();
+        preparing.clear();
+    }
+
+    @Override
+    public Plot acquire(UUID playerId) {
+        World world = take();
+        if (world == null) {
+            // Pool drained (or disabled): fall back to creating one now.
+            world = createSessionWorld(nextWorldName());
+        }
+        return world == null ? null : plotOf(world);
+    }
+
+    @Override
+    public void release(Plot plot) {
+        if (giveBack(plot.world())) return;
+
+        // Unload with retries, then delete off the main thread.
+        unloadAndDeleteWorld(plot.world().getName(), 10);
+    }
+
+    /** @return a prepared world, or null when the pool is empty */
+    private World take() {
+        World world;
+        while ((world = ready.poll()) != null) {
+            // Someone may have unloaded it behind our back.
+            if (Bukkit.getWorld(world.getName()) != null) return world;
+        }
+        return null;
+    }
+
+    /** @return false when the pool is full; the caller should delete the world then */
+    private boolean giveBack(World world) {
+        if (world == null || ready.size() + preparing.size() >= size) return false;
+
+        for (Entity entity : world.getEntities()) {
+            if (!(entity instanceof Player)) entity.remove();
+        }
+        configureWorld(world);
+        prepare(world);
+        return true;
+    }
+
+    public int readyCount() {
+        return ready.size();
+    }
+
+    /** A session world holds a single plot at 0/0. */
+    private static Plot plotOf(World world) {
+        return new Plot(world, 0, 0);
+    }
+
+    /** Creates and configures a new void world; slow, avoid on the join path when possible. */
+    static World createSessionWorld(String worldName) {
+        final WorldCreator creator = new WorldCreator(worldName)
+                .environment(World.Environment.NORMAL)
+                .generator(new VoidChunkGenerator());
+
+        final World world = Bukkit.createWorld(creator);
+        if (world == null) return null;
+
+        configureWorld(world);
+        ensureSpawnPlatform(world, 0, 0);
+        return world;
+    }
+
+    private void tick() {
+        if (ready.size() + preparing.size() >= size) return;
+        if (--ticksUntilRefill > 0) return;
+        ticksUntilRefill = refillIntervalTicks;
+
+        final World world = createSessionWorld(nextWorldName());
+        if (world == null) {
+            plugin.getLogger().warning("Failed to create a pooled session world.");
+            return;
+        }
+        prepare(world);
+    }
+
+    private String nextWorldName() {
+        while (true) {
+            final String name = WORLD_PREFIX + "pool_" + nextWorldId++;
+            // Skip leftovers of an earlier run that the boot cleanup hasn't removed.
+            if (Bukkit.getWorld(name) == null && !Files.exists(Bukkit.getWorldContainer().toPath().resolve(name))) {
+                return name;
+            }
+        }
+    }
+
+    private void prepare(World world) {
+        preparing.add(world);
+        controllerFactory.preparePlot(plotOf(world), () -> {
+            if (!preparing.remove(world)) return; // pool was shut down meanwhile
+            ready.add(world);
+        });
+    }
+
+    private void unloadAndDeleteWorld(String worldName, int triesLeft) {
+        final World world = Bukkit.getWorld(worldName);
+        if (world != null) {
+            // Make sure no players are still inside.
+            for (Player p : world.getPlayers()) {
+                final World fallback = Bukkit.getWorlds().isEmpty() ? null : Bukkit.getWorlds().get(0);
+                if (fallback != null) {
+                    p.teleportAsync(fallback.getSpawnLocation());
+                }
+            }
+
+            final boolean unloaded = Bukkit.unloadWorld(world, false);
+            if (!unloaded) {
+                if (triesLeft > 0) {
+                    Bukkit.getScheduler().runTaskLater(plugin, () -> unloadAndDeleteWorld(worldName, triesLeft - 1), 20L);
+                } else {
+                    plugin.getLogger().severe("Failed to unload world '" + worldName + "' for deletion.");
+                }
+                return;
+            }
+        }
+
+        // Delete using the known world container + name (folder can still exist when world is already null).
+        final Path worldPath = Bukkit.getWorldContainer().toPath().resolve(worldName);
+        worldDeletion.delete(worldPath);
+    }
+
+    static void configureWorld(World world) {
+        world.setAutoSave(false);
+
+        // KeepSpawnInMemory and several GameRule constants are deprecated/marked for removal in recent Paper.
+        // You can still set gamerules in your controller if you want, but this base avoids those APIs.
+
+        world.setTime(6000);
+        world.setStorm(false);
+        world.setThundering(false);
+
+        world.setSpawnLocation(0, 64, 0);
+    }
+
+    /** Creates a tiny safe platform in the void, centered on x/z. */
+    static void ensureSpawnPlatform(World world, int centerX, int centerZ) {
+        final int baseY = 64;
+        for (int x = centerX - 1; x <= centerX + 1; x++) {
+            for (int z = centerZ - 1; z <= centerZ + 1; z++) {
+                final Block b = world.getBlockAt(x, baseY, z);
+                b.setType(Material.BARRIER, false);
+            }
+        }
+
+        // Ensure air above.
+        for (int y = 65; y <= 68; y++) {
+            for (int x = centerX - 1; x <= centerX + 1; x++) {
+                for (int z = centerZ - 1; z <= centerZ + 1; z++) {
+                    world.getBlockAt(x, y, z).setType(Material.AIR, false);
+                }
+            }
+        }
+    }
+}
@@ -6,37 +6,194 @@ import org.bukkit.plugin.Plugin;
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Deletes world folders on a few background I/O threads, never on the main thread.
+ *
+ * - {@link #delete} renames the folder to a trash name next to it right away (one cheap metadata operation),
+ *   so its world name can be reused at once; the slow recursive delete is queued. Trash folders left over
+ *   by a crash are recognised by {@link #isTrash} and should be deleted on the next start.
+ * - Background threads only ever touch trash folders. If the rename fails, it is retried later on the main thread,
+ *   and given up (left for the next start) if a world of that name has been loaded again meanwhile.
+ * - Failed renames and deletes (Windows can keep region files locked briefly after unload) are retried with
+ *   exponential backoff.
+ * - At most {@code threads} deletions run at once; the rest wait in the queue.
+ *
+ * {@link #delete} must be called from the main thread.
+ */
 public final class WorldDeletion {
 
-    private WorldDeletion() {
+    private static final String TRASH_PREFIX = ".deleting_";
+
+    private static final long FIRST_RETRY_MILLIS = 500L;
+    private static final long MAX_RETRY_MILLIS = 30_000L;
+
+    private final Plugin plugin;
+    private final int retries;
+    private final ScheduledThreadPoolExecutor executor;
+
+    // Folders queued, running or waiting for a retry.
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger deleted = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong bytesReclaimed = new AtomicLong();
+
+    public WorldDeletion(Plugin plugin, int threads, int retries) {
+        this.plugin = plugin;
+        this.retries = Math.max(0, retries);
+
+        final AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(Math.max(1, threads), r -> {
+            final Thread t = new Thread(r, "noteblock-world-deletion-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /** Whether a folder name is a trash folder of an interrupted deletion. */
+    public static boolean isTrash(String folderName) {
+        return folderName.startsWith(TRASH_PREFIX);
     }
 
-    public static void deleteDirectoryWithRetries(Plugin plugin, Path path, int retries) {
+    /** Queues {@code path} for deletion; a missing folder is fine. */
+    public void delete(Path path) {
         if (path == null) return;
+        if (executor.isShutdown()) {
+            plugin.getLogger().warning("Not deleting " + path + ": shutting down (it is cleaned up on the next start).");
+            return;
+        }
 
-        // Deleting right after unload can fail on Windows due to file locks.
-        Bukkit.getScheduler().runTaskLater(plugin, () -> {
+        queueDepth.incrementAndGet();
+        trashThenDelete(path, 0);
+    }
+
+    public int queueDepth() {
+        return queueDepth.get();
+    }
+
+    public long bytesReclaimed() {
+        return bytesReclaimed.get();
+    }
+
+    public int deletedCount() {
+        return deleted.get();
+    }
+
+    /** Stops taking work and gives running deletions a moment to finish; the rest are left for the next start. */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Main thread: moves the folder to the trash and queues the delete, or retries the rename later. */
+    private void trashThenDelete(Path path, int attempt) {
+        final Path fileName = path.getFileName();
+        if (fileName != null && Bukkit.getWorld(fileName.toString()) != null) {
+            // The name was taken by a new world since; the folder is no longer ours to delete.
+            plugin.getLogger().warning("Not deleting " + path + ": a world of that name is loaded (it is cleaned up on the next start).");
+            finished();
+            return;
+        }
+
+        final Path target = moveToTrash(path);
+        if (target == null) {
+            if (attempt >= retries || executor.isShutdown() || !plugin.isEnabled()) {
+                plugin.getLogger().warning("Could not move " + path + " out of the way; it is cleaned up on the next start.");
+                finished();
+                return;
+            }
+            final long delay = retryDelayMillis(attempt);
+            plugin.getLogger().warning("Could not move " + path + " out of the way, retrying in " + delay + " ms...");
+            Bukkit.getScheduler().runTaskLater(plugin, () -> trashThenDelete(path, attempt + 1), Math.max(1L, delay / 50L));
+            return;
+        }
+
+        try {
+            executor.execute(() -> attempt(target, 0));
+        } catch (RejectedExecutionException e) {
+            // Shutdown won the race; the trash sweep on the next start deletes it.
+            plugin.getLogger().warning("Not deleting " + target + ": shutting down (it is cleaned up on the next start).");
+            finished();
+        }
+    }
+
+    /** Background thread: deletes a trash folder, retrying with backoff. */
+    private void attempt(Path target, int attempt) {
+        try {
+            final long bytes = deleteDirectory(target);
+            bytesReclaimed.addAndGet(bytes);
+            deleted.incrementAndGet();
+            finished();
+        } catch (IOException e) {
+            if (attempt >= retries || executor.isShutdown()) {
+                plugin.getLogger().severe("Failed to delete " + target + " after retries: " + e.getMessage());
+                failed.incrementAndGet();
+                finished();
+                return;
+            }
+
+            final long delay = retryDelayMillis(attempt);
+            plugin.getLogger().warning("Failed to delete " + target + " (" + e.getMessage() + "), retrying in " + delay + " ms...");
             try {
-                deleteDirectory(path);
-            } catch (IOException e) {
-                if (retries > 0) {
-                    plugin.getLogger().warning("Failed to delete " + path + " (" + e.getMessage() + "), retrying...");
-                    deleteDirectoryWithRetries(plugin, path, retries - 1);
-                } else {
-                    plugin.getLogger().severe("Failed to delete " + path + " after retries: " + e.getMessage());
-                }
+                executor.schedule(() -> attempt(target, attempt + 1), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException rejected) {
+                // Shut down between the check above and here; leave it for the trash sweep on the next start.
+                plugin.getLogger().warning("Not retrying " + target + ": shutting down (it is cleaned up on the next start).");
+                finished();
             }
-        }, 20L);
+        }
     }
 
-    private static void deleteDirectory(Path path) throws IOException {
-        if (!Files.exists(path)) return;
+    private static long retryDelayMillis(int attempt) {
+        return Math.min(MAX_RETRY_MILLIS, FIRST_RETRY_MILLIS << Math.min(attempt, 16));
+    }
+
+    private void finished() {
+        if (queueDepth.decrementAndGet() > 0) return;
+        plugin.getLogger().info("World deletion queue drained: " + deleted.get() + " folder(s) deleted ("
+                + (bytesReclaimed.get() >> 20) + " MiB reclaimed), " + failed.get() + " failed.");
+    }
+
+    /**
+     * Renames the folder out of the way.
+     *
+     * @return the trash folder, {@code path} itself when it is missing or already trash, or null when the rename failed
+     */
+    private static Path moveToTrash(Path path) {
+        if (!Files.exists(path)) return path;
+        final Path fileName = path.getFileName();
+        if (fileName == null || isTrash(fileName.toString())) return path;
 
+        final Path trash = path.resolveSibling(TRASH_PREFIX + fileName + "_" + UUID.randomUUID());
+        try {
+            return Files.move(path, trash, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /** @return bytes of the files deleted */
+    private static long deleteDirectory(Path path) throws IOException {
+        if (!Files.exists(path)) return 0L;
+
+        final long[] bytes = {0L};
         Files.walkFileTree(path, new SimpleFileVisitor<>() {
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                Files.deleteIfExists(file);
+                if (Files.deleteIfExists(file)) bytes[0] += attrs.size();
                 return FileVisitResult.CONTINUE;
             }
 
@@ -46,6 +203,6 @@ public final class WorldDeletion {
                 return FileVisitResult.CONTINUE;
             }
         });
+        return bytes[0];
     }
 }
-
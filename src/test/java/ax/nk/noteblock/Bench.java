@@ -0,0 +1,87 @@
+package ax.nk.noteblock;
+
+import java.lang.ref.Reference;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Timing loop for the tests tagged {@code benchmark} ({@code ./gradlew benchmark}).
+ *
+ * Warms the operation up for a while so the JIT has settled, repeats it enough times per round that a round takes
+ * about a millisecond, and reports the median round, which is steadier than the mean on a busy machine. Results are
+ * folded into a sink so the work can't be optimized away. Good for comparing alternatives on the same machine, not
+ * for absolute numbers.
+ */
+public final class Bench {
+
+    private static final long WARMUP_NANOS = 500_000_000L;
+    private static final long ROUND_NANOS = 1_000_000L;
+    private static final int ROUNDS = 31;
+
+    private static volatile long sink;
+
+    private Bench() {
+    }
+
+    /**
+     * @param opsPerCall how many operations one call of {@code op} performs
+     * @param op does the work and returns something derived from it
+     * @return median nanoseconds per operation
+     */
+    public static double nanosPerOp(String label, int opsPerCall, LongSupplier op) {
+        long calls = 1;
+        final long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() - warmupEnd < 0) {
+            final long start = System.nanoTime();
+            sink += repeat(op, calls);
+            if (System.nanoTime() - start < ROUND_NANOS) calls *= 2;
+        }
+
+        final long[] nanos = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            final long start = System.nanoTime();
+            sink += repeat(op, calls);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+
+        final double perOp = nanos[ROUNDS / 2] / (double) (calls * opsPerCall);
+        System.out.printf("%-48s %12.1f ns/op%n", label, perOp);
+        return perOp;
+    }
+
+    /**
+     * Heap retained by what {@code build} returns: used heap after a full collection, before and after building it.
+     * Only meaningful with nothing else allocating concurrently; run it on its own fork for exact figures.
+     */
+    public static long retainedBytes(String label, Supplier<?> build) {
+        final long before = usedAfterGc();
+        final Object built = build.get();
+        final long retained = usedAfterGc() - before;
+        Reference.reachabilityFence(built);
+        report(label, String.format("%,d B", retained));
+        return retained;
+    }
+
+    public static void report(String label, String value) {
+        System.out.printf("%-48s %15s%n", label, value);
+    }
+
+    private static long usedAfterGc() {
+        final Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // A single System.gc() may not finish off everything; settle on the lowest reading.
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    private static long repeat(LongSupplier op, long calls) {
+        long result = 0;
+        for (long i = 0; i < calls; i++) result += op.getAsLong();
+        return result;
+    }
+}
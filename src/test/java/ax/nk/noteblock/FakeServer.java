@@ -0,0 +1,50 @@
+package ax.nk.noteblock;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.block.data.BlockData;
+
+import java.lang.reflect.Field;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Just enough of a {@link Server} for {@link Material#createBlockData()}: one fake block data per material.
+ *
+ * Installed straight into {@link Bukkit}'s server field, since {@link Bukkit#setServer} also wants the server's
+ * build info. Stays installed for the rest of the test run.
+ */
+public final class FakeServer {
+
+    private static final Map<Material, BlockData> BLOCK_DATA = new EnumMap<>(Material.class);
+    private static final Logger LOGGER = Logger.getLogger("FakeServer");
+
+    private FakeServer() {
+    }
+
+    public static synchronized void install() {
+        if (Bukkit.getServer() != null) return;
+
+        final Server server = Fakes.of(Server.class, (method, args) -> switch (method) {
+            case "createBlockData" -> args.length == 1 && args[0] instanceof Material m ? blockData(m) : Fakes.UNHANDLED;
+            case "getLogger" -> LOGGER;
+            default -> Fakes.UNHANDLED;
+        });
+        try {
+            final Field field = Bukkit.class.getDeclaredField("server");
+            field.setAccessible(true);
+            field.set(null, server);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can't install the fake server", e);
+        }
+    }
+
+    private static synchronized BlockData blockData(Material material) {
+        return BLOCK_DATA.computeIfAbsent(material, m -> Fakes.of(BlockData.class, (method, args) -> switch (method) {
+            case "getMaterial" -> m;
+            default -> Fakes.UNHANDLED;
+        }));
+    }
+}
@@ -0,0 +1,58 @@
+package ax.nk.noteblock;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Stand-ins for Bukkit interfaces (worlds, chunks, blocks, players) in tests that run without a server.
+ *
+ * A fake answers the methods its {@link Answer} handles; everything else returns null, zero or false, and
+ * equals/hashCode are identity.
+ */
+public final class Fakes {
+
+    /** Marks a method the answer doesn't handle. */
+    public static final Object UNHANDLED = new Object();
+
+    @FunctionalInterface
+    public interface Answer {
+        Object answer(String method, Object[] args);
+    }
+
+    private Fakes() {
+    }
+
+    public static <T> T of(Class<T> type, Answer answer) {
+        final Object fake = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            final Object[] a = args == null ? new Object[0] : args;
+            switch (method.getName()) {
+                case "equals" -> {
+                    if (a.length == 1) return proxy == a[0];
+                }
+                case "hashCode" -> {
+                    if (a.length == 0) return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    if (a.length == 0) return "Fake" + type.getSimpleName();
+                }
+                default -> {
+                }
+            }
+
+            final Object result = answer.answer(method.getName(), a);
+            return result != UNHANDLED ? result : defaultValue(method.getReturnType());
+        });
+        return type.cast(fake);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == char.class) return (char) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == short.class) return (short) 0;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        return 0d;
+    }
+}
@@ -0,0 +1,83 @@
+package ax.nk.noteblock.game.timeline;
+
+import ax.nk.noteblock.game.timeline.playback.LagPolicy;
+import ax.nk.noteblock.game.timeline.playback.TempoMap;
+import ax.nk.noteblock.game.timeline.score.TimelineScore;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimelineSnapshotTest {
+
+    @Test
+    void roundTripsStateAndNotes() {
+        final TimelineScore score = new TimelineScore(4);
+        final Random random = new Random(7);
+        for (int i = 0; i < 5_000; i++) {
+            score.upsertNote(random.nextInt(3), random.nextInt(2_000), random.nextInt(25), random.nextInt(16));
+        }
+        final TempoMap tempo = TempoMap.constant(120).withMarker(100, 240.5).withMarker(900, 60);
+        final TimelineSnapshot.State state = new TimelineSnapshot.State(2_000, 3, 1, 10, null, true, LagPolicy.STRETCH, tempo, 64);
+
+        final TimelineScore restored = new TimelineScore(4);
+        final TimelineSnapshot.State back = TimelineSnapshot.unpack(TimelineSnapshot.pack(state, score), restored);
+
+        assertEquals(2_000, back.trackLength());
+        assertEquals(3, back.layerCount());
+        assertEquals(1, back.activeLayerIndex());
+        assertEquals(Integer.valueOf(10), back.rangeBegin());
+        assertNull(back.rangeEnd());
+        assertTrue(back.loop());
+        assertEquals(LagPolicy.STRETCH, back.lagPolicy());
+        assertEquals(64, back.viewportStart());
+        assertEquals(120.0, back.tempo().baseBpm());
+        assertEquals(2, back.tempo().markerCount());
+        assertEquals(100, back.tempo().markerStep(0));
+        assertEquals(240.5, back.tempo().markerBpm(0));
+        assertEquals(900, back.tempo().markerStep(1));
+        assertEquals(60.0, back.tempo().markerBpm(1));
+        for (int layer = 0; layer < 4; layer++) {
+            assertEquals(notesOf(score, layer), notesOf(restored, layer), "layer " + layer);
+        }
+    }
+
+    @Test
+    void roundTripsAnEmptySession() {
+        final TimelineSnapshot.State state = new TimelineSnapshot.State(1, 1, 0, null, null, false, LagPolicy.CATCH_UP,
+                TempoMap.constant(150), 0);
+
+        final TimelineScore restored = new TimelineScore(4);
+        final TimelineSnapshot.State back = TimelineSnapshot.unpack(TimelineSnapshot.pack(state, new TimelineScore(4)), restored);
+
+        assertEquals(1, back.trackLength());
+        assertNull(back.rangeBegin());
+        assertNull(back.rangeEnd());
+        assertFalse(back.loop());
+        assertEquals(LagPolicy.CATCH_UP, back.lagPolicy());
+        assertEquals(0, back.tempo().markerCount());
+        assertTrue(restored.isLayerEmpty(0));
+    }
+
+    @Test
+    void rejectsAnUnknownVersion() {
+        final byte[] data = TimelineSnapshot.pack(new TimelineSnapshot.State(1, 1, 0, null, null, false, LagPolicy.SKIP,
+                TempoMap.constant(150), 0), new TimelineScore(1));
+        data[0] = 99;
+
+        assertThrows(IllegalArgumentException.class, () -> TimelineSnapshot.unpack(data, new TimelineScore(1)));
+    }
+
+    private static Set<Long> notesOf(TimelineScore score, int layer) {
+        final Set<Long> notes = new HashSet<>();
+        score.forEachNote(layer, (tickIndex, pitch, instrumentId) -> notes.add((long) tickIndex << 16 | pitch << 8 | instrumentId));
+        return notes;
+    }
+}
@@ -0,0 +1,48 @@
+package ax.nk.noteblock.game.timeline.input;
+
+import ax.nk.noteblock.Fakes;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/** A player standing at {@link #x}/{@link #y}/{@link #z} (feet) and looking along {@link #yaw}/{@link #pitch}. */
+final class FakeViewer {
+
+    static final double EYE_HEIGHT = 1.62;
+
+    World world;
+    double x;
+    double y;
+    double z;
+    float yaw;
+    float pitch;
+
+    final Player player = Fakes.of(Player.class, (method, args) -> switch (method) {
+        case "getWorld" -> world;
+        case "getEyeHeight" -> EYE_HEIGHT;
+        case "getLocation" -> args.length == 1 ? fill((Location) args[0]) : Fakes.UNHANDLED;
+        default -> Fakes.UNHANDLED;
+    });
+
+    FakeViewer(World world) {
+        this.world = world;
+    }
+
+    FakeViewer at(double x, double y, double z, float yaw, float pitch) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.yaw = yaw;
+        this.pitch = pitch;
+        return this;
+    }
+
+    private Location fill(Location location) {
+        location.setX(x);
+        location.setY(y);
+        location.setZ(z);
+        location.setYaw(yaw);
+        location.setPitch(pitch);
+        return location;
+    }
+}
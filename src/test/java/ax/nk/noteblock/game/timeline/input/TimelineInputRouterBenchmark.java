@@ -0,0 +1,87 @@
+package ax.nk.noteblock.game.timeline.input;
+
+import ax.nk.noteblock.Bench;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Cost of delivering one input event to its session: a listener per session (Bukkit calls every registered
+ * listener, and each one drops other players' events) against the {@link TimelineInputRouter}'s one map lookup.
+ *
+ * Both sides are modelled with plain objects, since real listeners and handlers need a running server; the model
+ * keeps what scales with the session count (the listener array walk and the player check, against the lookup).
+ */
+@Tag("benchmark")
+class TimelineInputRouterBenchmark {
+
+    private static final int EVENTS = 4_096;
+
+    /** What the handlers look at: the id of the player who caused the event. */
+    private record Event(UUID playerId) {
+    }
+
+    @FunctionalInterface
+    private interface Listener {
+        void call(Event event);
+    }
+
+    private static final class Session {
+        private final UUID playerId;
+        private long handled;
+
+        private Session(UUID playerId) {
+            this.playerId = playerId;
+        }
+
+        /** A per-session listener: sees every event and filters on the player, like the handler's first check. */
+        private void onEvent(Event event) {
+            if (!playerId.equals(event.playerId())) return;
+            handle(event);
+        }
+
+        private void handle(Event event) {
+            handled++;
+        }
+    }
+
+    @Test
+    void perSessionListenersAgainstRouter() {
+        for (int sessions : new int[]{1, 50, 500}) {
+            final Random random = new Random(sessions);
+            final Session[] all = new Session[sessions];
+            final Listener[] listeners = new Listener[sessions];
+            final Map<UUID, Session> router = new HashMap<>();
+            for (int i = 0; i < sessions; i++) {
+                final Session session = new Session(new UUID(random.nextLong(), random.nextLong()));
+                all[i] = session;
+                listeners[i] = session::onEvent;
+                router.put(session.playerId, session);
+            }
+
+            // Fresh UUID instances, as events carry the player's own copy rather than the session's.
+            final Event[] events = new Event[EVENTS];
+            for (int i = 0; i < EVENTS; i++) {
+                final UUID id = all[random.nextInt(sessions)].playerId;
+                events[i] = new Event(new UUID(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+            }
+
+            final int[] next = new int[1];
+            Bench.nanosPerOp("Input dispatch, per-session listeners (" + sessions + ")", 1, () -> {
+                final Event event = events[next[0]++ & (EVENTS - 1)];
+                for (Listener listener : listeners) listener.call(event);
+                return all[0].handled;
+            });
+            Bench.nanosPerOp("Input dispatch, router (" + sessions + ")", 1, () -> {
+                final Event event = events[next[0]++ & (EVENTS - 1)];
+                final Session session = router.get(event.playerId());
+                if (session != null) session.handle(event);
+                return session == null ? 0 : session.handled;
+            });
+        }
+    }
+}
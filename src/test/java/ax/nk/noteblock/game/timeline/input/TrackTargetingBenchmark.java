@@ -0,0 +1,48 @@
+package ax.nk.noteblock.game.timeline.input;
+
+import ax.nk.noteblock.Bench;
+import ax.nk.noteblock.Fakes;
+import ax.nk.noteblock.game.timeline.TrackViewport;
+import org.bukkit.World;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * Cost of a pick from a fresh view and from an unchanged one (the HUD's case while the player holds still).
+ * Includes the proxy overhead of the fake player, so only the difference between the two is meaningful.
+ */
+@Tag("benchmark")
+class TrackTargetingBenchmark {
+
+    private static final int FLOOR_Y = 64;
+    private static final int TRACK_LENGTH = 1_000;
+    private static final int VIEWS = 1_024;
+
+    @Test
+    void freshAgainstCachedPicks() {
+        final World world = Fakes.of(World.class, (method, args) -> Fakes.UNHANDLED);
+        final TrackTargeting targeting = new TrackTargeting(new TrackViewport(0, 128), FLOOR_Y, 0, 25, 16);
+        final FakeViewer viewer = new FakeViewer(world);
+
+        // Standing around the track and looking at it from typical angles.
+        final Random random = new Random(5);
+        final double[][] views = new double[VIEWS][];
+        for (int i = 0; i < VIEWS; i++) {
+            views[i] = new double[]{random.nextDouble() * 128, 66 + random.nextDouble() * 4, random.nextDouble() * 25,
+                    random.nextDouble() * 360 - 180, 20 + random.nextDouble() * 70};
+        }
+
+        final int[] next = new int[1];
+        Bench.nanosPerOp("TrackTargeting pick (fresh view)", 1, () -> {
+            final double[] v = views[next[0]++ & (VIEWS - 1)];
+            viewer.at(v[0], v[1], v[2], (float) v[3], (float) v[4]);
+            return targeting.pick(viewer.player, world, TRACK_LENGTH, FLOOR_Y) ? targeting.pickedTick() : -1;
+        });
+
+        viewer.at(64.5, 68, 12.5, 0, 60);
+        Bench.nanosPerOp("TrackTargeting pick (unchanged view)", 1,
+                () -> targeting.pick(viewer.player, world, TRACK_LENGTH, FLOOR_Y) ? targeting.pickedTick() : -1);
+    }
+}
@@ -0,0 +1,81 @@
+package ax.nk.noteblock.game.timeline.input;
+
+import ax.nk.noteblock.Fakes;
+import ax.nk.noteblock.game.timeline.TrackViewport;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrackTargetingTest {
+
+    private static final int FLOOR_Y = 64;
+    private static final int TRACK_LENGTH = 1_000;
+
+    private final World world = Fakes.of(World.class, (method, args) -> Fakes.UNHANDLED);
+    private final TrackViewport viewport = new TrackViewport(0, 100);
+    private final TrackTargeting targeting = new TrackTargeting(viewport, FLOOR_Y, 0, 25, 16);
+
+    @Test
+    void picksTheCellBelowAndAhead() {
+        final FakeViewer viewer = new FakeViewer(world).at(10.5, 70, 5.5, 0, 90);
+        assertTrue(targeting.pick(viewer.player, world, TRACK_LENGTH, FLOOR_Y));
+        assertEquals(10, targeting.pickedX());
+        assertEquals(5, targeting.pickedZ());
+        assertEquals(10, targeting.pickedTick());
+        assertEquals(5, targeting.pickedPitch());
+
+        // Yaw 0 looks towards +z; at 45 degrees the hit is as far ahead as the eye is above the layer.
+        viewer.at(10.5, 70, 5.5, 0, 45);
+        assertTrue(targeting.pick(viewer.player, world, TRACK_LENGTH, FLOOR_Y));
+        assertEquals(10, targeting.pickedX());
+        assertEquals((int) Math.floor(5.5 + 70 + FakeViewer.EYE_HEIGHT - FLOOR_Y), targeting.pickedZ());
+
+        // Yaw 90 looks towards -x.
+        viewer.at(10.5, 64, 5.5, 90, 45);
+        assertTrue(targeting.pick(viewer.player, world, TRACK_LENGTH, FLOOR_Y));
+        assertEquals((int) Math.floor(10.5 - FakeViewer.EYE_HEIGHT), targeting.pickedX());
+        assertEquals(5, targeting.pickedZ());
+    }
+
+    @Test
+    void aimsAtTheFloorFromBelowTheActiveLayer() {
+        final FakeViewer viewer = new FakeViewer(world).at(10.5, FLOOR_Y, 5.5, 0, 45);
+
+        assertTrue(targeting.pick(viewer.player, world, TRACK_LENGTH, FLOOR_Y + 4));
+        assertEquals((int) Math.floor(5.5 + FakeViewer.EYE_HEIGHT), targeting.pickedZ());
+    }
+
+    @Test
+    void missesOffTheTrack() {
+        final FakeViewer viewer = new FakeViewer(world);
+
+        assertFalse(targeting.pick(viewer.at(10.5, 70, 5.5, 0, -30).player, world, TRACK_LENGTH, FLOOR_Y));
+        assertFalse(targeting.pick(viewer.at(10.5, 70, 30.5, 0, 90).player, world, TRACK_LENGTH, FLOOR_Y));
+        assertFalse(targeting.pick(viewer.at(-3.5, 70, 5.5, 0, 90).player, world, TRACK_LENGTH, FLOOR_Y));
+        assertFalse(targeting.pick(viewer.at(50.5, 70, 5.5, 0, 90).player, world, 40, FLOOR_Y));
+        assertFalse(targeting.pick(viewer.at(10.5, 100, 5.5, 0, 90).player, world, TRACK_LENGTH, FLOOR_Y));
+        assertEquals(-1, targeting.pickTimeIndex(viewer.at(10.5, 70, 5.5, 0, 90).player, null, TRACK_LENGTH, FLOOR_Y));
+
+        final World other = Fakes.of(World.class, (method, args) -> Fakes.UNHANDLED);
+        assertFalse(targeting.pick(viewer.player, other, TRACK_LENGTH, FLOOR_Y));
+    }
+
+    @Test
+    void reusesThePickUntilTheViewOrTrackChanges() {
+        final FakeViewer viewer = new FakeViewer(world).at(10.995, 70, 5.5, 0, 90);
+        assertEquals(10, targeting.pickTimeIndex(viewer.player, world, TRACK_LENGTH, FLOOR_Y));
+
+        // Moved across a cell border, but by less than the threshold.
+        viewer.x = 11.001;
+        assertEquals(10, targeting.pickTimeIndex(viewer.player, world, TRACK_LENGTH, FLOOR_Y));
+
+        viewport.scrollTo(20, TRACK_LENGTH);
+        assertEquals(31, targeting.pickTimeIndex(viewer.player, world, TRACK_LENGTH, FLOOR_Y));
+
+        viewer.x = 12.5;
+        assertEquals(32, targeting.pickTimeIndex(viewer.player, world, TRACK_LENGTH, FLOOR_Y));
+    }
+}
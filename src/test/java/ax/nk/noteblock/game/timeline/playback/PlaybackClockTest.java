@@ -0,0 +1,104 @@
+package ax.nk.noteblock.game.timeline.playback;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Drives the clock with simulated ticks: 40 steps/sec (two per tick), one stalled tick, then steady ticks again. */
+class PlaybackClockTest {
+
+    private static final long TICK = PlaybackClock.NANOS_PER_TICK;
+    private static final long STEP = TICK / 2;
+
+    /** Totals over a run. */
+    private record Run(long advanced, long audible, long missed, double maxJitterMillis) {
+    }
+
+    private static Run run(LagPolicy policy, long stallNanos, int ticks) {
+        final PlaybackClock clock = new PlaybackClock();
+        long now = 1_000_000_000L;
+        clock.reset(now, STEP);
+
+        long advanced = 0;
+        long audible = 0;
+        // Like the engine, the first poll happens in the tick playback starts.
+        for (int tick = 0; tick < ticks; tick++) {
+            advanced += clock.poll(now, policy, Integer.MAX_VALUE);
+            audible += clock.audibleSteps();
+            now += TICK + (tick == 10 ? stallNanos : 0);
+        }
+        final PlaybackEngine.TimingStats stats = clock.stats();
+        assertEquals(audible, stats.stepsPlayed());
+        return new Run(advanced, audible, stats.missedSteps(), stats.maxJitterMillis());
+    }
+
+    @Test
+    void steadyTicksPlayEveryStepOnTimeUnderEveryPolicy() {
+        for (LagPolicy policy : LagPolicy.values()) {
+            final Run r = run(policy, 0, 100);
+            assertEquals(200, r.advanced(), policy.name());
+            assertEquals(200, r.audible(), policy.name());
+            assertEquals(0, r.missed(), policy.name());
+            assertEquals(0.0, r.maxJitterMillis(), policy.name());
+        }
+    }
+
+    @Test
+    void catchUpPlaysTheWholeBacklogOverLaterTicks() {
+        final Run r = run(LagPolicy.CATCH_UP, 1_000_000_000L, 100);
+
+        // The 1 s stall holds 40 extra steps; all of them are heard and the song ends up on time.
+        assertEquals(200 + 40, r.advanced());
+        assertEquals(r.advanced(), r.audible());
+        assertEquals(0, r.missed());
+    }
+
+    @Test
+    void skipJumpsAheadAndCountsTheSkippedSteps() {
+        final Run r = run(LagPolicy.SKIP, 1_000_000_000L, 100);
+
+        assertEquals(200 + 40, r.advanced());
+        assertEquals(200, r.audible());
+        assertEquals(40, r.missed());
+    }
+
+    @Test
+    void stretchDelaysTheSongWithoutMissingSteps() {
+        final Run r = run(LagPolicy.STRETCH, 1_000_000_000L, 100);
+
+        // The stalled tick plays its usual two steps; the song is 40 steps later than the wall clock from then on.
+        assertEquals(r.advanced(), r.audible());
+        assertEquals(0, r.missed());
+        assertTrue(r.advanced() < 200 + 40, "advanced " + r.advanced());
+    }
+
+    @Test
+    void workingOffABacklogIsNotJitter() {
+        final Run r = run(LagPolicy.CATCH_UP, 1_000_000_000L, 100);
+
+        assertTrue(r.maxJitterMillis() < STEP / 1_000_000.0, "max jitter " + r.maxJitterMillis() + " ms");
+    }
+
+    @Test
+    void catchUpDropsOnlyTheBacklogBeyondItsBound() {
+        // A 5 minute stall is 12000 steps behind; everything past the 4096 step bound is dropped as missed.
+        final Run r = run(LagPolicy.CATCH_UP, 300_000_000_000L, 1_000);
+
+        assertEquals(r.advanced(), r.audible());
+        assertEquals(2_000 + 12_000, r.advanced() + r.missed());
+        assertTrue(r.missed() > 0);
+    }
+
+    @Test
+    void maxStepsLeavesTheRestDue() {
+        final PlaybackClock clock = new PlaybackClock();
+        clock.reset(0, STEP);
+
+        // Eleven steps are due (one of them within the early slack); a tempo change after three caps the batch.
+        assertEquals(3, clock.poll(9 * STEP, LagPolicy.CATCH_UP, 3));
+        assertEquals(8, clock.poll(9 * STEP, LagPolicy.CATCH_UP, Integer.MAX_VALUE));
+        assertEquals(0, clock.poll(9 * STEP, LagPolicy.CATCH_UP, Integer.MAX_VALUE));
+        assertEquals(0, clock.stats().missedSteps());
+    }
+}
@@ -0,0 +1,90 @@
+package ax.nk.noteblock.game.timeline.playback;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Checks the map against a {@link TreeMap} of segment starts, summing step lengths one by one for time. */
+class TempoMapTest {
+
+    private static final int STEPS = 2_000;
+
+    @Test
+    void matchesATreeMapModelOverRandomEdits() {
+        final Random random = new Random(8);
+        final TreeMap<Integer, Double> model = new TreeMap<>(Map.of(0, 150.0));
+        TempoMap map = TempoMap.constant(150);
+
+        for (int edit = 0; edit < 5_000; edit++) {
+            final int step = random.nextInt(STEPS);
+            final double bpm = 30 + random.nextInt(4_000) / 10.0;
+            switch (random.nextInt(10)) {
+                case 0 -> {
+                    map = map.withBaseBpm(bpm);
+                    model.put(0, bpm);
+                }
+                case 1, 2, 3 -> {
+                    map = map.withoutMarker(step);
+                    if (step > 0) model.remove(step);
+                }
+                case 4 -> {
+                    if (random.nextInt(20) == 0) {
+                        map = map.withoutMarkers();
+                        model.keySet().removeIf(s -> s > 0);
+                    }
+                }
+                case 5 -> {
+                    final int length = STEPS / 2 + random.nextInt(STEPS / 2);
+                    map = map.truncatedTo(length);
+                    model.keySet().removeIf(s -> s > 0 && s >= length);
+                }
+                default -> {
+                    map = map.withMarker(step, bpm);
+                    model.put(Math.max(0, step), bpm);
+                }
+            }
+            if (edit % 50 == 0) assertMatches(model, map);
+        }
+        assertMatches(model, map);
+    }
+
+    @Test
+    void stepsUntilChangeEndsAtTheNextMarker() {
+        final TempoMap map = TempoMap.constant(120).withMarker(64, 240).withMarker(100, 60);
+
+        assertEquals(64, map.stepsUntilChange(0));
+        assertEquals(1, map.stepsUntilChange(63));
+        assertEquals(36, map.stepsUntilChange(64));
+        assertEquals(Integer.MAX_VALUE, map.stepsUntilChange(100));
+        assertEquals(Integer.MAX_VALUE, TempoMap.constant(120).stepsUntilChange(5));
+    }
+
+    private static void assertMatches(TreeMap<Integer, Double> model, TempoMap map) {
+        assertEquals(model.get(0).doubleValue(), map.baseBpm());
+        assertEquals(model.size() - 1, map.markerCount());
+
+        int marker = 0;
+        for (Map.Entry<Integer, Double> e : model.tailMap(0, false).entrySet()) {
+            assertEquals(e.getKey().intValue(), map.markerStep(marker));
+            assertEquals(e.getValue().doubleValue(), map.markerBpm(marker));
+            marker++;
+        }
+
+        long nanos = 0;
+        for (int step = 0; step < STEPS; step++) {
+            final double bpm = model.floorEntry(step).getValue();
+            assertEquals(bpm, map.bpmAt(step), "bpmAt " + step);
+            assertEquals(Tempo.stepNanos(bpm), map.stepNanosAt(step), "stepNanosAt " + step);
+            assertEquals(nanos, map.nanosAt(step), "nanosAt " + step);
+            assertEquals(step > 0 && model.containsKey(step), map.hasMarkerAt(step), "hasMarkerAt " + step);
+
+            final Integer next = model.higherKey(step);
+            assertEquals(next == null ? Integer.MAX_VALUE : next - step, map.stepsUntilChange(step), "stepsUntilChange " + step);
+            nanos += Tempo.stepNanos(bpm);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ax.nk.noteblock.game.timeline.render;
+
+import ax.nk.noteblock.Bench;
+import org.bukkit.Material;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Rebuilding an unchanged track window (128 columns x 25 pitch rows, floor plus 4 layers) through {@link BlockBatch}
+ * against setting every block, as track builds did before. Both look every block up once; the batch saves the
+ * writes. The fake world's cost per call is not a server's, so compare the write counts as much as the times.
+ */
+@Tag("benchmark")
+class BlockBatchBenchmark {
+
+    private static final int COLUMNS = 128;
+    private static final int ROWS = 25;
+    private static final int PLANES = 5;
+    private static final int BLOCKS = COLUMNS * ROWS * PLANES;
+
+    @Test
+    void unchangedTrackRebuild() {
+        final FakeWorld world = new FakeWorld();
+        world.fill = Material.STONE;
+        final BlockBatch batch = new BlockBatch(world.world);
+
+        Bench.nanosPerOp("BlockBatch unchanged rebuild", BLOCKS, () -> {
+            for (int y = 64; y < 64 + PLANES; y++) {
+                for (int x = 0; x < COLUMNS; x++) {
+                    for (int z = 0; z < ROWS; z++) batch.set(x, y, z, Material.STONE);
+                }
+            }
+            batch.apply();
+            return batch.skipped();
+        });
+        Bench.nanosPerOp("World#getBlockAt + setType unchanged rebuild", BLOCKS, () -> {
+            for (int y = 64; y < 64 + PLANES; y++) {
+                for (int x = 0; x < COLUMNS; x++) {
+                    for (int z = 0; z < ROWS; z++) world.world.getBlockAt(x, y, z).setType(Material.STONE, false);
+                }
+            }
+            return world.blockLookups;
+        });
+
+        final FakeWorld counted = new FakeWorld();
+        counted.fill = Material.STONE;
+        final BlockBatch once = new BlockBatch(counted.world);
+        for (int y = 64; y < 64 + PLANES; y++) {
+            for (int x = 0; x < COLUMNS; x++) {
+                for (int z = 0; z < ROWS; z++) once.set(x, y, z, Material.STONE);
+            }
+        }
+        once.apply();
+        Bench.report("BlockBatch block lookups per rebuild", String.valueOf(counted.blockLookups));
+        Bench.report("BlockBatch blocks written per rebuild", once.written() + " (vs " + BLOCKS + " setType calls)");
+    }
+}
@@ -0,0 +1,46 @@
+package ax.nk.noteblock.game.timeline.render;
+
+import org.bukkit.Material;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Covers the paths that don't create block data: {@link Material#createBlockData()} needs a running server, so
+ * every write here targets a block that already has the requested type.
+ */
+class BlockBatchTest {
+
+    @Test
+    void skipsBlocksThatAlreadyMatch() {
+        final FakeWorld world = new FakeWorld();
+        world.fill = Material.STONE;
+        final BlockBatch batch = new BlockBatch(world.world);
+
+        for (int z = -16; z < 16; z++) {
+            for (int x = -16; x < 32; x++) batch.set(x, 64, z, Material.STONE);
+        }
+        assertEquals(0, world.blockLookups);
+        batch.apply();
+
+        assertEquals(48 * 32, world.blockLookups);
+        assertEquals(0, batch.written());
+        assertEquals(48 * 32, batch.skipped());
+        assertEquals(0, batch.size());
+    }
+
+    @Test
+    void canBeReusedAfterApply() {
+        final FakeWorld world = new FakeWorld();
+        world.fill = Material.STONE;
+        final BlockBatch batch = new BlockBatch(world.world);
+
+        for (int i = 0; i < 1_000; i++) batch.set(i, 64, 0, Material.STONE);
+        batch.apply();
+        batch.set(0, 64, 0, Material.STONE);
+        batch.apply();
+
+        assertEquals(1_001, batch.skipped());
+        assertEquals(1_001, world.blockLookups);
+    }
+}
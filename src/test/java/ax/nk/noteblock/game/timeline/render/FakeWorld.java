@@ -0,0 +1,72 @@
+package ax.nk.noteblock.game.timeline.render;
+
+import ax.nk.noteblock.Fakes;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.BlockDisplay;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A world of {@link #fill} blocks with per-block overrides, counting how it is accessed. Block data and spawned
+ * block displays need {@link ax.nk.noteblock.FakeServer} installed.
+ */
+final class FakeWorld {
+
+    final Map<Long, Material> blocks = new HashMap<>();
+    Material fill = Material.AIR;
+    int blockLookups;
+    int blockWrites;
+    int displaysSpawned;
+    int displayUpdates;
+
+    final World world = Fakes.of(World.class, (method, args) -> switch (method) {
+        case "getBlockAt" -> args.length == 3 ? block((int) args[0], (int) args[1], (int) args[2]) : Fakes.UNHANDLED;
+        case "spawn" -> args.length == 3 && args[1] == BlockDisplay.class ? spawnDisplay((Consumer<?>) args[2]) : Fakes.UNHANDLED;
+        default -> Fakes.UNHANDLED;
+    });
+
+    Material typeAt(int x, int y, int z) {
+        return blocks.getOrDefault(key(x, y, z), fill);
+    }
+
+    private Block block(int x, int y, int z) {
+        blockLookups++;
+        return Fakes.of(Block.class, (method, args) -> switch (method) {
+            case "getX" -> x;
+            case "getY" -> y;
+            case "getZ" -> z;
+            case "getType" -> typeAt(x, y, z);
+            case "getBlockData" -> typeAt(x, y, z).createBlockData();
+            case "setBlockData" -> {
+                blocks.put(key(x, y, z), ((BlockData) args[0]).getMaterial());
+                blockWrites++;
+                yield null;
+            }
+            default -> Fakes.UNHANDLED;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private BlockDisplay spawnDisplay(Consumer<?> init) {
+        displaysSpawned++;
+        final BlockDisplay display = Fakes.of(BlockDisplay.class, (method, args) -> switch (method) {
+            case "isValid" -> true;
+            case "setBlock", "setTransformation" -> {
+                displayUpdates++;
+                yield null;
+            }
+            default -> Fakes.UNHANDLED;
+        });
+        ((Consumer<BlockDisplay>) init).accept(display);
+        return display;
+    }
+
+    static long key(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFF) << 38 | ((long) z & 0x3FFFFFF) << 12 | (y & 0xFFF);
+    }
+}
@@ -0,0 +1,159 @@
+package ax.nk.noteblock.game.timeline.render;
+
+import ax.nk.noteblock.Bench;
+import ax.nk.noteblock.FakeServer;
+import ax.nk.noteblock.Fakes;
+import ax.nk.noteblock.game.timeline.TrackViewport;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Block markers against display markers: what a viewport scroll writes for the notes, and what one playhead step
+ * sends. The song has 50,000 steps and 100k notes over 4 layers; the window is 128 columns wide.
+ *
+ * Scrolls diff the window against a shadow and push the changed cells through each mode's sink (a {@link BlockBatch}
+ * or {@link NoteDisplays}), as {@link TrackRenderer} does. Work is counted on a fake world, so the counts are the
+ * result; times only include the fakes' overhead, not a server's block, light or packet work.
+ */
+@Tag("benchmark")
+class NoteMarkerModeBenchmark {
+
+    private static final int STEPS = 50_000;
+    private static final int LAYERS = 4;
+    private static final int PITCHES = 25;
+    private static final int NOTES = 100_000;
+    private static final int WIDTH = 128;
+    private static final int SCROLL = 64;
+    private static final int Y = 64;
+
+    private static final Material[] MARKERS = {
+            Material.AIR, Material.WHITE_WOOL, Material.GRAY_WOOL, Material.RED_WOOL, Material.YELLOW_WOOL};
+
+    @Test
+    void viewportScroll() {
+        FakeServer.install();
+        final byte[] song = randomSong(new Random(14));
+
+        final FakeWorld blockWorld = new FakeWorld();
+        final BlockBatch batch = new BlockBatch(blockWorld.world);
+        final Window blockWindow = new Window(song, (slot, x, y, z, m) -> batch.set(x, y, z, m));
+
+        final FakeWorld displayWorld = new FakeWorld();
+        final NoteDisplays displays = new NoteDisplays();
+        final Window displayWindow = new Window(song, (slot, x, y, z, m) -> displays.show(displayWorld.world, slot, x, y, z, m));
+
+        Bench.nanosPerOp("scroll, block markers", 1, () -> {
+            final int changed = blockWindow.scroll();
+            batch.apply();
+            return changed;
+        });
+        Bench.nanosPerOp("scroll, display markers", 1, displayWindow::scroll);
+
+        // Counted over one sweep through the whole song.
+        final FakeWorld countedBlocks = new FakeWorld();
+        final BlockBatch countedBatch = new BlockBatch(countedBlocks.world);
+        final Window sweepBlocks = new Window(song, (slot, x, y, z, m) -> countedBatch.set(x, y, z, m));
+        final FakeWorld countedDisplays = new FakeWorld();
+        final NoteDisplays pool = new NoteDisplays();
+        final Window sweepDisplays = new Window(song, (slot, x, y, z, m) -> pool.show(countedDisplays.world, slot, x, y, z, m));
+        final int scrolls = (STEPS - WIDTH) / SCROLL;
+        for (int i = 0; i < scrolls; i++) {
+            sweepBlocks.scroll();
+            countedBatch.apply();
+            sweepDisplays.scroll();
+        }
+        Bench.report("block writes per scroll", String.valueOf(countedBlocks.blockWrites / scrolls));
+        Bench.report("block writes per scroll, display markers", String.valueOf(countedDisplays.blockWrites / scrolls));
+        Bench.report("display updates per scroll", String.valueOf(countedDisplays.displayUpdates / scrolls));
+        Bench.report("displays spawned over the sweep", String.valueOf(countedDisplays.displaysSpawned));
+    }
+
+    @Test
+    void playheadStep() {
+        FakeServer.install();
+        final FakeWorld world = new FakeWorld();
+        final TrackViewport viewport = new TrackViewport(0, WIDTH);
+        final long[] sent = new long[2]; // packets, block states
+        final Player player = Fakes.of(Player.class, (method, args) -> switch (method) {
+            case "isOnline" -> true;
+            case "getWorld" -> world.world;
+            case "sendMultiBlockChange" -> {
+                sent[0]++;
+                sent[1] += ((Map<?, ?>) args[0]).size();
+                yield null;
+            }
+            default -> Fakes.UNHANDLED;
+        });
+
+        final OverlayRenderer blocks = new OverlayRenderer(viewport, NoteMarkerMode.BLOCKS, (x, y, z) -> false, 0, PITCHES);
+        final OverlayRenderer displays = new OverlayRenderer(viewport, NoteMarkerMode.DISPLAYS, (x, y, z) -> false, 0, PITCHES);
+        final int[] tick = new int[1];
+
+        Bench.nanosPerOp("playhead step, block overlay", 1, () -> {
+            blocks.drawPlayhead(player, world.world, tick[0]++ % WIDTH, Y);
+            return sent[1];
+        });
+        Bench.nanosPerOp("playhead step, display", 1, () -> {
+            displays.drawPlayhead(player, world.world, tick[0]++ % WIDTH, Y);
+            return world.displayUpdates;
+        });
+
+        sent[0] = 0;
+        sent[1] = 0;
+        final int lookups = world.blockLookups;
+        final int updates = world.displayUpdates;
+        for (int i = 0; i < WIDTH; i++) blocks.drawPlayhead(player, world.world, i, Y);
+        for (int i = 0; i < WIDTH; i++) displays.drawPlayhead(player, world.world, i, Y);
+        Bench.report("block overlay, per step", sent[0] / WIDTH + " packet, " + sent[1] / WIDTH + " states, "
+                + (world.blockLookups - lookups) / WIDTH + " block reads");
+        Bench.report("display playhead, per step", (world.displayUpdates - updates) / WIDTH + " display update(s)");
+    }
+
+    /** Cell (tick, layer, pitch) holds a marker index into {@link #MARKERS}, 0 for empty. */
+    private static byte[] randomSong(Random random) {
+        final byte[] song = new byte[STEPS * LAYERS * PITCHES];
+        for (int i = 0; i < NOTES; i++) song[random.nextInt(song.length)] = (byte) (1 + random.nextInt(MARKERS.length - 1));
+        return song;
+    }
+
+    @FunctionalInterface
+    private interface Sink {
+        void set(int slot, int x, int y, int z, Material material);
+    }
+
+    /** The track window with its shadow, diffed the way {@link TrackRenderer} reconciles columns. */
+    private static final class Window {
+        private final byte[] song;
+        private final Sink sink;
+        private final byte[] drawn = new byte[WIDTH * LAYERS * PITCHES];
+        private int start;
+
+        Window(byte[] song, Sink sink) {
+            this.song = song;
+            this.sink = sink;
+        }
+
+        /** Moves the window on by {@link #SCROLL} columns (wrapping at the song end) and redraws it. */
+        int scroll() {
+            start = start + SCROLL + WIDTH > STEPS ? 0 : start + SCROLL;
+            int changed = 0;
+            for (int column = 0; column < WIDTH; column++) {
+                final int base = (start + column) * LAYERS * PITCHES;
+                for (int c = 0; c < LAYERS * PITCHES; c++) {
+                    final int slot = column * LAYERS * PITCHES + c;
+                    final byte want = song[base + c];
+                    if (drawn[slot] == want) continue;
+                    sink.set(slot, column, Y + c / PITCHES, c % PITCHES, MARKERS[want]);
+                    drawn[slot] = want;
+                    changed++;
+                }
+            }
+            return changed;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package ax.nk.noteblock.game.timeline.render;
+
+import ax.nk.noteblock.FakeServer;
+import ax.nk.noteblock.Fakes;
+import ax.nk.noteblock.game.timeline.TrackViewport;
+import io.papermc.paper.math.Position;
+import org.bukkit.Material;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OverlayRendererTest {
+
+    private static final int Y = 64;
+
+    private FakeWorld world;
+    private final Map<Position, Material> sent = new HashMap<>();
+    private Player player;
+
+    @BeforeEach
+    void setUp() {
+        FakeServer.install();
+        world = new FakeWorld();
+        sent.clear();
+        player = Fakes.of(Player.class, (method, args) -> switch (method) {
+            case "isOnline" -> true;
+            case "getWorld" -> world.world;
+            case "sendMultiBlockChange" -> {
+                ((Map<?, ?>) args[0]).forEach((pos, data) -> sent.put((Position) pos, ((BlockData) data).getMaterial()));
+                yield null;
+            }
+            default -> Fakes.UNHANDLED;
+        });
+    }
+
+    @Test
+    void rangeMarkerSkipsBlockNotes() {
+        world.blocks.put(key(5, 3), Material.WHITE_WOOL);
+        final OverlayRenderer overlay = new OverlayRenderer(new TrackViewport(0, 100), NoteMarkerMode.BLOCKS,
+                (x, y, z) -> false, 0, 25);
+
+        overlay.redrawRange(player, world.world, 5, null, 100, Y);
+
+        assertEquals(25, sent.size());
+        assertEquals(Material.WHITE_WOOL, sent.get(Position.block(5, Y, 3)));
+        assertEquals(Material.BLUE_STAINED_GLASS, sent.get(Position.block(5, Y, 4)));
+    }
+
+    @Test
+    void rangeMarkerSkipsDisplayNotes() {
+        // Display notes leave their cells air in the world; only the renderer knows they hold a note.
+        final OverlayRenderer overlay = new OverlayRenderer(new TrackViewport(0, 100), NoteMarkerMode.DISPLAYS,
+                (x, y, z) -> x == 5 && y == Y && z == 3, 0, 25);
+
+        overlay.redrawRange(player, world.world, null, 5, 100, Y);
+
+        assertEquals(Material.AIR, sent.get(Position.block(5, Y, 3)));
+        assertEquals(Material.ORANGE_STAINED_GLASS, sent.get(Position.block(5, Y, 4)));
+    }
+
+    @Test
+    void clearingRestoresTheWorldBlocks() {
+        world.blocks.put(key(5, 3), Material.WHITE_WOOL);
+        final OverlayRenderer overlay = new OverlayRenderer(new TrackViewport(0, 100), NoteMarkerMode.BLOCKS,
+                (x, y, z) -> false, 0, 25);
+
+        overlay.drawPlayhead(player, world.world, 5, Y);
+        sent.clear();
+        overlay.clearPlayhead(player, world.world);
+
+        assertEquals(25, sent.size());
+        assertEquals(Material.WHITE_WOOL, sent.get(Position.block(5, Y, 3)));
+        assertEquals(Material.AIR, sent.get(Position.block(5, Y, 4)));
+    }
+
+    private long key(int x, int z) {
+        return FakeWorld.key(x, Y, z);
+    }
+}
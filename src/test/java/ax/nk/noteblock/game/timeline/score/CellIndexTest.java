@@ -0,0 +1,55 @@
+package ax.nk.noteblock.game.timeline.score;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CellIndexTest {
+
+    @Test
+    void matchesAMapUnderChurn() {
+        final CellIndex index = new CellIndex();
+        final Map<Long, Integer> model = new HashMap<>();
+        final Random random = new Random(5);
+
+        // Few distinct keys, so probe runs are long and removals shift entries back across the table's end.
+        for (int i = 0; i < 500_000; i++) {
+            final long key = TimelineScore.cellKey(random.nextInt(4), random.nextInt(200), random.nextInt(25));
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    final Integer removed = model.remove(key);
+                    assertEquals(removed == null ? -1 : removed, index.remove(key), "remove");
+                }
+                case 1 -> {
+                    final int slot = random.nextInt(1 << 20);
+                    model.put(key, slot);
+                    index.put(key, slot);
+                }
+                default -> assertEquals((int) model.getOrDefault(key, -1), index.get(key), "get");
+            }
+        }
+
+        assertEquals(model.size(), index.size());
+        for (Map.Entry<Long, Integer> e : model.entrySet()) assertEquals((int) e.getValue(), index.get(e.getKey()));
+    }
+
+    @Test
+    void swapExchangesContents() {
+        final CellIndex a = new CellIndex();
+        final CellIndex b = new CellIndex();
+        for (int i = 0; i < 100; i++) a.put(i, i);
+        b.put(1_000, 7);
+
+        a.swap(b);
+
+        assertEquals(1, a.size());
+        assertEquals(7, a.get(1_000));
+        assertEquals(100, b.size());
+        assertEquals(42, b.get(42));
+        assertEquals(-1, a.get(42));
+    }
+}
@@ -0,0 +1,168 @@
+package ax.nk.noteblock.game.timeline.score;
+
+import ax.nk.noteblock.Bench;
+import ax.nk.noteblock.game.timeline.BlockPos;
+import ax.nk.noteblock.game.timeline.NoteEvent;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Cost of the score's hot paths on a full song (1000 ticks x 25 pitches x 4 layers = 100k notes), its retained heap
+ * against the boxed layout it replaced, and the cell index against a boxed map.
+ */
+@Tag("benchmark")
+class TimelineScoreBenchmark {
+
+    private static final int LAYERS = 4;
+    private static final int TICKS = 1_000;
+    private static final int PITCHES = 25;
+    private static final int NOTES = LAYERS * TICKS * PITCHES;
+
+    @Test
+    void scoreOperations() {
+        final TimelineScore score = fullScore();
+        final long[] keys = shuffledKeys(new Random(3));
+
+        Bench.nanosPerOp("score fill 100k notes", NOTES, () -> fullScore().noteCount(0));
+        Bench.nanosPerOp("score instrumentAt", keys.length, () -> {
+            long sum = 0;
+            for (long k : keys) sum += score.instrumentAt(layer(k), tick(k), pitch(k));
+            return sum;
+        });
+        Bench.nanosPerOp("score remove + upsert", keys.length, () -> {
+            long sum = 0;
+            for (long k : keys) {
+                sum += score.removeNote(layer(k), tick(k), pitch(k));
+                score.upsertNote(layer(k), tick(k), pitch(k), 1);
+            }
+            return sum;
+        });
+        Bench.nanosPerOp("score forEachNote (all layers)", NOTES, () -> {
+            final long[] sum = new long[1];
+            for (int layer = 0; layer < LAYERS; layer++) {
+                score.forEachNote(layer, (tickIndex, pitch, instrumentId) -> sum[0] += tickIndex + pitch);
+            }
+            return sum[0];
+        });
+        Bench.nanosPerOp("score snapshot", NOTES, () -> score.snapshot().noteCount(0));
+    }
+
+    @Test
+    void retainedHeap() {
+        final long columns = Bench.retainedBytes("score heap, columns + cell index", TimelineScoreBenchmark::fullScore);
+        final long maps = Bench.retainedBytes("score heap, boxed maps", () -> boxedScore(false));
+        final long mapsAndIndex = Bench.retainedBytes("score heap, boxed maps + BlockPos index", () -> boxedScore(true));
+
+        Bench.report("bytes per note, columns + cell index", String.valueOf(columns / NOTES));
+        Bench.report("bytes per note, boxed maps", String.valueOf(maps / NOTES));
+        Bench.report("bytes per note, boxed maps + BlockPos index", String.valueOf(mapsAndIndex / NOTES));
+    }
+
+    @Test
+    void cellIndexAgainstHashMap() {
+        final long[] keys = shuffledKeys(new Random(4));
+        final CellIndex index = new CellIndex();
+        final Map<Long, Integer> map = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            index.put(keys[i], i);
+            map.put(keys[i], i);
+        }
+
+        Bench.nanosPerOp("CellIndex get", keys.length, () -> {
+            long sum = 0;
+            for (long k : keys) sum += index.get(k);
+            return sum;
+        });
+        Bench.nanosPerOp("HashMap<Long, Integer> get", keys.length, () -> {
+            long sum = 0;
+            for (long k : keys) sum += map.get(k);
+            return sum;
+        });
+        Bench.nanosPerOp("CellIndex remove + put", keys.length, () -> {
+            long sum = 0;
+            for (int i = 0; i < keys.length; i++) {
+                sum += index.remove(keys[i]);
+                index.put(keys[i], i);
+            }
+            return sum;
+        });
+        Bench.nanosPerOp("HashMap<Long, Integer> remove + put", keys.length, () -> {
+            long sum = 0;
+            for (int i = 0; i < keys.length; i++) {
+                sum += map.remove(keys[i]);
+                map.put(keys[i], i);
+            }
+            return sum;
+        });
+    }
+
+    private static TimelineScore fullScore() {
+        final TimelineScore score = new TimelineScore(LAYERS);
+        for (int layer = 0; layer < LAYERS; layer++) {
+            for (int tick = 0; tick < TICKS; tick++) {
+                for (int pitch = 0; pitch < PITCHES; pitch++) score.upsertNote(layer, tick, pitch, (tick + pitch) & 15);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * The full song in the layout the columns replaced: per layer {@code HashMap<Integer, List<NoteEvent>>} by tick,
+     * optionally with the {@code BlockPos -> (layer, tick)} index that note removal went through.
+     */
+    private static Object boxedScore(boolean withIndex) {
+        final List<Map<Integer, List<NoteEvent>>> byLayer = new ArrayList<>(LAYERS);
+        final Map<BlockPos, BoxedRef> refByPos = new HashMap<>();
+        for (int layer = 0; layer < LAYERS; layer++) {
+            final Map<Integer, List<NoteEvent>> byTick = new HashMap<>();
+            for (int tick = 0; tick < TICKS; tick++) {
+                for (int pitch = 0; pitch < PITCHES; pitch++) {
+                    final BlockPos pos = new BlockPos(tick, 64 + layer * 2, pitch);
+                    byTick.computeIfAbsent(tick, k -> new ArrayList<>()).add(new NoteEvent(pos, (tick + pitch) & 15, pitch));
+                    if (withIndex) refByPos.put(pos, new BoxedRef(layer, tick));
+                }
+            }
+            byLayer.add(byTick);
+        }
+        return withIndex ? List.of(byLayer, refByPos) : byLayer;
+    }
+
+    private record BoxedRef(int layerIndex, int tickIndex) {
+    }
+
+    /** Every cell of the full score, in random order so lookups don't walk memory sequentially. */
+    private static long[] shuffledKeys(Random random) {
+        final long[] keys = new long[NOTES];
+        int n = 0;
+        for (int layer = 0; layer < LAYERS; layer++) {
+            for (int tick = 0; tick < TICKS; tick++) {
+                for (int pitch = 0; pitch < PITCHES; pitch++) keys[n++] = TimelineScore.cellKey(layer, tick, pitch);
+            }
+        }
+        for (int i = keys.length - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final long t = keys[i];
+            keys[i] = keys[j];
+            keys[j] = t;
+        }
+        return keys;
+    }
+
+    private static int layer(long key) {
+        return (int) (key >>> 40);
+    }
+
+    private static int tick(long key) {
+        return (int) ((key >>> 8) & 0xFFFFFFFFL);
+    }
+
+    private static int pitch(long key) {
+        return (int) (key & 0xFF);
+    }
+}
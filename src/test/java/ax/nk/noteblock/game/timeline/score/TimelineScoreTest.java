@@ -0,0 +1,129 @@
+package ax.nk.noteblock.game.timeline.score;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimelineScoreTest {
+
+    private static final int LAYERS = 4;
+
+    @Test
+    void matchesAMapUnderRandomEdits() {
+        final TimelineScore score = new TimelineScore(LAYERS);
+        final Map<Long, Integer> model = new HashMap<>();
+        final Random random = new Random(11);
+
+        for (int i = 0; i < 200_000; i++) {
+            final int layer = random.nextInt(LAYERS);
+            final int tick = random.nextInt(500);
+            final int pitch = random.nextInt(25);
+            final long key = TimelineScore.cellKey(layer, tick, pitch);
+
+            if (random.nextInt(3) == 0) {
+                final Integer removed = model.remove(key);
+                assertEquals(removed == null ? -1 : removed, score.removeNote(layer, tick, pitch));
+            } else {
+                final int instrument = random.nextInt(16);
+                model.put(key, instrument);
+                score.upsertNote(layer, tick, pitch, instrument);
+            }
+
+            if (i % 50_000 == 49_999) {
+                final int length = 100 + random.nextInt(400);
+                model.keySet().removeIf(k -> ((k >>> 8) & 0xFFFFFFFFL) >= length);
+                score.pruneNotesOutsideLength(length);
+            }
+        }
+
+        for (int layer = 0; layer < LAYERS; layer++) {
+            assertEquals(notesOf(model, layer), notesOf(score, layer), "layer " + layer);
+            assertEquals(notesOf(model, layer).size(), score.noteCount(layer));
+        }
+        for (Map.Entry<Long, Integer> e : model.entrySet()) {
+            final long k = e.getKey();
+            assertEquals((int) e.getValue(), score.instrumentAt((int) (k >>> 40), (int) ((k >>> 8) & 0xFFFFFFFFL), (int) (k & 0xFF)));
+        }
+    }
+
+    @Test
+    void upsertReplacesTheInstrument() {
+        final TimelineScore score = new TimelineScore(1);
+        score.upsertNote(0, 3, 7, 1);
+        score.upsertNote(0, 3, 7, 9);
+
+        assertEquals(1, score.noteCount(0));
+        assertEquals(9, score.instrumentAt(0, 3, 7));
+        assertEquals(9, score.removeNote(0, 3, 7));
+        assertTrue(score.isLayerEmpty(0));
+        assertEquals(-1, score.removeNote(0, 3, 7));
+    }
+
+    @Test
+    void snapshotIgnoresLaterEdits() {
+        final TimelineScore score = new TimelineScore(2);
+        score.upsertNote(0, 1, 2, 3);
+        score.upsertNote(1, 4, 5, 6);
+
+        final ScoreSnapshot snapshot = score.snapshot();
+        score.removeNote(0, 1, 2);
+        score.upsertNote(1, 8, 9, 10);
+
+        assertEquals(Set.of(note(1, 2, 3)), notesOf(snapshot, 0));
+        assertEquals(Set.of(note(4, 5, 6)), notesOf(snapshot, 1));
+    }
+
+    @Test
+    void swapContentsExchangesNotesAndMarksBothDirty() {
+        final TimelineScore a = new TimelineScore(2);
+        final TimelineScore b = new TimelineScore(2);
+        a.upsertNote(0, 1, 1, 1);
+        b.upsertNote(1, 2, 2, 2);
+        b.upsertNote(1, 3, 3, 3);
+        a.drainDirtyTicks(new BitSet());
+        b.drainDirtyTicks(new BitSet());
+
+        a.swapContents(b);
+
+        assertEquals(Set.of(note(2, 2, 2), note(3, 3, 3)), notesOf(a, 1));
+        assertEquals(Set.of(note(1, 1, 1)), notesOf(b, 0));
+        assertEquals(2, a.instrumentAt(1, 2, 2));
+        assertEquals(-1, b.instrumentAt(1, 2, 2));
+        assertTrue(a.drainDirtyTicks(new BitSet()));
+        assertTrue(b.drainDirtyTicks(new BitSet()));
+        assertFalse(a.drainDirtyTicks(new BitSet()));
+    }
+
+    private static Set<Long> notesOf(Map<Long, Integer> model, int layer) {
+        final Set<Long> notes = new HashSet<>();
+        model.forEach((k, instrument) -> {
+            if ((int) (k >>> 40) == layer) notes.add(note((int) ((k >>> 8) & 0xFFFFFFFFL), (int) (k & 0xFF), instrument));
+        });
+        return notes;
+    }
+
+    private static Set<Long> notesOf(TimelineScore score, int layer) {
+        final Set<Long> notes = new HashSet<>();
+        score.forEachNote(layer, (tickIndex, pitch, instrumentId) -> notes.add(note(tickIndex, pitch, instrumentId)));
+        return notes;
+    }
+
+    private static Set<Long> notesOf(ScoreSnapshot snapshot, int layer) {
+        final Set<Long> notes = new HashSet<>();
+        snapshot.forEachNote(layer, (tickIndex, pitch, instrumentId) -> notes.add(note(tickIndex, pitch, instrumentId)));
+        return notes;
+    }
+
+    private static long note(int tickIndex, int pitch, int instrumentId) {
+        return (long) tickIndex << 16 | pitch << 8 | instrumentId;
+    }
+}
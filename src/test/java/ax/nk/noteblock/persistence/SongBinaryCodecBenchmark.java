@@ -0,0 +1,65 @@
+package ax.nk.noteblock.persistence;
+
+import ax.nk.noteblock.Bench;
+import ax.nk.noteblock.game.timeline.playback.TempoMap;
+import ax.nk.noteblock.game.timeline.score.ScoreSnapshot;
+import ax.nk.noteblock.game.timeline.score.TimelineScore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Size and encode/decode cost of the binary song format against the JSON one, on songs of a few shapes. */
+@Tag("benchmark")
+class SongBinaryCodecBenchmark {
+
+    @Test
+    void binaryAgainstJson() {
+        measure("melody 128x1", 128, 1, 64);
+        measure("chords 400x2", 400, 2, 1_000);
+        measure("dense 1000x4", 1_000, 4, 14_000);
+        measure("sparse 50000x1", 50_000, 1, 1_000);
+    }
+
+    private static void measure(String name, int trackLength, int layers, int notes) {
+        final TimelineScore score = SongBinaryCodecTest.randomScore(new Random(name.hashCode()), layers, trackLength, notes);
+        final ScoreSnapshot snapshot = score.snapshot();
+        final TempoMap tempo = TempoMap.constant(150).withMarker(trackLength / 2, 180);
+
+        final byte[] binary = SongBinaryCodec.encode(snapshot, trackLength, tempo, layers);
+        final String json = TimelineScoreJson.toJson(snapshot, trackLength, tempo, layers);
+        final int jsonBytes = json.getBytes(StandardCharsets.UTF_8).length;
+        Bench.report(name + " size json / binary", jsonBytes + " / " + binary.length + " B");
+
+        Bench.nanosPerOp(name + " encode json", 1, () -> TimelineScoreJson.toJson(snapshot, trackLength, tempo, layers).length());
+        Bench.nanosPerOp(name + " encode binary", 1, () -> SongBinaryCodec.encode(snapshot, trackLength, tempo, layers).length);
+        Bench.nanosPerOp(name + " decode json", 1, () -> TimelineScoreJson.fromJson(json).layers().size());
+        Bench.nanosPerOp(name + " decode binary", 1, () -> {
+            final NoteCounter counter = new NoteCounter();
+            SongBinaryCodec.read(binary, counter);
+            return counter.notes;
+        });
+
+        assertTrue(binary.length < jsonBytes);
+    }
+
+    private static final class NoteCounter implements SongBinaryCodec.Visitor {
+        long notes;
+
+        @Override
+        public void header(int trackLength, int layerCount, double bpm) {
+        }
+
+        @Override
+        public void tempoMarker(int step, double bpm) {
+        }
+
+        @Override
+        public void note(int layer, int tickIndex, int pitch, int instrumentId) {
+            notes += tickIndex;
+        }
+    }
+}
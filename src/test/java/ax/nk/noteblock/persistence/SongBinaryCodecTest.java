@@ -0,0 +1,145 @@
+package ax.nk.noteblock.persistence;
+
+import ax.nk.noteblock.game.timeline.playback.Tempo;
+import ax.nk.noteblock.game.timeline.playback.TempoMap;
+import ax.nk.noteblock.game.timeline.score.TimelineScore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SongBinaryCodecTest {
+
+    @Test
+    void roundTripsNotesTempoAndHeader() {
+        final TimelineScore score = randomScore(new Random(1), 3, 2_000, 5_000);
+        final TempoMap tempo = TempoMap.constant(120).withMarker(100, 240.5).withMarker(1_500, 60);
+
+        final Decoded song = Decoded.of(SongBinaryCodec.encode(score.snapshot(), 2_000, tempo, 3));
+
+        assertEquals(2_000, song.trackLength);
+        assertEquals(3, song.layerCount);
+        assertEquals(120.0, song.bpm);
+        assertEquals(List.of("100@240.5", "1500@60.0"), song.markers);
+        for (int layer = 0; layer < 3; layer++) {
+            assertEquals(notesOf(score, layer), song.notes.get(layer), "layer " + layer);
+        }
+    }
+
+    @Test
+    void keepsLongGapsAndEmptyLayers() {
+        final TimelineScore score = new TimelineScore(4);
+        score.upsertNote(0, 0, 0, 15);
+        score.upsertNote(0, 49_999, 24, 3);
+        score.upsertNote(2, 7, 12, 0);
+
+        final Decoded song = Decoded.of(SongBinaryCodec.encode(score.snapshot(), 50_000, TempoMap.constant(150), 3));
+
+        assertEquals(Set.of(note(0, 0, 15), note(49_999, 24, 3)), song.notes.get(0));
+        assertEquals(Set.of(), song.notes.get(1));
+        assertEquals(Set.of(note(7, 12, 0)), song.notes.get(2));
+    }
+
+    @Test
+    void storesUnknownInstrumentsAsZero() {
+        final TimelineScore score = new TimelineScore(1);
+        score.upsertNote(0, 5, 1, 16);
+
+        final Decoded song = Decoded.of(SongBinaryCodec.encode(score.snapshot(), 10, TempoMap.constant(150), 1));
+
+        assertEquals(Set.of(note(5, 1, 0)), song.notes.get(0));
+    }
+
+    @Test
+    void jsonPayloadEncodesToTheSameBytes() {
+        final TimelineScore score = randomScore(new Random(2), 4, 1_000, 3_000);
+        final TempoMap tempo = TempoMap.constant(97.5).withMarker(250, 180);
+
+        final byte[] direct = SongBinaryCodec.encode(score.snapshot(), 1_000, tempo, 4);
+        final String json = TimelineScoreJson.toJson(score.snapshot(), 1_000, tempo, 4);
+
+        assertArrayEquals(direct, SongBinaryCodec.encode(TimelineScoreJson.fromJson(json)));
+    }
+
+    @Test
+    void legacyTickTempoBecomesBpm() {
+        final TimelineScoreJson.SongPayload v1 = new TimelineScoreJson.SongPayload(1, 64, 4, null, 1,
+                List.of(List.of(new TimelineScoreJson.NoteDto(3, 2, 10))), null);
+
+        final Decoded song = Decoded.of(SongBinaryCodec.encode(TimelineScoreJson.migrate(v1)));
+
+        assertEquals(Tempo.bpmFromTicksPerStep(4), song.bpm);
+        assertEquals(Set.of(note(3, 10, 2)), song.notes.get(0));
+    }
+
+    @Test
+    void rejectsTruncatedOrUnknownData() {
+        final TimelineScore score = randomScore(new Random(3), 1, 100, 50);
+        final byte[] data = SongBinaryCodec.encode(score.snapshot(), 100, TempoMap.constant(150), 1);
+
+        assertThrows(IllegalArgumentException.class, () -> Decoded.of(Arrays.copyOf(data, data.length - 1)));
+
+        final byte[] future = data.clone();
+        future[0] = (byte) (SongBinaryCodec.FORMAT_VERSION + 1);
+        assertThrows(IllegalArgumentException.class, () -> Decoded.of(future));
+    }
+
+    static TimelineScore randomScore(Random random, int layers, int trackLength, int notes) {
+        final TimelineScore score = new TimelineScore(layers);
+        for (int i = 0; i < notes; i++) {
+            score.upsertNote(random.nextInt(layers), random.nextInt(trackLength), random.nextInt(25), random.nextInt(16));
+        }
+        return score;
+    }
+
+    static Set<Long> notesOf(TimelineScore score, int layer) {
+        final Set<Long> notes = new HashSet<>();
+        score.forEachNote(layer, (tickIndex, pitch, instrumentId) -> notes.add(note(tickIndex, pitch, instrumentId)));
+        return notes;
+    }
+
+    static long note(int tickIndex, int pitch, int instrumentId) {
+        return (long) tickIndex << 16 | pitch << 8 | instrumentId;
+    }
+
+    /** Everything {@link SongBinaryCodec#read} reports, notes as {@link #note} keys per layer. */
+    static final class Decoded implements SongBinaryCodec.Visitor {
+        int trackLength;
+        int layerCount;
+        double bpm;
+        final List<String> markers = new ArrayList<>();
+        final List<Set<Long>> notes = new ArrayList<>();
+
+        static Decoded of(byte[] data) {
+            final Decoded song = new Decoded();
+            SongBinaryCodec.read(data, song);
+            return song;
+        }
+
+        @Override
+        public void header(int trackLength, int layerCount, double bpm) {
+            this.trackLength = trackLength;
+            this.layerCount = layerCount;
+            this.bpm = bpm;
+            for (int layer = 0; layer < layerCount; layer++) notes.add(new HashSet<>());
+        }
+
+        @Override
+        public void tempoMarker(int step, double bpm) {
+            markers.add(step + "@" + bpm);
+        }
+
+        @Override
+        public void note(int layer, int tickIndex, int pitch, int instrumentId) {
+            notes.get(layer).add(SongBinaryCodecTest.note(tickIndex, pitch, instrumentId));
+        }
+    }
+}